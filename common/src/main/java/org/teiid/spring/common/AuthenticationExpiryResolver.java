@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.common;
+
+import org.springframework.security.core.Authentication;
+
+/**
+ * Provides the expiry of the token that backs an authentication, such as a OAuth access token, so that the
+ * authentications cached for the JDBC/PG transports do not outlive their token.
+ */
+public interface AuthenticationExpiryResolver {
+    /**
+     * @return expiry in milliseconds since epoch, or null if the authentication is not known to this resolver
+     */
+    Long getExpiry(Authentication authentication);
+
+    /**
+     * Called when the authentication is evicted from the cache, so that any state kept for its token, such as a
+     * registration for its refresh, can be released
+     */
+    default void evicted(Authentication authentication) {
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.SpringProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+
+/**
+ * Index of the classes with Teiid related annotations generated at build time by {@link ComponentIndexProcessor}.
+ * Each line of the index is in the form of "class-name=annotation-name,annotation-name". An index only describes
+ * the jar or directory it is found in, the other classpath roots still need to be scanned.
+ */
+public class ComponentIndex {
+    public static final String COMPONENTS_RESOURCE_LOCATION = "META-INF/teiid-spring.components";
+
+    /**
+     * System or spring.properties flag to ignore the index and always scan the classpath.
+     */
+    public static final String IGNORE_INDEX = "spring.teiid.index.ignore";
+
+    private Map<String, Set<String>> entries;
+    private Set<String> roots;
+
+    private ComponentIndex(Map<String, Set<String>> entries, Set<String> roots) {
+        this.entries = entries;
+        this.roots = roots;
+    }
+
+    /**
+     * Loads all the indexes available to the given class loader
+     * @return the index or null when none is found or the index is ignored
+     */
+    public static ComponentIndex load(ClassLoader classLoader) {
+        if (SpringProperties.getFlag(IGNORE_INDEX)) {
+            return null;
+        }
+        try {
+            Enumeration<URL> urls = classLoader.getResources(COMPONENTS_RESOURCE_LOCATION);
+            if (!urls.hasMoreElements()) {
+                return null;
+            }
+            Map<String, Set<String>> entries = new TreeMap<>();
+            Set<String> roots = new TreeSet<>();
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (InputStream in = url.openStream()) {
+                    read(in).forEach((k, v) -> entries.computeIfAbsent(k, x -> new TreeSet<>()).addAll(v));
+                }
+                String location = url.toString();
+                roots.add(location.substring(0, location.length() - COMPONENTS_RESOURCE_LOCATION.length()));
+            }
+            return new ComponentIndex(entries, roots);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load the Teiid component index", e);
+        }
+    }
+
+    /**
+     * Finds the classes with any of the given annotations. When an index is found it is used alone for all packages,
+     * unindexed jars and directories are only scanned within a configured base package. Without an index, or when
+     * {@link #IGNORE_INDEX} is set, the classpath is scanned.
+     * @param basePackage package to look in, null or "*" for all
+     * @return class names
+     */
+    public static Set<String> findCandidateTypes(ClassLoader classLoader, String basePackage,
+            List<Class<? extends Annotation>> annotations) {
+        if (basePackage == null) {
+            basePackage = "*";
+        }
+        ComponentIndex index = load(classLoader);
+        Set<String> result = new LinkedHashSet<>();
+        if (index != null) {
+            for (Class<? extends Annotation> annotation : annotations) {
+                result.addAll(index.getCandidateTypes(basePackage, annotation.getName()));
+            }
+            if (basePackage.equals("*")) {
+                return result;
+            }
+        }
+        Set<String> indexedRoots = index == null ? Collections.emptySet() : index.roots;
+        ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
+        provider.setResourceLoader(new UnindexedResourceResolver(classLoader, indexedRoots));
+        for (Class<? extends Annotation> annotation : annotations) {
+            provider.addIncludeFilter(new AnnotationTypeFilter(annotation));
+        }
+        for (BeanDefinition bd : provider.findCandidateComponents(basePackage)) {
+            result.add(bd.getBeanClassName());
+        }
+        return result;
+    }
+
+    /**
+     * @param basePackage package to look in, null or "*" for all
+     * @param annotation name of the annotation
+     * @return class names with the annotation in the given package and its sub packages
+     */
+    public Set<String> getCandidateTypes(String basePackage, String annotation) {
+        Set<String> result = new LinkedHashSet<>();
+        for (Map.Entry<String, Set<String>> entry : this.entries.entrySet()) {
+            if (entry.getValue().contains(annotation) && inPackage(basePackage, entry.getKey())) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    public boolean hasAnnotation(String annotation) {
+        return this.entries.values().stream().anyMatch(v -> v.contains(annotation));
+    }
+
+    private static boolean inPackage(String basePackage, String className) {
+        if (basePackage == null || basePackage.equals("*")) {
+            return true;
+        }
+        for (String pkg : basePackage.split(",")) {
+            pkg = pkg.trim();
+            if (className.startsWith(pkg + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Map<String, Set<String>> read(InputStream in) throws IOException {
+        Map<String, Set<String>> entries = new TreeMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line = null;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            int index = line.indexOf('=');
+            if (line.isEmpty() || line.startsWith("#") || index == -1) {
+                continue;
+            }
+            entries.put(line.substring(0, index),
+                    new TreeSet<>(Arrays.asList(line.substring(index + 1).split(","))));
+        }
+        return entries;
+    }
+
+    static void write(Map<String, Set<String>> entries, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        for (Map.Entry<String, Set<String>> entry : entries.entrySet()) {
+            writer.write(entry.getKey());
+            writer.write('=');
+            writer.write(String.join(",", entry.getValue()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Skips the jars and directories that have an index when resolving the classes to scan.
+     */
+    private static class UnindexedResourceResolver extends PathMatchingResourcePatternResolver {
+        private Set<String> indexedRoots;
+
+        UnindexedResourceResolver(ClassLoader classLoader, Set<String> indexedRoots) {
+            super(classLoader);
+            this.indexedRoots = indexedRoots;
+        }
+
+        private boolean isIndexed(Resource rootDirResource) throws IOException {
+            if (this.indexedRoots.isEmpty()) {
+                return false;
+            }
+            String location = rootDirResource.getURL().toString();
+            return this.indexedRoots.stream().anyMatch(location::startsWith);
+        }
+
+        @Override
+        protected Set<Resource> doFindPathMatchingJarResources(Resource rootDirResource, URL rootDirURL,
+                String subPattern) throws IOException {
+            if (isIndexed(rootDirResource)) {
+                return Collections.emptySet();
+            }
+            return super.doFindPathMatchingJarResources(rootDirResource, rootDirURL, subPattern);
+        }
+
+        @Override
+        protected Set<Resource> doFindPathMatchingFileResources(Resource rootDirResource, String subPattern)
+                throws IOException {
+            if (isIndexed(rootDirResource)) {
+                return Collections.emptySet();
+            }
+            return super.doFindPathMatchingFileResources(rootDirResource, subPattern);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that records the classes with the annotations Teiid looks for at the start up in
+ * {@link ComponentIndex#COMPONENTS_RESOURCE_LOCATION}, so that the classpath does not need to be scanned. It is
+ * picked up automatically by the compiler when this library is on the compile classpath.
+ */
+@SupportedAnnotationTypes({ "javax.persistence.Entity", "javax.persistence.Embeddable",
+        "org.teiid.spring.annotations.SelectQuery", "org.teiid.spring.annotations.TextTable",
+        "org.teiid.spring.annotations.JsonTable", "org.teiid.spring.annotations.ExcelTable",
+        "org.teiid.spring.annotations.UserDefinedFunctions", "org.teiid.spring.data.ConnectionFactoryConfiguration" })
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    private Map<String, Set<String>> index = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (e.getKind() == ElementKind.CLASS) {
+                    String className = this.processingEnv.getElementUtils().getBinaryName((TypeElement) e).toString();
+                    this.index.computeIfAbsent(className, k -> new TreeSet<>())
+                            .add(annotation.getQualifiedName().toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !this.index.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        // keep the entries from a previous incremental compile, whose classes still exist
+        try {
+            FileObject existing = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                    ComponentIndex.COMPONENTS_RESOURCE_LOCATION);
+            try (InputStream in = existing.openInputStream()) {
+                ComponentIndex.read(in).forEach((className, types) -> {
+                    if (!this.index.containsKey(className)
+                            && this.processingEnv.getElementUtils().getTypeElement(className) != null) {
+                        this.index.put(className, types);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // no previous index
+        }
+
+        try {
+            FileObject fo = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ComponentIndex.COMPONENTS_RESOURCE_LOCATION);
+            try (OutputStream out = fo.openOutputStream()) {
+                ComponentIndex.write(this.index, out);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the Teiid component index", e);
+        }
+    }
+}
@@ -22,13 +22,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
-import org.springframework.core.io.ResourceLoader;
-import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.teiid.spring.data.ConfigurationProperty;
 import org.teiid.spring.data.ConnectionFactoryConfiguration;
 
@@ -41,33 +36,25 @@ public class ExternalSources implements Serializable{
     }
 
     public void loadConnctionFactories(ClassLoader classloader, String packageName) {
-        ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
-        provider.setResourceLoader(new ResourceLoader() {
-            @Override
-            public org.springframework.core.io.Resource getResource(String location) {
-                return null;
-            }
-            @Override
-            public ClassLoader getClassLoader() {
-                return classloader;
-            }
-        });
-        provider.addIncludeFilter(new AnnotationTypeFilter(ConnectionFactoryConfiguration.class));
-        Set<BeanDefinition> components = provider.findCandidateComponents(packageName);
-        for (BeanDefinition c : components) {
-            try {
-                Class<?> clazz = Class.forName(c.getBeanClassName(), false, classloader);
-                ConnectionFactoryConfiguration cfc = clazz.getAnnotation(ConnectionFactoryConfiguration.class);
-                if(cfc != null) {
-                    ExternalSource source = build(cfc, clazz);
-                    for (String name : cfc.otherAliases()) {
-                        items.put(name, source);
-                    }
-                    items.put(source.getName(), source);
+        for (String className : ComponentIndex.findCandidateTypes(classloader, packageName,
+                Collections.singletonList(ConnectionFactoryConfiguration.class))) {
+            loadConnectionFactory(classloader, className);
+        }
+    }
+
+    private void loadConnectionFactory(ClassLoader classloader, String className) {
+        try {
+            Class<?> clazz = Class.forName(className, false, classloader);
+            ConnectionFactoryConfiguration cfc = clazz.getAnnotation(ConnectionFactoryConfiguration.class);
+            if(cfc != null) {
+                ExternalSource source = build(cfc, clazz);
+                for (String name : cfc.otherAliases()) {
+                    items.put(name, source);
                 }
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException("failed to load " + c.getBeanClassName());
+                items.put(source.getName(), source);
             }
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("failed to load " + className);
         }
     }
 
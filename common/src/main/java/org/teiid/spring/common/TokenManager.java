@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Holds an access token that is shared by all the connections of a connection factory. The token is refreshed
+ * when it is within the refresh margin of its expiry, so that the connections do not start using a token that
+ * expires during the request. Only a single refresh is in flight at any time, the other callers either keep
+ * using the current token while it is still valid or wait for the result of the refresh.
+ *
+ * @param <T> token type
+ */
+public class TokenManager<T> {
+    public static final long DEFAULT_REFRESH_MARGIN = 60000;
+
+    private final Supplier<T> fetcher;
+    private final Function<T, Long> expireTime;
+    private final long refreshMargin;
+
+    private volatile T token;
+    private CompletableFuture<T> inflight;
+
+    /**
+     * @param fetcher obtains a new token from the authorization server
+     * @param expireTime returns the expiry of the token in milliseconds since epoch, or null if it never expires
+     * @param refreshMargin time in milliseconds before the expiry when the token is refreshed
+     */
+    public TokenManager(Supplier<T> fetcher, Function<T, Long> expireTime, long refreshMargin) {
+        this.fetcher = fetcher;
+        this.expireTime = expireTime;
+        this.refreshMargin = refreshMargin;
+    }
+
+    public T getToken() {
+        long now = System.currentTimeMillis();
+        T current = this.token;
+        if (current != null && !isExpired(current, now + this.refreshMargin)) {
+            return current;
+        }
+
+        CompletableFuture<T> refresh;
+        synchronized (this) {
+            current = this.token;
+            if (current != null && !isExpired(current, now + this.refreshMargin)) {
+                return current;
+            }
+            refresh = this.inflight;
+            if (refresh == null) {
+                this.inflight = new CompletableFuture<>();
+                return fetch(this.inflight);
+            }
+        }
+
+        // some other thread is refreshing, the current token can still be used until it really expires
+        if (current != null && !isExpired(current, now)) {
+            return current;
+        }
+        try {
+            return refresh.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private T fetch(CompletableFuture<T> refresh) {
+        try {
+            T result = this.fetcher.get();
+            if (result == null) {
+                throw new IllegalStateException("No access token returned from the authorization server");
+            }
+            this.token = result;
+            refresh.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (this) {
+                this.inflight = null;
+            }
+        }
+    }
+
+    /**
+     * Discards the current token, such as when the server rejected it, so that the next call fetches a new one.
+     */
+    public void invalidate(T rejected) {
+        synchronized (this) {
+            if (rejected == null || this.token == rejected) {
+                this.token = null;
+            }
+        }
+    }
+
+    public boolean isValid() {
+        T current = this.token;
+        return current != null && !isExpired(current, System.currentTimeMillis());
+    }
+
+    private boolean isExpired(T t, long time) {
+        Long expiry = this.expireTime.apply(t);
+        return expiry != null && expiry <= time;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.teiid.spring.data.ConnectionFactoryConfiguration;
+
+public class ComponentIndexTest {
+
+    @Test
+    public void testLoad() throws IOException {
+        File dir = Files.createTempDirectory("index").toFile();
+        File f = new File(dir, ComponentIndex.COMPONENTS_RESOURCE_LOCATION);
+        f.getParentFile().mkdirs();
+
+        Map<String, Set<String>> entries = new TreeMap<>();
+        entries.put("com.example.model.Person",
+                new TreeSet<>(Arrays.asList("javax.persistence.Entity", "org.teiid.spring.annotations.SelectQuery")));
+        entries.put("com.example.other.Source",
+                new TreeSet<>(Arrays.asList("org.teiid.spring.data.ConnectionFactoryConfiguration")));
+        try (OutputStream out = new FileOutputStream(f)) {
+            ComponentIndex.write(entries, out);
+        }
+
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { dir.toURI().toURL() }, null)) {
+            ComponentIndex index = ComponentIndex.load(cl);
+            assertNotNull(index);
+            assertTrue(index.hasAnnotation("javax.persistence.Entity"));
+            assertFalse(index.hasAnnotation("javax.persistence.Embeddable"));
+            assertEquals("[com.example.model.Person]",
+                    index.getCandidateTypes(null, "javax.persistence.Entity").toString());
+            assertEquals("[com.example.model.Person]",
+                    index.getCandidateTypes("com.example.model", "org.teiid.spring.annotations.SelectQuery").toString());
+            assertTrue(index.getCandidateTypes("com.example.mod", "javax.persistence.Entity").isEmpty());
+            assertEquals("[com.example.other.Source]", index
+                    .getCandidateTypes("com.example", "org.teiid.spring.data.ConnectionFactoryConfiguration").toString());
+        }
+    }
+
+    @ConnectionFactoryConfiguration(alias = "scanned", translatorName = "loopback")
+    public static class Scanned {
+    }
+
+    @ConnectionFactoryConfiguration(alias = "unlisted", translatorName = "loopback")
+    public static class Unlisted {
+    }
+
+    @Test
+    public void testIndexOnlyCoversItsRoot() throws IOException {
+        try (URLClassLoader cl = indexedClassLoader()) {
+            assertEquals("[org.teiid.spring.common.Listed, " + Scanned.class.getName() + "]",
+                    ComponentIndex.findCandidateTypes(cl, "org.teiid.spring.common",
+                            Collections.singletonList(ConnectionFactoryConfiguration.class)).toString());
+        }
+    }
+
+    @Test
+    public void testIndexAvoidsScanWithoutBasePackage() throws IOException {
+        try (URLClassLoader cl = indexedClassLoader()) {
+            // the unindexed directory is not scanned, Scanned is not found
+            assertEquals("[org.teiid.spring.common.Listed]", ComponentIndex.findCandidateTypes(cl, "*",
+                    Collections.singletonList(ConnectionFactoryConfiguration.class)).toString());
+            assertEquals("[org.teiid.spring.common.Listed]", ComponentIndex.findCandidateTypes(cl, null,
+                    Collections.singletonList(ConnectionFactoryConfiguration.class)).toString());
+        }
+    }
+
+    private static URLClassLoader indexedClassLoader() throws IOException {
+        File indexed = Files.createTempDirectory("indexed").toFile();
+        File f = new File(indexed, ComponentIndex.COMPONENTS_RESOURCE_LOCATION);
+        f.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(f)) {
+            ComponentIndex.write(Collections.singletonMap("org.teiid.spring.common.Listed",
+                    Collections.singleton(ConnectionFactoryConfiguration.class.getName())), out);
+        }
+        // a class missing from the index, it must not be scanned as the index covers its directory
+        copyClass(Unlisted.class, indexed);
+
+        File scanned = Files.createTempDirectory("scanned").toFile();
+        copyClass(Scanned.class, scanned);
+
+        URL[] urls = new URL[] { indexed.toURI().toURL(), scanned.toURI().toURL() };
+        return new URLClassLoader(urls, ComponentIndexTest.class.getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                return findResources(name);
+            }
+        };
+    }
+
+    private static void copyClass(Class<?> clazz, File dir) throws IOException {
+        String name = clazz.getName().replace('.', '/') + ".class";
+        File target = new File(dir, name);
+        target.getParentFile().mkdirs();
+        try (InputStream in = clazz.getClassLoader().getResourceAsStream(name)) {
+            Files.copy(in, target.toPath());
+        }
+    }
+}
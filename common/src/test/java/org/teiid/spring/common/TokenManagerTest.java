@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TokenManagerTest {
+
+    @Test
+    public void testConcurrentRefreshIsCoalesced() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        TokenManager<String> tm = new TokenManager<>(() -> {
+            fetches.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "token";
+        }, t -> null, 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(tm::getToken));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> f : results) {
+                assertEquals("token", f.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void testRefreshAheadOfExpiry() {
+        AtomicInteger fetches = new AtomicInteger();
+        long expiry = System.currentTimeMillis() + 30000;
+        TokenManager<Long> tm = new TokenManager<>(() -> {
+            fetches.incrementAndGet();
+            return expiry;
+        }, t -> t, 60000);
+
+        tm.getToken();
+        tm.getToken();
+        // the token expires within the margin, so each call fetches a new one
+        assertEquals(2, fetches.get());
+
+        TokenManager<Long> tm2 = new TokenManager<>(() -> {
+            fetches.incrementAndGet();
+            return expiry;
+        }, t -> t, 1000);
+        Long token = tm2.getToken();
+        assertSame(token, tm2.getToken());
+        assertEquals(3, fetches.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoToken() {
+        new TokenManager<String>(() -> null, t -> null, 0).getToken();
+    }
+}
@@ -36,6 +36,12 @@ public class FtpConfiguration implements org.teiid.file.ftp.FtpConfiguration {
     protected Integer fileType = org.apache.commons.net.ftp.FTP.BINARY_FILE_TYPE;
     protected String controlEncoding = FTP.DEFAULT_CONTROL_ENCODING;
 
+    private int maxPoolSize = 8;
+    private int minIdle = 0;
+    private long borrowTimeout = 30000;
+    private long maxLifetime = 1800000;
+    private long idleTimeout = 300000;
+
     private Integer connectTimeout;
     private Integer defaultTimeout;
     private Integer dataTimeout;
@@ -309,4 +315,56 @@ public class FtpConfiguration implements org.teiid.file.ftp.FtpConfiguration {
     public String[] getSupportedProtocols() {
         return this.protocols;
     }
+
+    /**
+     * Maximum number of logged in sessions kept for reuse, 0 logs in for every connection
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    /**
+     * Time in milliseconds to wait for a session when all of them are in use
+     */
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public void setBorrowTimeout(long borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * Time in milliseconds after which a session is logged out, 0 for no limit
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Time in milliseconds after which an idle session is logged out
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
 }
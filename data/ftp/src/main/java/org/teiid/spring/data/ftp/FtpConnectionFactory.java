@@ -18,7 +18,18 @@
 package org.teiid.spring.data.ftp;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.teiid.file.VirtualFileConnection;
 import org.teiid.file.ftp.FtpFileConnection;
 import org.teiid.spring.data.BaseConnectionFactory;
 import org.teiid.spring.data.ConnectionFactoryConfiguration;
@@ -28,20 +39,119 @@ import org.teiid.spring.data.ConnectionFactoryConfiguration;
         translatorName = "file",
         configuration = FtpConfiguration.class
         )
-public class FtpConnectionFactory implements BaseConnectionFactory<FtpFileConnection> {
+public class FtpConnectionFactory implements BaseConnectionFactory<VirtualFileConnection> {
+    private static final Log logger = LogFactory.getLog(FtpConnectionFactory.class);
+
     private FtpConfiguration config;
+    private GenericObjectPool<FtpFileConnection> pool;
 
     public FtpConnectionFactory(FtpConfiguration config) {
+        this(config, new SessionFactory(config));
+    }
+
+    FtpConnectionFactory(FtpConfiguration config, SessionFactory sessionFactory) {
         this.config = config;
+        if (config.getMaxPoolSize() > 0) {
+            GenericObjectPoolConfig<FtpFileConnection> poolConfig = new GenericObjectPoolConfig<>();
+            poolConfig.setMaxTotal(config.getMaxPoolSize());
+            poolConfig.setMaxIdle(config.getMaxPoolSize());
+            poolConfig.setMinIdle(config.getMinIdle());
+            poolConfig.setMaxWaitMillis(config.getBorrowTimeout());
+            poolConfig.setTestOnBorrow(true);
+            poolConfig.setTestWhileIdle(true);
+            poolConfig.setMinEvictableIdleTimeMillis(config.getIdleTimeout());
+            poolConfig.setTimeBetweenEvictionRunsMillis(Math.max(1000, config.getIdleTimeout() / 2));
+            poolConfig.setJmxEnabled(false);
+            this.pool = new GenericObjectPool<>(sessionFactory, poolConfig);
+        }
     }
 
     @Override
-    public FtpFileConnection getConnection() throws Exception {
-        return new FtpFileConnection(this.config);
+    public VirtualFileConnection getConnection() throws Exception {
+        if (this.pool == null) {
+            return new FtpFileConnection(this.config);
+        }
+        return new PooledFtpConnection(this.pool.borrowObject(), this.pool);
     }
 
     @Override
     public void close() throws IOException {
-        // close connections
+        if (this.pool != null) {
+            this.pool.close();
+        }
+    }
+
+    /**
+     * Creates the logged in sessions of the pool, and checks them with a NOOP command before they are reused.
+     */
+    static class SessionFactory extends BasePooledObjectFactory<FtpFileConnection> {
+        private static Method clientMethod;
+        static {
+            try {
+                clientMethod = FtpFileConnection.class.getDeclaredMethod("getClient"); //$NON-NLS-1$
+                clientMethod.setAccessible(true);
+            } catch (Exception e) {
+                logger.debug("FTP sessions can not be validated with NOOP", e);
+            }
+        }
+
+        private FtpConfiguration config;
+
+        SessionFactory(FtpConfiguration config) {
+            this.config = config;
+        }
+
+        @Override
+        public FtpFileConnection create() throws Exception {
+            return new FtpFileConnection(this.config);
+        }
+
+        @Override
+        public PooledObject<FtpFileConnection> wrap(FtpFileConnection connection) {
+            return new DefaultPooledObject<>(connection);
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<FtpFileConnection> p) {
+            if (this.config.getMaxLifetime() > 0
+                    && System.currentTimeMillis() - p.getCreateTime() > this.config.getMaxLifetime()) {
+                return false;
+            }
+            try {
+                FTPClient client = getClient(p.getObject());
+                if (client == null) {
+                    return true;
+                }
+                return client.isConnected() && client.sendNoOp();
+            } catch (Exception e) {
+                logger.debug("FTP session failed validation", e);
+                return false;
+            }
+        }
+
+        /**
+         * A file read through the session leaves the server's final reply of the transfer unread. It is read before
+         * the session goes back to the pool, a session whose transfer failed is destroyed by the pool instead.
+         */
+        @Override
+        public void passivateObject(PooledObject<FtpFileConnection> p) throws Exception {
+            FTPClient client = getClient(p.getObject());
+            if (client != null && FTPReply.isPositivePreliminary(client.getReplyCode())
+                    && !client.completePendingCommand()) {
+                throw new IOException("The FTP transfer did not complete: " + client.getReplyString());
+            }
+        }
+
+        FTPClient getClient(FtpFileConnection connection) throws Exception {
+            if (clientMethod == null) {
+                return null;
+            }
+            return (FTPClient) clientMethod.invoke(connection);
+        }
+
+        @Override
+        public void destroyObject(PooledObject<FtpFileConnection> p) throws Exception {
+            p.getObject().close();
+        }
     }
 }
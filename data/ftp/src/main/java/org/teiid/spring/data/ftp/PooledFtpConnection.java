@@ -0,0 +1,68 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.ftp;
+
+import java.io.InputStream;
+
+import org.apache.commons.pool2.ObjectPool;
+import org.teiid.file.VirtualFile;
+import org.teiid.file.VirtualFileConnection;
+import org.teiid.file.ftp.FtpFileConnection;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Connection handed out by the {@link FtpConnectionFactory}, closing it returns the logged in session to the pool.
+ */
+class PooledFtpConnection implements VirtualFileConnection {
+    private final FtpFileConnection delegate;
+    private final ObjectPool<FtpFileConnection> pool;
+    private boolean closed;
+
+    PooledFtpConnection(FtpFileConnection delegate, ObjectPool<FtpFileConnection> pool) {
+        this.delegate = delegate;
+        this.pool = pool;
+    }
+
+    @Override
+    public VirtualFile[] getFiles(String namePattern) throws TranslatorException {
+        return this.delegate.getFiles(namePattern);
+    }
+
+    @Override
+    public void add(InputStream in, String path) throws TranslatorException {
+        this.delegate.add(in, path);
+    }
+
+    @Override
+    public boolean remove(String path) throws TranslatorException {
+        return this.delegate.remove(path);
+    }
+
+    @Override
+    public boolean areFilesUsableAfterClose() {
+        return this.delegate.areFilesUsableAfterClose();
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        if (!this.closed) {
+            this.closed = true;
+            this.pool.returnObject(this.delegate);
+        }
+    }
+}
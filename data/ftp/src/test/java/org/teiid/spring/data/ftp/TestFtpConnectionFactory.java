@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.ftp;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.teiid.file.VirtualFileConnection;
+import org.teiid.file.ftp.FtpFileConnection;
+
+public class TestFtpConnectionFactory {
+    private List<FtpFileConnection> sessions = new ArrayList<>();
+    private List<FTPClient> clients = new ArrayList<>();
+    private FtpConnectionFactory factory;
+
+    @Before
+    public void setup() {
+        FtpConfiguration config = new FtpConfiguration();
+        this.factory = new FtpConnectionFactory(config, new FtpConnectionFactory.SessionFactory(config) {
+            @Override
+            public FtpFileConnection create() throws Exception {
+                FTPClient client = Mockito.mock(FTPClient.class);
+                Mockito.when(client.isConnected()).thenReturn(true);
+                Mockito.when(client.sendNoOp()).thenReturn(true);
+                Mockito.when(client.getReplyCode()).thenReturn(FTPReply.COMMAND_OK);
+                FtpFileConnection session = Mockito.mock(FtpFileConnection.class);
+                sessions.add(session);
+                clients.add(client);
+                return session;
+            }
+
+            @Override
+            FTPClient getClient(FtpFileConnection connection) {
+                return clients.get(sessions.indexOf(connection));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.factory.close();
+    }
+
+    private FtpFileConnection borrow() throws Exception {
+        VirtualFileConnection connection = this.factory.getConnection();
+        connection.getFiles("*");
+        connection.close();
+        // closing twice does not return the session twice
+        connection.close();
+        return this.sessions.get(this.sessions.size() - 1);
+    }
+
+    @Test
+    public void testSessionReused() throws Exception {
+        FtpFileConnection session = borrow();
+        assertSame(session, borrow());
+        Mockito.verify(session, Mockito.times(2)).getFiles("*");
+        Mockito.verify(this.clients.get(0), Mockito.never()).completePendingCommand();
+    }
+
+    @Test
+    public void testPendingTransferCompleted() throws Exception {
+        FtpFileConnection session = borrow();
+        FTPClient client = this.clients.get(0);
+        // a file was opened, the server did not send its final reply yet
+        Mockito.when(client.getReplyCode()).thenReturn(FTPReply.FILE_STATUS_OK);
+        Mockito.when(client.completePendingCommand()).thenReturn(true);
+        assertSame(session, borrow());
+        Mockito.verify(client).completePendingCommand();
+    }
+
+    @Test
+    public void testFailedTransferDiscarded() throws Exception {
+        FtpFileConnection session = borrow();
+        FTPClient client = this.clients.get(0);
+        Mockito.when(client.getReplyCode()).thenReturn(FTPReply.FILE_STATUS_OK);
+        Mockito.when(client.completePendingCommand()).thenReturn(false);
+        assertSame(session, borrow());
+        Mockito.verify(session).close();
+
+        assertNotSame(session, borrow());
+    }
+
+    @Test
+    public void testFailedValidationDiscarded() throws Exception {
+        FtpFileConnection session = borrow();
+        Mockito.when(this.clients.get(0).sendNoOp()).thenReturn(false);
+        assertNotSame(session, borrow());
+        Mockito.verify(session).close();
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.teiid.spring.data.rest;
 
+import java.util.Map;
+
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -24,6 +26,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 import org.teiid.translator.ws.WSExecutionFactory;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+
 @Configuration
 @ConditionalOnClass({WSExecutionFactory.class, RestTemplateBuilder.class})
 public class RestConfiguration {
@@ -40,4 +44,20 @@ public class RestConfiguration {
     public RestConnectionFactory restConnectionFactory() {
         return new RestConnectionFactory();
     }
+
+    @Configuration
+    @ConditionalOnClass(MeterBinder.class)
+    static class RestMetricsConfiguration {
+        @Bean
+        @ConditionalOnMissingBean
+        public RestConnectionPoolMetrics restConnectionPoolMetrics(Map<String, RestConnectionFactory> factories) {
+            return new RestConnectionPoolMetrics(factories);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RestResponseCacheMetrics restResponseCacheMetrics(Map<String, RestConnectionFactory> factories) {
+            return new RestResponseCacheMetrics(factories);
+        }
+    }
 }
@@ -23,18 +23,26 @@
 package org.teiid.spring.data.rest;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import javax.activation.DataSource;
 import javax.xml.namespace.QName;
@@ -48,13 +56,18 @@ import javax.xml.ws.WebServiceException;
 import javax.xml.ws.handler.MessageContext;
 
 import org.springframework.beans.factory.BeanFactory;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.spring.data.BaseConnection;
+import org.teiid.spring.data.rest.RestResponseCache.CachedResponse;
 import org.teiid.translator.ws.WSConnection;
 import org.teiid.translator.ws.WSExecutionFactory;
 import org.teiid.util.WSUtil;
@@ -93,18 +106,55 @@ public class RestConnection implements BaseConnection, WSConnection {
         }
     }
 
+    /**
+     * Stream of a response that is not buffered, the underlying http response is released on close. It is
+     * registered with the connection until then, so that the connection can release it when the result is closed
+     * before the stream was read to the end.
+     */
+    private static final class ResponseInputStream extends FilterInputStream {
+        private final ClientHttpResponse response;
+        private final Set<ResponseInputStream> openStreams;
+
+        private ResponseInputStream(ClientHttpResponse response, Set<ResponseInputStream> openStreams)
+                throws IOException {
+            super(response.getBody());
+            this.response = response;
+            this.openStreams = openStreams;
+            openStreams.add(this);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.openStreams.remove(this);
+            try {
+                super.close();
+            } finally {
+                this.response.close();
+            }
+        }
+    }
+
     private static final class HttpDispatch implements Dispatch<DataSource> {
         private HashMap<String, Object> requestContext = new HashMap<String, Object>();
         private HashMap<String, Object> responseContext = new HashMap<String, Object>();
         private String endpoint;
         private RestTemplate template;
         private BeanFactory beanFactory;
+        private long responseBufferThreshold;
+        private RestResponseCache responseCache;
+        private Set<ResponseInputStream> openStreams;
+        private Supplier<String> reauthorizer;
 
         public HttpDispatch(String endpoint, RestTemplate template, BeanFactory beanFactory, String binding,
-                Map<String, List<String>> inHeaders) {
+                Map<String, List<String>> inHeaders, long responseBufferThreshold, RestResponseCache responseCache,
+                Set<ResponseInputStream> openStreams, Supplier<String> reauthorizer) {
             this.endpoint = endpoint;
+            this.reauthorizer = reauthorizer;
+            this.openStreams = openStreams;
             this.template = template;
             this.beanFactory = beanFactory;
+            this.responseBufferThreshold = responseBufferThreshold;
+            this.responseCache = responseCache;
 
             Map<String, List<String>> httpHeaders = new HashMap<String, List<String>>();
             httpHeaders.put("Content-Type", Collections.singletonList("text/xml; charset=utf-8"));//$NON-NLS-1$ //$NON-NLS-2$
@@ -124,12 +174,18 @@ public class RestConnection implements BaseConnection, WSConnection {
                 HttpMethod httpMethod = HttpMethod.resolve(method);
 
                 HttpHeaders headers = new HttpHeaders();
+                boolean useCache = true;
+                long cacheTtl = -1;
                 Map<String, List<String>> header = (Map<String, List<String>>) this.requestContext
                         .get(MessageContext.HTTP_REQUEST_HEADERS);
                 if (header != null) {
                     for (Map.Entry<String, List<String>> entry : header.entrySet()) {
                         if (entry.getKey().equals("T-Spring-Bean")) {
-                            headers = (HttpHeaders)beanFactory.getBean(entry.getValue().get(0));
+                            headers.addAll((HttpHeaders)beanFactory.getBean(entry.getValue().get(0)));
+                        } else if (entry.getKey().equals(RestResponseCache.CACHE_HEADER)) {
+                            useCache = Boolean.parseBoolean(entry.getValue().get(0));
+                        } else if (entry.getKey().equals(RestResponseCache.CACHE_TTL_HEADER)) {
+                            cacheTtl = Long.parseLong(entry.getValue().get(0)) * 1000;
                         } else {
                             headers.addAll(entry.getKey(), entry.getValue());
                         }
@@ -141,17 +197,98 @@ public class RestConnection implements BaseConnection, WSConnection {
                 if (msg != null) {
                     payload = msg.getInputStream();
                 }
+                if (payload != null && this.reauthorizer != null) {
+                    // read up front, so that it can be sent again with a new token
+                    payload = new ByteArrayInputStream(StreamUtils.copyToByteArray(payload));
+                }
+
+                RestResponseCache cache = null;
+                String cacheKey = null;
+                CachedResponse cached = null;
+                long now = System.currentTimeMillis();
+                ClientHttpResponse response = null;
+                boolean reauthorized = false;
+                while (response == null) {
+                    if (this.responseCache != null && useCache && httpMethod == HttpMethod.GET && payload == null) {
+                        cache = this.responseCache;
+                        cacheKey = RestResponseCache.key(url.toURI(), headers);
+                        cached = cache.get(cacheKey);
+                        if (cached != null) {
+                            if (cached.isFresh(now)) {
+                                cache.recordHit();
+                                return fromCache(url, cached);
+                            }
+                            if (!cached.canRevalidate()) {
+                                cache.evict(cacheKey);
+                                cached = null;
+                            }
+                        }
+                    }
+
+                    response = execute(url, httpMethod, headers, cached, payload);
+                    if (this.reauthorizer != null && !reauthorized
+                            && response.getRawStatusCode() == HttpStatus.UNAUTHORIZED.value()) {
+                        // the token may have been revoked before its expiry, retry once with a new one
+                        response.close();
+                        response = null;
+                        reauthorized = true;
+                        headers.set(HttpHeaders.AUTHORIZATION, this.reauthorizer.get());
+                        if (payload != null) {
+                            payload.reset();
+                        }
+                    }
+                }
+                try {
+                    if (cached != null && response.getRawStatusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                        long expiresAt = cache.expiresAt(response.getHeaders(), now, cacheTtl);
+                        if (expiresAt < 0) {
+                            cache.evict(cacheKey);
+                        } else {
+                            cached.revalidated(response.getHeaders(), expiresAt);
+                        }
+                        response.close();
+                        cache.recordHit();
+                        return fromCache(url, cached);
+                    }
+                    if (cache != null) {
+                        cache.recordMiss();
+                    }
+
+                    ResponseErrorHandler errorHandler = this.template.getErrorHandler();
+                    if (errorHandler.hasError(response)) {
+                        errorHandler.handleError(url.toURI(), httpMethod, response);
+                    }
 
-                HttpEntity<InputStream> entity = new HttpEntity<InputStream>(payload, headers);
-                ResponseEntity<byte[]> response = template.exchange(url.toURI(), httpMethod, entity,
-                        byte[].class);
+                    MediaType contentType = response.getHeaders().getContentType();
+                    for (Entry<String, List<String>> entry : response.getHeaders().entrySet()) {
+                        getResponseContext().put(entry.getKey(), entry.getValue());
+                    }
+                    getResponseContext().put(WSConnection.STATUS_CODE, response.getRawStatusCode());
+
+                    long length = response.getHeaders().getContentLength();
+                    if (cache != null && response.getRawStatusCode() == HttpStatus.OK.value()
+                            && length <= cache.getMaxEntrySize()) {
+                        long expiresAt = cache.expiresAt(response.getHeaders(), now, cacheTtl);
+                        if (RestResponseCache.isStorable(response.getHeaders(), expiresAt, now)) {
+                            InputStream body = cacheResponse(cache, cacheKey, response, expiresAt);
+                            return new HttpDataSource(url, body, contentType == null ? null : contentType.toString());
+                        }
+                    }
 
-                String contentType = response.getHeaders().getContentType().toString();
-                for (Entry<String, List<String>> entry : response.getHeaders().entrySet()) {
-                    getResponseContext().put(entry.getKey(), entry.getValue());
+                    // small responses are read fully and the connection released right away, rest are streamed
+                    // to the translator
+                    InputStream body = null;
+                    if (length >= 0 && length <= this.responseBufferThreshold) {
+                        body = new BufferingClientHttpResponseWrapper(response).getBody();
+                        response.close();
+                    } else {
+                        body = new ResponseInputStream(response, this.openStreams);
+                    }
+                    return new HttpDataSource(url, body, contentType == null ? null : contentType.toString());
+                } catch (IOException | RuntimeException e) {
+                    response.close();
+                    throw e;
                 }
-                getResponseContext().put(WSConnection.STATUS_CODE, response.getStatusCode().value());
-                return new HttpDataSource(url, new ByteArrayInputStream(response.getBody()), contentType);
             } catch (IOException e) {
                 throw new WebServiceException(e);
             } catch (URISyntaxException e) {
@@ -159,6 +296,70 @@ public class RestConnection implements BaseConnection, WSConnection {
             }
         }
 
+        /**
+         * Executes the request directly rather than through the RestTemplate#execute, as that closes the response
+         * before the translator gets to read the body.
+         */
+        private ClientHttpResponse execute(URL url, HttpMethod httpMethod, HttpHeaders headers,
+                CachedResponse cached, InputStream payload) throws IOException, URISyntaxException {
+            ClientHttpRequest request = this.template.getRequestFactory().createRequest(url.toURI(), httpMethod);
+            request.getHeaders().putAll(headers);
+            if (request.getHeaders().getAccept().isEmpty()) {
+                // same as the RestTemplate sets for a byte[] response
+                request.getHeaders().setAccept(Arrays.asList(MediaType.APPLICATION_OCTET_STREAM, MediaType.ALL));
+            }
+            if (cached != null) {
+                String etag = cached.getHeaders().getETag();
+                if (etag != null) {
+                    request.getHeaders().setIfNoneMatch(etag);
+                }
+                long lastModified = cached.getHeaders().getLastModified();
+                if (lastModified >= 0) {
+                    request.getHeaders().setIfModifiedSince(lastModified);
+                }
+            }
+            if (payload != null) {
+                StreamUtils.copy(payload, request.getBody());
+            }
+            return request.execute();
+        }
+
+        /**
+         * Reads the response into the cache, unless it turns out to be larger than allowed in which case the
+         * rest of it is streamed.
+         */
+        private InputStream cacheResponse(RestResponseCache cache, String cacheKey, ClientHttpResponse response,
+                long expiresAt) throws IOException {
+            long max = cache.getMaxEntrySize();
+            InputStream in = response.getBody();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+            int read = 0;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                if (out.size() > max) {
+                    return new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()),
+                            new ResponseInputStream(response, this.openStreams));
+                }
+            }
+            response.close();
+            byte[] bytes = out.toByteArray();
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(response.getHeaders());
+            cache.put(cacheKey, new CachedResponse(bytes, headers, expiresAt));
+            return new ByteArrayInputStream(bytes);
+        }
+
+        private DataSource fromCache(URL url, CachedResponse cached) {
+            for (Entry<String, List<String>> entry : cached.getHeaders().entrySet()) {
+                getResponseContext().put(entry.getKey(), entry.getValue());
+            }
+            getResponseContext().put(WSConnection.STATUS_CODE, HttpStatus.OK.value());
+            MediaType contentType = cached.getHeaders().getContentType();
+            return new HttpDataSource(url, new ByteArrayInputStream(cached.getBody()),
+                    contentType == null ? null : contentType.toString());
+        }
+
         @Override
         public Map<String, Object> getRequestContext() {
             return this.requestContext;
@@ -255,7 +456,8 @@ public class RestConnection implements BaseConnection, WSConnection {
             }
         }
         Dispatch<T> dispatch = (Dispatch<T>) new HttpDispatch(endpoint, this.template, this.beanFactory, binding,
-                this.headers);
+                this.headers, this.responseBufferThreshold, this.responseCache, this.openStreams,
+                this.reauthorizer == null ? null : this::reauthorize);
         return dispatch;
     }
 
@@ -263,6 +465,11 @@ public class RestConnection implements BaseConnection, WSConnection {
     private BeanFactory beanFactory;
     private Map<String, List<String>> headers;
     private String endpoint;
+    private long responseBufferThreshold;
+    private RestResponseCache responseCache;
+    private Supplier<String> reauthorizer;
+    private final Set<ResponseInputStream> openStreams = Collections
+            .newSetFromMap(new ConcurrentHashMap<ResponseInputStream, Boolean>());
 
     public RestConnection(RestTemplate template, BeanFactory beanFactory) {
         this(template, beanFactory, null, null);
@@ -270,14 +477,61 @@ public class RestConnection implements BaseConnection, WSConnection {
 
     public RestConnection(RestTemplate template, BeanFactory beanFactory, String endpoint,
             Map<String, List<String>> headers) {
+        this(template, beanFactory, endpoint, headers, RestConnectionFactory.DEFAULT_RESPONSE_BUFFER_THRESHOLD);
+    }
+
+    /**
+     * @param responseBufferThreshold responses with known length up to this many bytes are read into memory,
+     * others are streamed
+     */
+    public RestConnection(RestTemplate template, BeanFactory beanFactory, String endpoint,
+            Map<String, List<String>> headers, long responseBufferThreshold) {
+        this(template, beanFactory, endpoint, headers, responseBufferThreshold, null);
+    }
+
+    /**
+     * @param responseCache cache of the GET responses, null when not caching
+     */
+    public RestConnection(RestTemplate template, BeanFactory beanFactory, String endpoint,
+            Map<String, List<String>> headers, long responseBufferThreshold, RestResponseCache responseCache) {
+        this(template, beanFactory, endpoint, headers, responseBufferThreshold, responseCache, null);
+    }
+
+    /**
+     * @param reauthorizer discards the rejected token and returns the Authorization header value with a new one,
+     * called when a request is answered with 401, which is then sent once more. Null when not using tokens.
+     */
+    public RestConnection(RestTemplate template, BeanFactory beanFactory, String endpoint,
+            Map<String, List<String>> headers, long responseBufferThreshold, RestResponseCache responseCache,
+            Supplier<String> reauthorizer) {
         this.template = template;
         this.beanFactory = beanFactory;
         this.headers = headers;
         this.endpoint = endpoint;
+        this.responseBufferThreshold = responseBufferThreshold;
+        this.responseCache = responseCache;
+        this.reauthorizer = reauthorizer;
     }
 
+    private String reauthorize() {
+        String authorization = this.reauthorizer.get();
+        // the later requests of this connection use the new token too
+        this.headers.put(HttpHeaders.AUTHORIZATION, Collections.singletonList(authorization));
+        return authorization;
+    }
+
+    /**
+     * Releases the http responses of the results that were closed before their stream was fully read
+     */
     @Override
     public void close() throws Exception {
+        for (ResponseInputStream stream : new ArrayList<>(this.openStreams)) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // the connection is discarded by the pool
+            }
+        }
     }
 
     @Override
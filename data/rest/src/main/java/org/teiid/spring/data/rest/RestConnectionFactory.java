@@ -17,11 +17,19 @@
 package org.teiid.spring.data.rest;
 
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustAllStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.ssl.SSLContexts;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +42,7 @@ import org.springframework.social.support.FormMapHttpMessageConverter;
 import org.springframework.social.support.LoggingErrorHandler;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.web.client.RestTemplate;
+import org.teiid.spring.common.TokenManager;
 import org.teiid.spring.data.BaseConnectionFactory;
 import org.teiid.spring.data.ConnectionFactoryConfiguration;
 
@@ -44,6 +53,8 @@ import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ConnectionFactoryConfiguration(
         alias = "rest",
@@ -52,6 +63,7 @@ import java.util.Map;
         )
 public class RestConnectionFactory implements BaseConnectionFactory<RestConnection> {
     private static final String AUTHORIZATION = "Authorization"; //$NON-NLS-1$
+    static final long DEFAULT_RESPONSE_BUFFER_THRESHOLD = 64 * 1024;
 
     private String securityType;
     private String clientId;
@@ -65,18 +77,33 @@ public class RestConnectionFactory implements BaseConnectionFactory<RestConnecti
     private String endpoint;
     private boolean disableTrustManager = true;
     private boolean disableHostNameVerification;
+    private long responseBufferThreshold = DEFAULT_RESPONSE_BUFFER_THRESHOLD;
+    private int maxTotalConnections = 100;
+    private int maxConnectionsPerRoute = 20;
+    private int connectTimeout = 30000;
+    private int readTimeout = 300000;
+    private int connectionRequestTimeout = 30000;
+    private long keepAliveTimeout = 30000;
+    private long idleConnectionTimeout = 60000;
+    private long tokenRefreshMargin = TokenManager.DEFAULT_REFRESH_MARGIN;
+    private long responseCacheSize;
+    private long responseCacheMaxEntrySize = 1024 * 1024;
+    private long responseCacheTtl;
 
     @Value("${teiid.ssl.trustStoreFileName:/etc/tls/private/truststore.pkcs12}")
     private String trustStoreFileName;
     @Value("${teiid.ssl.trustStorePassword:changeit}")
     private String trustStorePassword;
 
-    private RestTemplate template;
+    private volatile RestTemplate template;
+    private CloseableHttpClient httpClient;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private RestResponseCache responseCache;
 
     @Autowired
     private BeanFactory beanFactory;
 
-    private AccessGrant accessGrant;
+    private volatile TokenManager<AccessGrant> tokenManager;
 
     public RestConnectionFactory() {
     }
@@ -84,11 +111,20 @@ public class RestConnectionFactory implements BaseConnectionFactory<RestConnecti
     @Override
     public RestConnection getConnection() throws Exception {
         if (this.template == null) {
-            this.template = createRestTemplate();
+            synchronized (this) {
+                if (this.template == null) {
+                    if (this.responseCacheSize > 0) {
+                        this.responseCache = new RestResponseCache(this.responseCacheSize,
+                                this.responseCacheMaxEntrySize, this.responseCacheTtl);
+                    }
+                    this.template = createRestTemplate();
+                }
+            }
         }
         if (this.securityType == null) {
             Map<String, List<String>> headers = new HashMap<>();
-            return new RestConnection(template, beanFactory, this.endpoint, headers);
+            return new RestConnection(template, beanFactory, this.endpoint, headers, this.responseBufferThreshold,
+                    this.responseCache);
         }
         else if (this.securityType.contentEquals("http-basic")) {
             if (this.username == null || this.password == null) {
@@ -98,25 +134,43 @@ public class RestConnectionFactory implements BaseConnectionFactory<RestConnecti
             Map<String, List<String>> headers = new HashMap<>();
             String str = this.username+":"+this.password;
             headers.put(AUTHORIZATION,Arrays.asList("Basic "+Base64.getEncoder().encodeToString(str.getBytes())));
-            return new RestConnection(this.template, this.beanFactory, this.endpoint, headers);
+            return new RestConnection(this.template, this.beanFactory, this.endpoint, headers,
+                    this.responseBufferThreshold, this.responseCache);
         } else if (securityType.contentEquals("openid-connect")) {
-            if (!isAccessTokenValid()) {
-                refreshAccessToken();
-            }
+            TokenManager<AccessGrant> manager = getTokenManager();
+            AtomicReference<AccessGrant> accessGrant = new AtomicReference<>(manager.getToken());
             Map<String, List<String>> headers = new HashMap<>();
-            headers.put(AUTHORIZATION, Arrays.asList("Bearer "+this.accessGrant.getAccessToken()));
-            return new RestConnection(this.template, this.beanFactory, this.endpoint, headers);
+            headers.put(AUTHORIZATION, Arrays.asList("Bearer "+accessGrant.get().getAccessToken()));
+            return new RestConnection(this.template, this.beanFactory, this.endpoint, headers,
+                    this.responseBufferThreshold, this.responseCache, () -> {
+                        // rejected by the server, such as when revoked, the other connections get the new one too
+                        manager.invalidate(accessGrant.get());
+                        accessGrant.set(manager.getToken());
+                        return "Bearer " + accessGrant.get().getAccessToken();
+                    });
         } else {
             throw new IllegalStateException("Unsupported authentication for Rest layer " + this.securityType);
         }
     }
 
-    private void refreshAccessToken() {
+    private TokenManager<AccessGrant> getTokenManager() {
+        if (this.tokenManager == null) {
+            synchronized (this) {
+                if (this.tokenManager == null) {
+                    this.tokenManager = new TokenManager<>(this::fetchAccessToken, AccessGrant::getExpireTime,
+                            this.tokenRefreshMargin);
+                }
+            }
+        }
+        return this.tokenManager;
+    }
+
+    private AccessGrant fetchAccessToken() {
         RestOAuth2Template t = new RestOAuth2Template(this.clientId, this.clientSecret, this.authorizeUrl,
                 this.accessTokenUrl, this.template);
         if (this.refreshToken == null) {
             if (this.username != null && this.password != null) {
-                this.accessGrant = t.exchangeCredentialsForAccess(this.username, this.password,
+                return t.exchangeCredentialsForAccess(this.username, this.password,
                         new LinkedMultiValueMap<String, String>());
             } else {
                 throw new IllegalStateException("openid-connect authentication configured, "
@@ -125,18 +179,13 @@ public class RestConnectionFactory implements BaseConnectionFactory<RestConnecti
         } else {
             LinkedMultiValueMap<String, String> params = new LinkedMultiValueMap<String, String>();
             params.add("scope", this.scope);
-            this.accessGrant = t.refreshAccess(this.refreshToken, params);
-        }
-    }
-
-    private boolean isAccessTokenValid() {
-        if (this.accessGrant == null) {
-            return false;
-        }
-        if (this.accessGrant.getExpireTime() != null) {
-            return this.accessGrant.getExpireTime() > System.currentTimeMillis();
+            AccessGrant grant = t.refreshAccess(this.refreshToken, params);
+            if (grant.getRefreshToken() != null) {
+                // the server may rotate the refresh token
+                this.refreshToken = grant.getRefreshToken();
+            }
+            return grant;
         }
-        return this.accessGrant.getAccessToken() != null;
     }
 
     protected RestTemplate createRestTemplate() {
@@ -158,9 +207,30 @@ public class RestConnectionFactory implements BaseConnectionFactory<RestConnecti
                         this.disableHostNameVerification ? NoopHostnameVerifier.INSTANCE : null);
             }
 
-            CloseableHttpClient httpClient = HttpClients.custom().setSSLSocketFactory(csf).build();
+            Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", csf).build();
+            this.connectionManager = new PoolingHttpClientConnectionManager(registry);
+            this.connectionManager.setMaxTotal(this.maxTotalConnections);
+            this.connectionManager.setDefaultMaxPerRoute(this.maxConnectionsPerRoute);
+
+            RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(this.connectTimeout)
+                    .setSocketTimeout(this.readTimeout).setConnectionRequestTimeout(this.connectionRequestTimeout)
+                    .build();
+
+            this.httpClient = HttpClients.custom().setConnectionManager(this.connectionManager)
+                    .setDefaultRequestConfig(requestConfig)
+                    .setKeepAliveStrategy((response, context) -> {
+                        // use the server's Keep-Alive header when provided
+                        long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response,
+                                context);
+                        return duration > 0 ? duration : this.keepAliveTimeout;
+                    })
+                    .evictExpiredConnections()
+                    .evictIdleConnections(this.idleConnectionTimeout, TimeUnit.MILLISECONDS)
+                    .build();
             HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
-            requestFactory.setHttpClient(httpClient);
+            requestFactory.setHttpClient(this.httpClient);
             RestTemplate restTemplate = new RestTemplate(requestFactory);
             restTemplate.getMessageConverters().add(new FormHttpMessageConverter());
             restTemplate.getMessageConverters().add(new FormMapHttpMessageConverter());
@@ -272,6 +342,159 @@ public class RestConnectionFactory implements BaseConnectionFactory<RestConnecti
         this.disableHostNameVerification = disableHostNameVerification;
     }
 
+    /**
+     * Responses with a known length up to this many bytes are read into memory, larger responses or the ones
+     * without length are streamed to the query as they are read.
+     * @return threshold in bytes
+     */
+    public long getResponseBufferThreshold() {
+        return responseBufferThreshold;
+    }
+
+    public void setResponseBufferThreshold(long responseBufferThreshold) {
+        this.responseBufferThreshold = responseBufferThreshold;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Time in milliseconds to establish the connection, 0 is infinite
+     * @return
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Maximum time in milliseconds of inactivity between two data packets, 0 is infinite
+     * @return
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Time in milliseconds to wait for a connection from the pool, 0 is infinite
+     * @return
+     */
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    /**
+     * Time in milliseconds a connection is kept alive when the service does not say otherwise
+     * @return
+     */
+    public long getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(long keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    /**
+     * Time in milliseconds after which an idle connection is closed
+     * @return
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    /**
+     * Time in milliseconds before the expiry of the OAuth access token when it is refreshed.
+     * @return
+     */
+    public long getTokenRefreshMargin() {
+        return tokenRefreshMargin;
+    }
+
+    public void setTokenRefreshMargin(long tokenRefreshMargin) {
+        this.tokenRefreshMargin = tokenRefreshMargin;
+    }
+
+    /**
+     * Maximum total bytes of the GET responses kept in memory, 0 disables the response cache
+     * @return
+     */
+    public long getResponseCacheSize() {
+        return responseCacheSize;
+    }
+
+    public void setResponseCacheSize(long responseCacheSize) {
+        this.responseCacheSize = responseCacheSize;
+    }
+
+    /**
+     * Responses larger than this many bytes are not cached
+     * @return
+     */
+    public long getResponseCacheMaxEntrySize() {
+        return responseCacheMaxEntrySize;
+    }
+
+    public void setResponseCacheMaxEntrySize(long responseCacheMaxEntrySize) {
+        this.responseCacheMaxEntrySize = responseCacheMaxEntrySize;
+    }
+
+    /**
+     * Time in milliseconds a cached response is used without revalidation, when the service does not send
+     * Cache-Control max-age or Expires headers
+     * @return
+     */
+    public long getResponseCacheTtl() {
+        return responseCacheTtl;
+    }
+
+    public void setResponseCacheTtl(long responseCacheTtl) {
+        this.responseCacheTtl = responseCacheTtl;
+    }
+
+    /**
+     * @return the response cache, null when not enabled or no connection has been made yet.
+     */
+    public RestResponseCache responseCache() {
+        return this.responseCache;
+    }
+
+    /**
+     * @return the connection pool statistics, null when no connection has been made yet.
+     */
+    public PoolStats connectionPoolStats() {
+        PoolingHttpClientConnectionManager cm = this.connectionManager;
+        return cm == null ? null : cm.getTotalStats();
+    }
+
     public String getTrustStoreFileName() {
         return trustStoreFileName;
     }
@@ -290,5 +513,8 @@ public class RestConnectionFactory implements BaseConnectionFactory<RestConnecti
 
     @Override
     public void close() throws IOException {
+        if (this.httpClient != null) {
+            this.httpClient.close();
+        }
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.rest;
+
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import org.apache.http.pool.PoolStats;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Reports the utilization of the http connection pool of each Rest based connection factory.
+ */
+public class RestConnectionPoolMetrics implements MeterBinder {
+    private Map<String, RestConnectionFactory> factories;
+
+    public RestConnectionPoolMetrics(Map<String, RestConnectionFactory> factories) {
+        this.factories = factories;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.factories.forEach((name, factory) -> {
+            gauge(registry, name, factory, "teiid.rest.connections.leased", "Connections in use", PoolStats::getLeased);
+            gauge(registry, name, factory, "teiid.rest.connections.available", "Idle connections in the pool",
+                    PoolStats::getAvailable);
+            gauge(registry, name, factory, "teiid.rest.connections.pending", "Requests waiting for a connection",
+                    PoolStats::getPending);
+            gauge(registry, name, factory, "teiid.rest.connections.max", "Maximum connections in the pool",
+                    PoolStats::getMax);
+        });
+    }
+
+    private static void gauge(MeterRegistry registry, String name, RestConnectionFactory factory, String metric,
+            String description, ToIntFunction<PoolStats> value) {
+        Gauge.builder(metric, factory, f -> {
+            PoolStats stats = f.connectionPoolStats();
+            return stats == null ? 0 : value.applyAsInt(stats);
+        }).tag("source", name).description(description).register(registry);
+    }
+}
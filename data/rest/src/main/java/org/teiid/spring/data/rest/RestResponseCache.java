@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.rest;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.http.HttpHeaders;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Keeps the GET responses of a Rest based source in memory, bounded by the total size of the response bodies.
+ * A response is served from the cache while it is fresh according to its Cache-Control max-age or Expires headers,
+ * afterwards it is revalidated with the service using its ETag or Last-Modified headers.
+ */
+public class RestResponseCache {
+    /**
+     * pseudo header used on the invokeHttp procedure to turn off the cache for a request
+     */
+    public static final String CACHE_HEADER = "T-Spring-Cache"; //$NON-NLS-1$
+    /**
+     * pseudo header used on the invokeHttp procedure to set the freshness in seconds of a response that does not
+     * define its own
+     */
+    public static final String CACHE_TTL_HEADER = "T-Spring-Cache-Ttl"; //$NON-NLS-1$
+
+    static final class CachedResponse {
+        private final byte[] body;
+        private volatile HttpHeaders headers;
+        private volatile long expiresAt;
+
+        CachedResponse(byte[] body, HttpHeaders headers, long expiresAt) {
+            this.body = body;
+            this.headers = headers;
+            this.expiresAt = expiresAt;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        boolean isFresh(long now) {
+            return now < this.expiresAt;
+        }
+
+        boolean canRevalidate() {
+            return RestResponseCache.canRevalidate(this.headers);
+        }
+
+        /**
+         * the service responded "304 Not Modified", take the new freshness from its headers
+         */
+        void revalidated(HttpHeaders notModified, long expiresAt) {
+            HttpHeaders merged = new HttpHeaders();
+            merged.putAll(this.headers);
+            notModified.forEach((name, values) -> {
+                if (!name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                    merged.put(name, values);
+                }
+            });
+            this.headers = merged;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Cache<String, CachedResponse> cache;
+    private final long maxEntrySize;
+    private final long defaultTtl;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize maximum total bytes of the cached response bodies
+     * @param maxEntrySize responses larger than this many bytes are not cached
+     * @param defaultTtl time in milliseconds a response is fresh when the service does not say otherwise
+     */
+    public RestResponseCache(long maxSize, long maxEntrySize, long defaultTtl) {
+        this.cache = Caffeine.newBuilder().maximumWeight(maxSize)
+                .weigher((String key, CachedResponse value) -> key.length() + value.getBody().length).build();
+        this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+        this.defaultTtl = defaultTtl;
+    }
+
+    static String key(URI uri, HttpHeaders requestHeaders) {
+        // the request headers are part of the key, so that the responses for different credentials are not mixed
+        StringBuilder sb = new StringBuilder(uri.toString());
+        for (Map.Entry<String, List<String>> entry : new TreeMap<>(requestHeaders).entrySet()) {
+            sb.append('\n').append(entry.getKey().toLowerCase()).append(':').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    CachedResponse get(String key) {
+        return this.cache.getIfPresent(key);
+    }
+
+    void put(String key, CachedResponse response) {
+        this.cache.put(key, response);
+    }
+
+    void evict(String key) {
+        this.cache.invalidate(key);
+    }
+
+    void recordHit() {
+        this.hits.increment();
+    }
+
+    void recordMiss() {
+        this.misses.increment();
+    }
+
+    /**
+     * @return number of GET requests answered from the cache, including the ones revalidated with the service
+     */
+    public long hitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return number of cacheable GET requests whose response was read from the service
+     */
+    public long missCount() {
+        return this.misses.sum();
+    }
+
+    public void clear() {
+        this.cache.invalidateAll();
+    }
+
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+    long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    static boolean canRevalidate(HttpHeaders responseHeaders) {
+        return responseHeaders.getETag() != null || responseHeaders.getLastModified() >= 0;
+    }
+
+    /**
+     * A response that is already stale and can not be revalidated would only be evicted on its next use
+     */
+    static boolean isStorable(HttpHeaders responseHeaders, long expiresAt, long now) {
+        return expiresAt > now || (expiresAt >= 0 && canRevalidate(responseHeaders));
+    }
+
+    /**
+     * Time until which the response is fresh, based on the Cache-Control and Expires response headers, or the
+     * given ttl when the service does not define it.
+     *
+     * @param ttl time in milliseconds, negative to use the default of this cache
+     * @return -1 when the response must not be stored
+     */
+    long expiresAt(HttpHeaders responseHeaders, long now, long ttl) {
+        String cacheControl = responseHeaders.getCacheControl();
+        if (cacheControl != null) {
+            Long maxAge = null;
+            for (String directive : cacheControl.split(",")) { //$NON-NLS-1$
+                directive = directive.trim().toLowerCase();
+                if (directive.equals("no-store")) { //$NON-NLS-1$
+                    return -1;
+                }
+                if (directive.equals("no-cache")) { //$NON-NLS-1$
+                    maxAge = 0L;
+                } else if (directive.startsWith("max-age=") && maxAge == null) { //$NON-NLS-1$
+                    try {
+                        maxAge = Long.parseLong(directive.substring(8).replace("\"", "")) * 1000;
+                    } catch (NumberFormatException e) {
+                        maxAge = 0L;
+                    }
+                }
+            }
+            if (maxAge != null) {
+                return now + maxAge;
+            }
+        }
+        long expires = responseHeaders.getExpires();
+        if (expires >= 0) {
+            long date = now;
+            try {
+                if (responseHeaders.getDate() >= 0) {
+                    date = responseHeaders.getDate();
+                }
+            } catch (IllegalArgumentException e) {
+                // invalid Date header, use the local time
+            }
+            return now + Math.max(0, expires - date);
+        }
+        return now + (ttl >= 0 ? ttl : this.defaultTtl);
+    }
+}
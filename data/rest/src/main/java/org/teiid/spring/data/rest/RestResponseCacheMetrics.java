@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.rest;
+
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Reports the hits and misses of the response cache of each Rest based connection factory.
+ */
+public class RestResponseCacheMetrics implements MeterBinder {
+    private Map<String, RestConnectionFactory> factories;
+
+    public RestResponseCacheMetrics(Map<String, RestConnectionFactory> factories) {
+        this.factories = factories;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.factories.forEach((name, factory) -> {
+            if (factory.getResponseCacheSize() <= 0) {
+                return;
+            }
+            counter(registry, name, factory, "hit", "Requests answered from the cache", RestResponseCache::hitCount);
+            counter(registry, name, factory, "miss", "Requests read from the service",
+                    RestResponseCache::missCount);
+            Gauge.builder("teiid.rest.cache.size", factory, f -> {
+                RestResponseCache cache = f.responseCache();
+                return cache == null ? 0 : cache.size();
+            }).tag("source", name).description("Cached responses").register(registry);
+        });
+    }
+
+    private static void counter(MeterRegistry registry, String name, RestConnectionFactory factory, String result,
+            String description, ToDoubleFunction<RestResponseCache> value) {
+        FunctionCounter.builder("teiid.rest.cache.gets", factory, f -> {
+            RestResponseCache cache = f.responseCache();
+            return cache == null ? 0 : value.applyAsDouble(cache);
+        }).tags("source", name, "result", result).description(description).register(registry);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.activation.DataSource;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.Service.Mode;
+import javax.xml.ws.handler.MessageContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.teiid.translator.ws.WSExecutionFactory;
+
+public class TestRestConnection {
+    private static final String ENDPOINT = "http://localhost/api";
+
+    private RestTemplate template;
+    private MockRestServiceServer server;
+    private Map<String, List<String>> headers;
+    private AtomicInteger reauthorized;
+
+    @Before
+    public void setup() {
+        this.template = new RestTemplate();
+        this.server = MockRestServiceServer.bindTo(this.template).build();
+        this.headers = new HashMap<>();
+        this.headers.put("Authorization", Collections.singletonList("Bearer old"));
+        this.reauthorized = new AtomicInteger();
+    }
+
+    private RestConnection connection() {
+        return new RestConnection(this.template, null, ENDPOINT, this.headers,
+                RestConnectionFactory.DEFAULT_RESPONSE_BUFFER_THRESHOLD, null,
+                () -> "Bearer new" + this.reauthorized.incrementAndGet());
+    }
+
+    private static String invoke(RestConnection connection, String method, String payload) throws IOException {
+        Dispatch<DataSource> dispatch = connection.createDispatch(WSExecutionFactory.Binding.HTTP.getBindingId(),
+                null, DataSource.class, Mode.MESSAGE);
+        dispatch.getRequestContext().put(MessageContext.HTTP_REQUEST_METHOD, method);
+        DataSource result = dispatch.invoke(payload == null ? null : new DataSource() {
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public String getContentType() {
+                return MediaType.TEXT_PLAIN_VALUE;
+            }
+
+            @Override
+            public String getName() {
+                return null;
+            }
+        });
+        try (InputStream in = result.getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testUnauthorizedRetriedWithNewToken() throws Exception {
+        this.server.expect(requestTo(ENDPOINT)).andExpect(method(HttpMethod.POST))
+                .andExpect(header("Authorization", "Bearer old")).andExpect(content().string("payload"))
+                .andRespond(withStatus(HttpStatus.UNAUTHORIZED));
+        this.server.expect(requestTo(ENDPOINT)).andExpect(method(HttpMethod.POST))
+                .andExpect(header("Authorization", "Bearer new1")).andExpect(content().string("payload"))
+                .andRespond(withSuccess("ok", MediaType.TEXT_PLAIN));
+        // the later requests of the connection use the new token
+        this.server.expect(requestTo(ENDPOINT)).andExpect(header("Authorization", "Bearer new1"))
+                .andRespond(withSuccess("again", MediaType.TEXT_PLAIN));
+
+        RestConnection connection = connection();
+        assertEquals("ok", invoke(connection, "POST", "payload"));
+        assertEquals("again", invoke(connection, "GET", null));
+        assertEquals(1, this.reauthorized.get());
+        this.server.verify();
+    }
+
+    @Test
+    public void testUnauthorizedRetriedOnce() throws Exception {
+        this.server.expect(ExpectedCount.twice(), requestTo(ENDPOINT))
+                .andRespond(withStatus(HttpStatus.UNAUTHORIZED));
+
+        try {
+            invoke(connection(), "GET", null);
+            fail();
+        } catch (HttpClientErrorException e) {
+            assertEquals(HttpStatus.UNAUTHORIZED, e.getStatusCode());
+        }
+        assertEquals(1, this.reauthorized.get());
+        this.server.verify();
+    }
+}
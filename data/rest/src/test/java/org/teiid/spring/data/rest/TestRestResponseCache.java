@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.activation.DataSource;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.Service.Mode;
+import javax.xml.ws.handler.MessageContext;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+import org.teiid.translator.ws.WSExecutionFactory;
+
+public class TestRestResponseCache {
+    private static final String ENDPOINT = "http://localhost/api";
+
+    private RestTemplate template;
+    private MockRestServiceServer server;
+    private RestResponseCache cache;
+
+    @Before
+    public void setup() {
+        this.template = new RestTemplate();
+        this.server = MockRestServiceServer.bindTo(this.template).build();
+        this.cache = new RestResponseCache(1024, 100, 0);
+    }
+
+    private String get(Map<String, List<String>> requestHeaders) throws IOException {
+        RestConnection connection = new RestConnection(this.template, null, ENDPOINT, new HashMap<>(),
+                RestConnectionFactory.DEFAULT_RESPONSE_BUFFER_THRESHOLD, this.cache);
+        Dispatch<DataSource> dispatch = connection.createDispatch(WSExecutionFactory.Binding.HTTP.getBindingId(),
+                null, DataSource.class, Mode.MESSAGE);
+        dispatch.getRequestContext().put(MessageContext.HTTP_REQUEST_METHOD, "GET");
+        @SuppressWarnings("unchecked")
+        Map<String, List<String>> headers = (Map<String, List<String>>) dispatch.getRequestContext()
+                .get(MessageContext.HTTP_REQUEST_HEADERS);
+        headers.putAll(requestHeaders);
+        try (InputStream in = dispatch.invoke(null).getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private String get() throws IOException {
+        return get(Collections.emptyMap());
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(name, value);
+        return headers;
+    }
+
+    @Test
+    public void testFreshResponseServedFromCache() throws Exception {
+        this.server.expect(ExpectedCount.once(), requestTo(ENDPOINT)).andRespond(
+                withSuccess("a", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+
+        assertEquals("a", get());
+        assertEquals("a", get());
+        this.server.verify();
+        assertEquals(1, this.cache.hitCount());
+        assertEquals(1, this.cache.missCount());
+        assertEquals(1, this.cache.size());
+    }
+
+    @Test
+    public void testStaleResponseRevalidated() throws Exception {
+        this.server.expect(requestTo(ENDPOINT)).andRespond(
+                withSuccess("a", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.ETAG, "\"1\"")));
+        this.server.expect(requestTo(ENDPOINT)).andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+        this.server.expect(requestTo(ENDPOINT)).andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+                .andRespond(withSuccess("b", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.ETAG, "\"2\"")));
+
+        assertEquals("a", get());
+        assertEquals("a", get());
+        assertEquals("b", get());
+        this.server.verify();
+        assertEquals(1, this.cache.hitCount());
+        assertEquals(2, this.cache.missCount());
+    }
+
+    @Test
+    public void testNotStoredResponses() throws Exception {
+        // stale without a validator, not allowed to be stored and too large
+        this.server.expect(requestTo(ENDPOINT)).andRespond(withSuccess("a", MediaType.TEXT_PLAIN));
+        this.server.expect(requestTo(ENDPOINT)).andRespond(
+                withSuccess("b", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "no-store")));
+        char[] large = new char[200];
+        Arrays.fill(large, 'c');
+        this.server.expect(requestTo(ENDPOINT)).andRespond(withSuccess(new String(large), MediaType.TEXT_PLAIN)
+                .headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+        this.server.expect(requestTo(ENDPOINT)).andRespond(withSuccess("d", MediaType.TEXT_PLAIN));
+
+        assertEquals("a", get());
+        assertEquals("b", get());
+        assertEquals(new String(large), get());
+        assertEquals("d", get());
+        this.server.verify();
+        assertEquals(0, this.cache.hitCount());
+        assertEquals(0, this.cache.size());
+    }
+
+    @Test
+    public void testCacheHeaders() throws Exception {
+        this.server.expect(ExpectedCount.twice(), requestTo(ENDPOINT)).andRespond(withSuccess("a",
+                MediaType.TEXT_PLAIN));
+        Map<String, List<String>> ttl = Collections.singletonMap(RestResponseCache.CACHE_TTL_HEADER,
+                Collections.singletonList("60"));
+        Map<String, List<String>> off = Collections.singletonMap(RestResponseCache.CACHE_HEADER,
+                Collections.singletonList("false"));
+
+        assertEquals("a", get(ttl));
+        assertEquals("a", get(ttl));
+        // not read from the cache, even though there is a fresh response
+        assertEquals("a", get(off));
+        this.server.verify();
+        assertEquals(1, this.cache.hitCount());
+    }
+
+    @Test
+    public void testRequestHeadersInKey() throws Exception {
+        this.server.expect(requestTo(ENDPOINT)).andExpect(header("Authorization", "Basic 1")).andRespond(
+                withSuccess("a", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+        this.server.expect(requestTo(ENDPOINT)).andExpect(header("Authorization", "Basic 2")).andRespond(
+                withSuccess("b", MediaType.TEXT_PLAIN).headers(headers(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+
+        assertEquals("a", get(Collections.singletonMap("Authorization", Collections.singletonList("Basic 1"))));
+        assertEquals("b", get(Collections.singletonMap("Authorization", Collections.singletonList("Basic 2"))));
+        this.server.verify();
+    }
+
+    @Test
+    public void testExpiresAt() {
+        assertEquals(-1, this.cache.expiresAt(headers(HttpHeaders.CACHE_CONTROL, "private, no-store"), 1000, -1));
+        assertEquals(1000, this.cache.expiresAt(headers(HttpHeaders.CACHE_CONTROL, "no-cache, max-age=5"), 1000,
+                -1));
+        assertEquals(6000, this.cache.expiresAt(headers(HttpHeaders.CACHE_CONTROL, "max-age=5"), 1000, -1));
+        HttpHeaders expires = new HttpHeaders();
+        expires.setDate(10000);
+        expires.setExpires(40000);
+        assertEquals(31000, this.cache.expiresAt(expires, 1000, -1));
+        assertEquals(3000, this.cache.expiresAt(new HttpHeaders(), 1000, 2000));
+        assertEquals(1000, this.cache.expiresAt(new HttpHeaders(), 1000, -1));
+    }
+}
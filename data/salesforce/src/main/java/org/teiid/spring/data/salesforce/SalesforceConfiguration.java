@@ -17,7 +17,15 @@
  */
 package org.teiid.spring.data.salesforce;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.social.oauth2.AccessGrant;
+import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.web.client.RestTemplate;
+import org.teiid.spring.common.TokenManager;
 
 public class SalesforceConfiguration implements org.teiid.salesforce.SalesforceConfiguration {
     private String url = "https://login.salesforce.com/services/Soap/u/45.0";
@@ -32,6 +40,13 @@ public class SalesforceConfiguration implements org.teiid.salesforce.SalesforceC
     private String password;
     private String refreshToken;
     private RestTemplate restTemplate = new RestTemplate();
+    private long tokenRefreshMargin = TokenManager.DEFAULT_REFRESH_MARGIN;
+    private long tokenTtl = 900000;
+    private int maxSessions = 10;
+    private long sessionWaitTimeout = 30000;
+    private long validationInterval = 30000;
+    private SalesforceOAuth2Template oauthTemplate;
+    private final Map<List<String>, TokenManager<AccessGrant>> tokenManagers = new ConcurrentHashMap<>();
 
     public String getUrl() {
         return url;
@@ -41,10 +56,93 @@ public class SalesforceConfiguration implements org.teiid.salesforce.SalesforceC
         this.url = url;
     }
 
-    public SalesforceOAuth2Template getOAuth2Template() {
-        SalesforceOAuth2Template template = new SalesforceOAuth2Template(clientId, clientSecret, authorizeUrl, tokenUrl);
-        template.setUseParametersForClientAuthentication(true);
-        return template;
+    public synchronized SalesforceOAuth2Template getOAuth2Template() {
+        if (this.oauthTemplate == null) {
+            this.oauthTemplate = new SalesforceOAuth2Template(clientId, clientSecret, authorizeUrl, tokenUrl);
+            this.oauthTemplate.setUseParametersForClientAuthentication(true);
+            this.oauthTemplate.setDefaultExpiresIn(this.tokenTtl / 1000);
+        }
+        return this.oauthTemplate;
+    }
+
+    /**
+     * The access token shared by all the connections made with this configuration
+     */
+    public TokenManager<AccessGrant> accessTokenManager() {
+        return accessTokenManager(this.username, this.password);
+    }
+
+    /**
+     * The access token shared by all the connections that log in with the given credentials
+     */
+    public TokenManager<AccessGrant> accessTokenManager(String user, String pass) {
+        return this.tokenManagers.computeIfAbsent(Arrays.asList(this.clientId, user, pass),
+                k -> new TokenManager<>(() -> fetchAccessToken(user, pass), AccessGrant::getExpireTime,
+                        this.tokenRefreshMargin));
+    }
+
+    private AccessGrant fetchAccessToken(String user, String pass) {
+        if (this.refreshToken == null) {
+            if (user != null && pass != null) {
+                return getOAuth2Template().exchangeCredentialsForAccess(user, pass,
+                        new LinkedMultiValueMap<String, String>());
+            }
+            return null;
+        }
+        return getOAuth2Template().refreshAccess(this.refreshToken, new LinkedMultiValueMap<String, String>());
+    }
+
+    /**
+     * Maximum number of sessions to Salesforce used at the same time
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Time in milliseconds to wait for a session when all of them are in use
+     */
+    public long getSessionWaitTimeout() {
+        return sessionWaitTimeout;
+    }
+
+    public void setSessionWaitTimeout(long sessionWaitTimeout) {
+        this.sessionWaitTimeout = sessionWaitTimeout;
+    }
+
+    /**
+     * A pooled session idle for longer than this many milliseconds is checked with Salesforce before it is used
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public long getTokenRefreshMargin() {
+        return tokenRefreshMargin;
+    }
+
+    public void setTokenRefreshMargin(long tokenRefreshMargin) {
+        this.tokenRefreshMargin = tokenRefreshMargin;
+    }
+
+    /**
+     * Lifetime in milliseconds assumed for an access token, as the Salesforce token endpoint does not return its
+     * expiry. Keep it below the session timeout of the org. 0 to use a token until Salesforce rejects it.
+     */
+    public long getTokenTtl() {
+        return tokenTtl;
+    }
+
+    public void setTokenTtl(long tokenTtl) {
+        this.tokenTtl = tokenTtl;
     }
 
     @Override
@@ -19,6 +19,10 @@ package org.teiid.spring.data.salesforce;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,9 +41,15 @@ public class SalesforceConnectionFactory implements BaseConnectionFactory<Salesf
     private static final Log logger = LogFactory.getLog(SalesforceConnectionFactory.class);
 
     private SalesforceConfiguration config;
+    private final Deque<SalesforceConnectionImpl> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore sessions;
 
     public SalesforceConnectionFactory(SalesforceConfiguration config) {
         this.config = config;
+        if (config.getMaxSessions() < 1) {
+            throw new IllegalStateException("maxSessions of the salesforce source must be at least 1");
+        }
+        this.sessions = new Semaphore(config.getMaxSessions(), true);
         checkVersion(config);
     }
 
@@ -63,13 +73,60 @@ public class SalesforceConnectionFactory implements BaseConnectionFactory<Salesf
         }
     }
 
+    /**
+     * Returns a logged in session from the pool, or logs in a new one. Sessions whose access token expired are
+     * dropped, and the ones idle for longer than the validation interval are checked with Salesforce first.
+     */
     @Override
     public SalesforceConnectionImpl getConnection() throws Exception {
-        return new SalesforceConnectionImpl(config);
+        if (!this.sessions.tryAcquire(this.config.getSessionWaitTimeout(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Timed out waiting for a Salesforce session, all "
+                    + this.config.getMaxSessions() + " allowed sessions are in use, see the \"maxSessions\" property");
+        }
+        try {
+            SalesforceConnectionImpl connection = null;
+            while ((connection = this.idle.pollFirst()) != null) {
+                if (isUsable(connection)) {
+                    break;
+                }
+            }
+            if (connection == null) {
+                connection = new SalesforceConnectionImpl(this.config, this);
+            }
+            connection.checkout();
+            return connection;
+        } catch (Exception | Error e) {
+            this.sessions.release();
+            throw e;
+        }
+    }
+
+    private boolean isUsable(SalesforceConnectionImpl connection) {
+        if (!connection.isAccessTokenValid()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - connection.getLastUsed() > this.config.getValidationInterval()) {
+            try {
+                if (!connection.isValid()) {
+                    connection.invalidateSession();
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Dropping the Salesforce session that failed validation", e);
+                connection.invalidateSession();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void release(SalesforceConnectionImpl connection) {
+        this.idle.offerFirst(connection);
+        this.sessions.release();
     }
 
     @Override
     public void close() throws IOException {
-        // close connections
+        this.idle.clear();
     }
 }
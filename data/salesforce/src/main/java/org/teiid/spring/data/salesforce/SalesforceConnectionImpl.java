@@ -17,19 +17,54 @@
  */
 package org.teiid.spring.data.salesforce;
 
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.teiid.salesforce.BaseSalesforceConnection;
+import org.teiid.translator.TranslatorException;
 import org.teiid.translator.salesforce.SalesforceConnection;
+import org.teiid.translator.salesforce.execution.DataPayload;
+import org.teiid.translator.salesforce.execution.DeletedResult;
+import org.teiid.translator.salesforce.execution.UpdatedResult;
 
 import com.sforce.async.AsyncApiException;
+import com.sforce.async.AsyncExceptionCode;
+import com.sforce.async.BatchResult;
+import com.sforce.async.JobInfo;
+import com.sforce.async.OperationEnum;
+import com.sforce.soap.partner.DescribeGlobalResult;
+import com.sforce.soap.partner.DescribeSObjectResult;
+import com.sforce.soap.partner.QueryResult;
+import com.sforce.soap.partner.fault.ApiFault;
+import com.sforce.soap.partner.fault.ExceptionCode;
+import com.sforce.soap.partner.sobject.SObject;
 import com.sforce.ws.ConnectionException;
 
 public class SalesforceConnectionImpl extends BaseSalesforceConnection<SalesforceConfiguration, SalesforceConnectorConfig, TeiidPartnerConnection> implements SalesforceConnection {
     private static final Log logger = LogFactory.getLog(SalesforceConnectionImpl.class);
 
+    private SalesforceConfiguration config;
+    private SalesforceConnectionFactory pool;
+    private final AtomicBoolean inUse = new AtomicBoolean();
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private interface Call<T> {
+        T call() throws TranslatorException;
+    }
+
     public SalesforceConnectionImpl(SalesforceConfiguration sfc) throws Exception {
         super(sfc);
+        this.config = sfc;
+    }
+
+    SalesforceConnectionImpl(SalesforceConfiguration sfc, SalesforceConnectionFactory pool) throws Exception {
+        this(sfc);
+        this.pool = pool;
     }
 
     @Override
@@ -44,6 +79,7 @@ public class SalesforceConnectionImpl extends BaseSalesforceConnection<Salesforc
         config.setRestTemplate(sfc.getRestTemplate());
         config.setOAuth2Template(sfc.getOAuth2Template());
         config.setRefreshToken(sfc.getRefreshToken());
+        config.setTokenManagers(sfc::accessTokenManager);
 
         if (sfc.getConnectTimeout() != null) {
             config.setConnectionTimeout((int)Math.min(Integer.MAX_VALUE, sfc.getConnectTimeout()));
@@ -72,4 +108,175 @@ public class SalesforceConnectionImpl extends BaseSalesforceConnection<Salesforc
         return super.isValid();
     }
 
+    /**
+     * The session was rejected, make sure the next login does not reuse its access token.
+     */
+    void invalidateSession() {
+        getPartnerConnection().invalidateAccessToken();
+    }
+
+    /**
+     * Runs the call, and if Salesforce rejected the session, such as when the token was revoked or timed out by the
+     * session policy of the org, logs in again with a new token and runs it once more.
+     */
+    private <T> T retry(Call<T> call) throws TranslatorException {
+        try {
+            return call.call();
+        } catch (TranslatorException e) {
+            if (!isInvalidSession(e)) {
+                throw e;
+            }
+            logger.debug("The Salesforce session was rejected, logging in again", e); //$NON-NLS-1$
+            try {
+                getPartnerConnection().relogin();
+            } catch (ConnectionException | RuntimeException e1) {
+                e.addSuppressed(e1);
+                throw e;
+            }
+            return call.call();
+        }
+    }
+
+    static boolean isInvalidSession(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof ApiFault && ((ApiFault) t).getExceptionCode() == ExceptionCode.INVALID_SESSION_ID) {
+                return true;
+            }
+            if (t instanceof AsyncApiException
+                    && ((AsyncApiException) t).getExceptionCode() == AsyncExceptionCode.InvalidSessionId) {
+                return true;
+            }
+            if (t instanceof HttpStatusCodeException
+                    && ((HttpStatusCodeException) t).getStatusCode() == HttpStatus.UNAUTHORIZED) {
+                return true;
+            }
+            String message = t.getMessage();
+            if (message != null && message.contains("INVALID_SESSION_ID")) { //$NON-NLS-1$
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Long getCardinality(String sobject) throws TranslatorException {
+        return retry(() -> super.getCardinality(sobject));
+    }
+
+    @Override
+    public QueryResult query(String queryString, int maxBatchSize, boolean queryAll) throws TranslatorException {
+        return retry(() -> super.query(queryString, maxBatchSize, queryAll));
+    }
+
+    @Override
+    public QueryResult queryMore(String queryLocator, int batchSize) throws TranslatorException {
+        return retry(() -> super.queryMore(queryLocator, batchSize));
+    }
+
+    @Override
+    public int delete(String[] ids) throws TranslatorException {
+        return retry(() -> super.delete(ids));
+    }
+
+    @Override
+    public int upsert(DataPayload data) throws TranslatorException {
+        return retry(() -> super.upsert(data));
+    }
+
+    @Override
+    public int create(DataPayload data) throws TranslatorException {
+        return retry(() -> super.create(data));
+    }
+
+    @Override
+    public int update(List<DataPayload> updateDataList) throws TranslatorException {
+        return retry(() -> super.update(updateDataList));
+    }
+
+    @Override
+    public UpdatedResult getUpdated(String objectType, Calendar startDate, Calendar endDate)
+            throws TranslatorException {
+        return retry(() -> super.getUpdated(objectType, startDate, endDate));
+    }
+
+    @Override
+    public DeletedResult getDeleted(String objectName, Calendar startCalendar, Calendar endCalendar)
+            throws TranslatorException {
+        return retry(() -> super.getDeleted(objectName, startCalendar, endCalendar));
+    }
+
+    @Override
+    public SObject[] retrieve(String fieldList, String sObjectType, List<String> ids) throws TranslatorException {
+        return retry(() -> super.retrieve(fieldList, sObjectType, ids));
+    }
+
+    @Override
+    public DescribeGlobalResult getObjects() throws TranslatorException {
+        return retry(() -> super.getObjects());
+    }
+
+    @Override
+    public DescribeSObjectResult[] getObjectMetaData(String... objectName) throws TranslatorException {
+        return retry(() -> super.getObjectMetaData(objectName));
+    }
+
+    @Override
+    public JobInfo createBulkJob(String objectName, OperationEnum operation, boolean usePkChunking)
+            throws TranslatorException {
+        return retry(() -> super.createBulkJob(objectName, operation, usePkChunking));
+    }
+
+    @Override
+    public String addBatch(List<com.sforce.async.SObject> payload, JobInfo job) throws TranslatorException {
+        return retry(() -> super.addBatch(payload, job));
+    }
+
+    @Override
+    public BatchResultInfo addBatch(String query, JobInfo job) throws TranslatorException {
+        return retry(() -> super.addBatch(query, job));
+    }
+
+    @Override
+    public BulkBatchResult getBatchQueryResults(String jobId, BatchResultInfo info) throws TranslatorException {
+        return retry(() -> super.getBatchQueryResults(jobId, info));
+    }
+
+    @Override
+    public JobInfo closeJob(String jobId) throws TranslatorException {
+        return retry(() -> super.closeJob(jobId));
+    }
+
+    @Override
+    public BatchResult[] getBulkResults(JobInfo job, List<String> ids) throws TranslatorException {
+        return retry(() -> super.getBulkResults(job, ids));
+    }
+
+    @Override
+    public void cancelBulkJob(JobInfo job) throws TranslatorException {
+        retry(() -> {
+            super.cancelBulkJob(job);
+            return null;
+        });
+    }
+
+    boolean isAccessTokenValid() {
+        return getPartnerConnection().isAccessTokenValid();
+    }
+
+    boolean checkout() {
+        return this.inUse.compareAndSet(false, true);
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    @Override
+    public void close() {
+        if (this.pool != null && this.inUse.compareAndSet(true, false)) {
+            this.lastUsed = System.currentTimeMillis();
+            this.pool.release(this);
+        }
+    }
+
 }
@@ -17,7 +17,11 @@
  */
 package org.teiid.spring.data.salesforce;
 
+import java.util.function.BiFunction;
+
+import org.springframework.social.oauth2.AccessGrant;
 import org.springframework.web.client.RestTemplate;
+import org.teiid.spring.common.TokenManager;
 
 import com.sforce.ws.ConnectorConfig;
 import com.sforce.ws.MessageHandler;
@@ -26,6 +30,7 @@ public class SalesforceConnectorConfig extends ConnectorConfig {
     private SalesforceOAuth2Template oauthTemplate;
     private RestTemplate restTemplate;
     private String refreshToken;
+    private BiFunction<String, String, TokenManager<AccessGrant>> tokenManagers;
 
     public RestTemplate getRestTemplate() {
         return restTemplate;
@@ -54,4 +59,15 @@ public class SalesforceConnectorConfig extends ConnectorConfig {
     public void setRefreshToken(String refreshToken) {
         this.refreshToken = refreshToken;
     }
+
+    public TokenManager<AccessGrant> getTokenManager(String username, String password) {
+        return tokenManagers.apply(username, password);
+    }
+
+    /**
+     * @param tokenManagers returns the access token manager for the given username and password
+     */
+    public void setTokenManagers(BiFunction<String, String, TokenManager<AccessGrant>> tokenManagers) {
+        this.tokenManagers = tokenManagers;
+    }
 }
@@ -29,6 +29,31 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class SalesforceOAuth2Template extends OAuth2Template {
     private String instanceUrl = null;
     private String id = null;
+    private long defaultExpiresIn;
+
+    /**
+     * The access grant with the identity URL of the user it was issued to.
+     */
+    public static class SalesforceAccessGrant extends AccessGrant {
+        private static final long serialVersionUID = -2718405839462201337L;
+        private final String id;
+        private final String instanceUrl;
+
+        public SalesforceAccessGrant(String accessToken, String scope, String refreshToken, Long expiresIn,
+                String id, String instanceUrl) {
+            super(accessToken, scope, refreshToken, expiresIn);
+            this.id = id;
+            this.instanceUrl = instanceUrl;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getInstanceUrl() {
+            return instanceUrl;
+        }
+    }
 
     public String getId() {
         return id;
@@ -46,6 +71,14 @@ public class SalesforceOAuth2Template extends OAuth2Template {
         this.instanceUrl = instanceUrl;
     }
 
+    /**
+     * The Salesforce token endpoint does not return expires_in, the tokens are instead assumed to expire after this
+     * many seconds. 0 for tokens that never expire.
+     */
+    public void setDefaultExpiresIn(long defaultExpiresIn) {
+        this.defaultExpiresIn = defaultExpiresIn;
+    }
+
     public SalesforceOAuth2Template(String clientId, String clientSecret, String authorizeUrl,
             String accessTokenUrl) {
         super(clientId, clientSecret, authorizeUrl, accessTokenUrl);
@@ -61,8 +94,12 @@ public class SalesforceOAuth2Template extends OAuth2Template {
         Map<String, Object> result = mapper.convertValue(response, Map.class);
         this.instanceUrl = (String) result.get("instance_url");
         this.id = (String)result.get("id");
-        return this.createAccessGrant((String) result.get("access_token"), (String) result.get("scope"),
-                (String) result.get("refresh_token"), getIntegerValue(result, "expires_in"), result);
+        Long expiresIn = getIntegerValue(result, "expires_in");
+        if (expiresIn == null && this.defaultExpiresIn > 0) {
+            expiresIn = this.defaultExpiresIn;
+        }
+        return new SalesforceAccessGrant((String) result.get("access_token"), (String) result.get("scope"),
+                (String) result.get("refresh_token"), expiresIn, this.id, this.instanceUrl);
     }
 
     private Long getIntegerValue(Map<String, Object> map, String key) {
@@ -28,13 +28,17 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.social.oauth2.AccessGrant;
-import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.teiid.spring.common.TokenManager;
+import org.teiid.spring.data.salesforce.SalesforceOAuth2Template.SalesforceAccessGrant;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
+import com.sforce.soap.partner.LoginResult;
 import com.sforce.soap.partner.PartnerConnection;
 import com.sforce.ws.ConnectionException;
 import com.sforce.ws.ConnectorConfig;
@@ -42,6 +46,7 @@ import com.sforce.ws.ConnectorConfig;
 public class TeiidPartnerConnection extends PartnerConnection {
     private static final String AUTHORIZATION = "Authorization"; //$NON-NLS-1$
     private AccessGrant accessGrant;
+    private TokenManager<AccessGrant> tokenManager;
 
     public TeiidPartnerConnection(ConnectorConfig config) throws ConnectionException {
         super(config);
@@ -52,15 +57,43 @@ public class TeiidPartnerConnection extends PartnerConnection {
             throws com.sforce.ws.ConnectionException {
 
         SalesforceConnectorConfig config = (SalesforceConnectorConfig)getConfig();
-
-        if (config.getRefreshToken() == null) {
-            if (username != null && password != null) {
-                this.accessGrant = config.getOAuth2Template().exchangeCredentialsForAccess(username, password,
-                        new LinkedMultiValueMap<String, String>());
+        this.tokenManager = config.getTokenManager(username, password);
+        try {
+            return login(config);
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode() != HttpStatus.UNAUTHORIZED) {
+                throw e;
             }
-        } else {
-            this.accessGrant = config.getOAuth2Template().refreshAccess(config.getRefreshToken(),
-                    new LinkedMultiValueMap<String, String>());
+            // the token was revoked, or timed out by the session policy of the org
+            invalidateAccessToken();
+            return login(config);
+        }
+    }
+
+    /**
+     * Discards the access token and logs in again with a new one, after Salesforce rejected the session.
+     */
+    LoginResult relogin() throws ConnectionException {
+        invalidateAccessToken();
+        ConnectorConfig config = getConfig();
+        LoginResult result = login(config.getUsername(), config.getPassword());
+        config.setSessionId(result.getSessionId());
+        setSessionHeader(result.getSessionId());
+        return result;
+    }
+
+    void invalidateAccessToken() {
+        if (this.tokenManager != null) {
+            this.tokenManager.invalidate(this.accessGrant);
+        }
+    }
+
+    private LoginResult login(SalesforceConnectorConfig config) throws ConnectionException {
+        try {
+            this.accessGrant = this.tokenManager.getToken();
+        } catch (IllegalStateException e) {
+            throw new com.sforce.ws.ConnectionException("Failed to get OAuth based connection; "
+                    + "Failed to get user information", e);
         }
 
         if (accessGrant == null) {
@@ -75,8 +108,10 @@ public class TeiidPartnerConnection extends PartnerConnection {
         headers.set(AUTHORIZATION, "Bearer "+accessToken);
         headers.set("Accept", "application/xml");
         HttpEntity<String> entity = new HttpEntity<>(headers);
-        ResponseEntity<String> response = config.getRestTemplate().exchange(URI.create(config.getOAuth2Template().getId()),
-                HttpMethod.GET, entity, String.class);
+        String id = this.accessGrant instanceof SalesforceAccessGrant
+                ? ((SalesforceAccessGrant) this.accessGrant).getId() : config.getOAuth2Template().getId();
+        ResponseEntity<String> response = config.getRestTemplate().exchange(URI.create(id), HttpMethod.GET, entity,
+                String.class);
         String result = response.getBody();
         try {
             DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
@@ -113,13 +148,17 @@ public class TeiidPartnerConnection extends PartnerConnection {
         return loginResult;
     }
 
+    AccessGrant getAccessGrant() {
+        return this.accessGrant;
+    }
+
     public boolean isAccessTokenValid() {
         if (this.accessGrant == null) {
             return false;
         }
 
         if (this.accessGrant.getExpireTime() != null) {
-            return this.accessGrant.getExpireTime() < System.currentTimeMillis();
+            return this.accessGrant.getExpireTime() > System.currentTimeMillis();
         }
         return this.accessGrant.getAccessToken() != null;
     }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.data.salesforce;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.teiid.translator.TranslatorException;
+
+import com.sforce.soap.partner.fault.ApiFault;
+import com.sforce.soap.partner.fault.ExceptionCode;
+
+public class TestSalesforceConnectionFactory {
+    private SalesforceConnectionFactory factory;
+
+    @Before
+    public void setup() {
+        this.factory = new SalesforceConnectionFactory(new SalesforceConfiguration());
+    }
+
+    /**
+     * a mocked session, it is added to the idle sessions with release, as if it was closed by a user
+     */
+    private SalesforceConnectionImpl session(boolean tokenValid, long lastUsed) {
+        SalesforceConnectionImpl session = Mockito.mock(SalesforceConnectionImpl.class);
+        Mockito.when(session.isAccessTokenValid()).thenReturn(tokenValid);
+        Mockito.when(session.getLastUsed()).thenReturn(lastUsed);
+        Mockito.when(session.isValid()).thenReturn(true);
+        return session;
+    }
+
+    @Test
+    public void testReturnedSessionReused() throws Exception {
+        SalesforceConnectionImpl session = session(true, System.currentTimeMillis());
+        this.factory.release(session);
+
+        assertSame(session, this.factory.getConnection());
+        Mockito.verify(session).checkout();
+        // recently used, not checked with Salesforce
+        Mockito.verify(session, Mockito.never()).isValid();
+    }
+
+    @Test
+    public void testInvalidSessionsDropped() throws Exception {
+        SalesforceConnectionImpl usable = session(true, 0);
+        SalesforceConnectionImpl rejected = session(true, 0);
+        Mockito.when(rejected.isValid()).thenReturn(false);
+        SalesforceConnectionImpl expired = session(false, System.currentTimeMillis());
+        this.factory.release(usable);
+        this.factory.release(rejected);
+        this.factory.release(expired);
+
+        assertSame(usable, this.factory.getConnection());
+        Mockito.verify(expired, Mockito.never()).checkout();
+        Mockito.verify(rejected).invalidateSession();
+        Mockito.verify(rejected, Mockito.never()).checkout();
+        // idle longer than the validation interval
+        Mockito.verify(usable).isValid();
+    }
+
+    @Test
+    public void testInvalidSession() {
+        ApiFault fault = new ApiFault();
+        fault.setExceptionCode(ExceptionCode.INVALID_SESSION_ID);
+        assertTrue(SalesforceConnectionImpl.isInvalidSession(new TranslatorException(fault)));
+        assertTrue(SalesforceConnectionImpl.isInvalidSession(
+                new TranslatorException(new HttpClientErrorException(HttpStatus.UNAUTHORIZED))));
+        assertTrue(SalesforceConnectionImpl.isInvalidSession(new TranslatorException("INVALID_SESSION_ID: expired")));
+        assertFalse(SalesforceConnectionImpl.isInvalidSession(
+                new TranslatorException(new HttpClientErrorException(HttpStatus.FORBIDDEN))));
+        assertFalse(SalesforceConnectionImpl.isInvalidSession(new TranslatorException("response code: 401")));
+    }
+}
@@ -63,6 +63,7 @@ public class KeycloakDirectAccessGrantAuthenticationProvider extends KeycloakAut
     private KeycloakSpringBootConfigResolver resolver;
     private KeycloakDeployment deployment;
     private String scope;
+    private KeycloakTokenRefresher tokenRefresher;
 
     public KeycloakDirectAccessGrantAuthenticationProvider(
             KeycloakSpringBootConfigResolver keycloakSpringBootConfigResolver) {
@@ -73,6 +74,10 @@ public class KeycloakDirectAccessGrantAuthenticationProvider extends KeycloakAut
         this.scope = scope;
     }
 
+    public void setTokenRefresher(KeycloakTokenRefresher tokenRefresher) {
+        this.tokenRefresher = tokenRefresher;
+    }
+
     @Override
     public boolean supports(Class<?> authentication) {
         return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
@@ -147,11 +152,21 @@ public class KeycloakDirectAccessGrantAuthenticationProvider extends KeycloakAut
 
         AdapterTokenVerifier.VerifiedTokens tokens = AdapterTokenVerifier.verifyTokens(tokenResponse.getToken(), tokenResponse.getIdToken(), deployment);
 
-        return postTokenVerification(tokenResponse.getToken(), tokens.getAccessToken());
+        RefreshableKeycloakSecurityContext skSession = new RefreshableKeycloakSecurityContext(deployment, null,
+                tokenResponse.getToken(), tokens.getAccessToken(), tokenResponse.getIdToken(), tokens.getIdToken(),
+                tokenResponse.getRefreshToken());
+        if (tokenRefresher != null) {
+            tokenRefresher.register(skSession);
+        }
+        return postTokenVerification(skSession);
     }
 
     protected Authentication postTokenVerification(String tokenString, AccessToken token) {
-        RefreshableKeycloakSecurityContext skSession = new RefreshableKeycloakSecurityContext(deployment, null, tokenString, token, null, null, null);
+        return postTokenVerification(new RefreshableKeycloakSecurityContext(deployment, null, tokenString, token, null, null, null));
+    }
+
+    protected Authentication postTokenVerification(RefreshableKeycloakSecurityContext skSession) {
+        AccessToken token = skSession.getToken();
         String principalName = AdapterUtils.getPrincipalName(deployment, token);
         final KeycloakPrincipal<RefreshableKeycloakSecurityContext> principal = new KeycloakPrincipal<RefreshableKeycloakSecurityContext>(principalName, skSession);
         final Set<String> roles = AdapterUtils.getRolesFromSecurityContext(skSession);
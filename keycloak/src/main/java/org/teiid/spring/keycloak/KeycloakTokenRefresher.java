@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.keycloak;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+import org.keycloak.adapters.RefreshableKeycloakSecurityContext;
+import org.keycloak.representations.AccessToken;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Renews the access tokens of the sessions authenticated with the direct access grant before they expire, using
+ * their refresh token, so that long lived JDBC/PG sessions keep a current token without logging in again with the
+ * password. The security contexts are weakly held, once a session is closed and its authentication is no longer
+ * referenced it is not refreshed anymore. A context whose authentication is evicted from the authentication cache
+ * is deregistered right away, as the cache would otherwise keep it referenced.
+ */
+public class KeycloakTokenRefresher implements DisposableBean {
+    private static final Logger log = Logger.getLogger(KeycloakTokenRefresher.class);
+
+    private final Set<RefreshableKeycloakSecurityContext> contexts = Collections
+            .newSetFromMap(new WeakHashMap<RefreshableKeycloakSecurityContext, Boolean>());
+    private final long refreshMargin;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param refreshMargin time in milliseconds before the expiry when the token is refreshed
+     * @param interval time in milliseconds between the checks of the tokens
+     */
+    public KeycloakTokenRefresher(long refreshMargin, long interval) {
+        this.refreshMargin = refreshMargin;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "keycloak-token-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void register(RefreshableKeycloakSecurityContext context) {
+        if (context.getRefreshToken() == null) {
+            return;
+        }
+        synchronized (this.contexts) {
+            this.contexts.add(context);
+        }
+    }
+
+    public void deregister(RefreshableKeycloakSecurityContext context) {
+        synchronized (this.contexts) {
+            this.contexts.remove(context);
+        }
+    }
+
+    int size() {
+        synchronized (this.contexts) {
+            return this.contexts.size();
+        }
+    }
+
+    void refresh() {
+        List<RefreshableKeycloakSecurityContext> current;
+        synchronized (this.contexts) {
+            current = new ArrayList<>(this.contexts);
+        }
+        long now = System.currentTimeMillis();
+        for (RefreshableKeycloakSecurityContext context : current) {
+            AccessToken token = context.getToken();
+            if (token.getExpiration() <= 0 || token.getExpiration() * 1000L - this.refreshMargin > now) {
+                continue;
+            }
+            boolean refreshed = false;
+            try {
+                refreshed = context.refreshExpiredToken(false);
+            } catch (RuntimeException e) {
+                log.warn("Failed to refresh the access token of " + token.getPreferredUsername(), e);
+            }
+            if (!refreshed) {
+                // the refresh token expired or the session was ended on the server, the user needs to login again
+                deregister(context);
+            } else if (log.isTraceEnabled()) {
+                log.trace("Refreshed the access token of " + token.getPreferredUsername());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        this.executor.shutdownNow();
+    }
+}
@@ -15,12 +15,18 @@
  */
 package org.teiid.spring.keycloak;
 
+import org.keycloak.KeycloakSecurityContext;
+import org.keycloak.adapters.RefreshableKeycloakSecurityContext;
 import org.keycloak.adapters.springboot.KeycloakSpringBootConfigResolver;
 import org.keycloak.adapters.springsecurity.KeycloakSecurityComponents;
 import org.keycloak.adapters.springsecurity.authentication.KeycloakAuthenticationProvider;
 import org.keycloak.adapters.springsecurity.config.KeycloakWebSecurityConfigurerAdapter;
 import org.keycloak.adapters.springsecurity.filter.KeycloakPreAuthActionsFilter;
+import org.keycloak.adapters.springsecurity.token.KeycloakAuthenticationToken;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -33,10 +39,12 @@ import org.springframework.security.config.BeanIds;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.session.SessionRegistryImpl;
 import org.springframework.security.web.authentication.session.RegisterSessionAuthenticationStrategy;
 import org.springframework.security.web.authentication.session.SessionAuthenticationStrategy;
 import org.springframework.web.filter.ForwardedHeaderFilter;
+import org.teiid.spring.common.AuthenticationExpiryResolver;
 
 @Configuration
 @ComponentScan(
@@ -47,20 +55,69 @@ import org.springframework.web.filter.ForwardedHeaderFilter;
 @Order(99)
 public class SecurityConfig extends KeycloakWebSecurityConfigurerAdapter {
 
+    @Value("${spring.teiid.security.token-refresh.margin:60000}")
+    private long tokenRefreshMargin;
+
+    @Value("${spring.teiid.security.token-refresh.interval:15000}")
+    private long tokenRefreshInterval;
+
     @Autowired
-    public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
+    public void configureGlobal(AuthenticationManagerBuilder auth,
+            ObjectProvider<KeycloakTokenRefresher> tokenRefresher) throws Exception {
         KeycloakAuthenticationProvider keycloakAuthenticationProvider = keycloakAuthenticationProvider();
         auth.authenticationProvider(keycloakAuthenticationProvider);
         KeycloakDirectAccessGrantAuthenticationProvider authProvider = new KeycloakDirectAccessGrantAuthenticationProvider(
                 keycloakConfigResolver());
+        tokenRefresher.ifAvailable(authProvider::setTokenRefresher);
         auth.authenticationProvider(authProvider);
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "spring.teiid.security.token-refresh.enabled", havingValue = "true",
+            matchIfMissing = true)
+    public KeycloakTokenRefresher keycloakTokenRefresher() {
+        return new KeycloakTokenRefresher(tokenRefreshMargin, tokenRefreshInterval);
+    }
+
     @Bean
     public KeycloakSpringBootConfigResolver keycloakConfigResolver() {
         return new KeycloakSpringBootConfigResolver();
     }
 
+    /**
+     * Cached authentications of the JDBC/PG transports expire with their access token, and their tokens are no
+     * longer refreshed once they are evicted
+     */
+    @Bean
+    public AuthenticationExpiryResolver keycloakTokenExpiryResolver(
+            ObjectProvider<KeycloakTokenRefresher> tokenRefresher) {
+        return new AuthenticationExpiryResolver() {
+            @Override
+            public Long getExpiry(Authentication authentication) {
+                KeycloakSecurityContext context = getSecurityContext(authentication);
+                if (context != null && context.getToken() != null && context.getToken().getExpiration() > 0) {
+                    return context.getToken().getExpiration() * 1000L;
+                }
+                return null;
+            }
+
+            @Override
+            public void evicted(Authentication authentication) {
+                KeycloakSecurityContext context = getSecurityContext(authentication);
+                if (context instanceof RefreshableKeycloakSecurityContext) {
+                    tokenRefresher.ifAvailable(r -> r.deregister((RefreshableKeycloakSecurityContext) context));
+                }
+            }
+        };
+    }
+
+    private static KeycloakSecurityContext getSecurityContext(Authentication authentication) {
+        if (authentication instanceof KeycloakAuthenticationToken) {
+            return ((KeycloakAuthenticationToken) authentication).getAccount().getKeycloakSecurityContext();
+        }
+        return null;
+    }
+
     @Bean
     @Override
     protected SessionAuthenticationStrategy sessionAuthenticationStrategy() {
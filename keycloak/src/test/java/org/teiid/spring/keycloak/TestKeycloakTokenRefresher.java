@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.keycloak;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.adapters.RefreshableKeycloakSecurityContext;
+import org.keycloak.representations.AccessToken;
+import org.mockito.Mockito;
+
+public class TestKeycloakTokenRefresher {
+    private KeycloakTokenRefresher refresher;
+
+    @Before
+    public void setup() {
+        // the checks are run by the test
+        this.refresher = new KeycloakTokenRefresher(60000, Long.MAX_VALUE / 2);
+    }
+
+    @After
+    public void tearDown() {
+        this.refresher.destroy();
+    }
+
+    private static RefreshableKeycloakSecurityContext context(long expiresIn, boolean refreshes) {
+        AccessToken token = new AccessToken();
+        token.expiration((int) ((System.currentTimeMillis() + expiresIn) / 1000));
+        RefreshableKeycloakSecurityContext context = Mockito.mock(RefreshableKeycloakSecurityContext.class);
+        Mockito.when(context.getToken()).thenReturn(token);
+        Mockito.when(context.getRefreshToken()).thenReturn("refresh");
+        Mockito.when(context.refreshExpiredToken(false)).thenReturn(refreshes);
+        return context;
+    }
+
+    @Test
+    public void testExpiringTokenRefreshed() {
+        RefreshableKeycloakSecurityContext expiring = context(30000, true);
+        RefreshableKeycloakSecurityContext valid = context(300000, true);
+        this.refresher.register(expiring);
+        this.refresher.register(valid);
+
+        this.refresher.refresh();
+        Mockito.verify(expiring).refreshExpiredToken(false);
+        Mockito.verify(valid, Mockito.never()).refreshExpiredToken(Mockito.anyBoolean());
+        assertEquals(2, this.refresher.size());
+    }
+
+    @Test
+    public void testFailedRefreshDeregistered() {
+        RefreshableKeycloakSecurityContext rejected = context(0, false);
+        RefreshableKeycloakSecurityContext failing = context(0, true);
+        Mockito.when(failing.refreshExpiredToken(false)).thenThrow(new IllegalStateException());
+        this.refresher.register(rejected);
+        this.refresher.register(failing);
+
+        this.refresher.refresh();
+        assertEquals(0, this.refresher.size());
+        this.refresher.refresh();
+        Mockito.verify(rejected).refreshExpiredToken(false);
+        Mockito.verify(failing).refreshExpiredToken(false);
+    }
+
+    @Test
+    public void testRegistration() {
+        RefreshableKeycloakSecurityContext noRefreshToken = context(0, true);
+        Mockito.when(noRefreshToken.getRefreshToken()).thenReturn(null);
+        this.refresher.register(noRefreshToken);
+        assertEquals(0, this.refresher.size());
+
+        RefreshableKeycloakSecurityContext context = context(0, true);
+        this.refresher.register(context);
+        assertEquals(1, this.refresher.size());
+        this.refresher.deregister(context);
+        assertEquals(0, this.refresher.size());
+        this.refresher.refresh();
+        Mockito.verify(context, Mockito.never()).refreshExpiredToken(Mockito.anyBoolean());
+    }
+}
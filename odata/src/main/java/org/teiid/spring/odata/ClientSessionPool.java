@@ -0,0 +1,388 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.teiid.adminapi.VDB;
+import org.teiid.adminapi.impl.SessionMetadata;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.jdbc.ConnectionImpl;
+import org.teiid.net.ServerConnection;
+import org.teiid.transport.LocalServerConnection;
+
+/**
+ * Keeps the local connections, and so the Teiid sessions, of the OData requests open between the requests. A
+ * session is only handed to a request of the same user with the same roles and credentials it was opened for, and
+ * is recycled before it goes back to the pool, which closes its statements, rolls back any transaction left open and
+ * clears the session variables. The session scoped temporary tables are kept, the OData requests can not create them,
+ * only the procedures they call, whose temporary tables end with the procedure.
+ * The number of sessions, in use and idle together, is bounded, a request waits up to max-wait for one to be
+ * returned. The parts of a batch processed in parallel only take a session that is free right away, and at most a
+ * quarter of the pool, so that they do not hold up the other requests.
+ */
+public class ClientSessionPool {
+    public static final String PREFIX = "spring.teiid.odata.session-pool";
+    private static final Log logger = LogFactory.getLog(ClientSessionPool.class);
+
+    public interface ConnectionFactory {
+        ConnectionImpl open() throws SQLException;
+    }
+
+    private static final class Session {
+        final String identity;
+        final ConnectionImpl connection;
+        final long idleSince = System.nanoTime();
+
+        Session(String identity, ConnectionImpl connection) {
+            this.identity = identity;
+            this.connection = connection;
+        }
+    }
+
+    private final int maxSize;
+    private final long maxWait;
+    private final long maxIdle;
+    private final Semaphore permits;
+    private final Semaphore batchPermits;
+    private final Set<ConnectionImpl> batchSessions = ConcurrentHashMap.newKeySet();
+    // most recently returned last
+    private final ArrayDeque<Session> idle = new ArrayDeque<>();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private volatile boolean closed;
+
+    /**
+     * @param maxSize maximum number of sessions, in use and idle
+     * @param maxWait time a request waits for a session when all are in use
+     * @param maxIdle time after which an unused session is closed
+     */
+    public ClientSessionPool(int maxSize, Duration maxWait, Duration maxIdle) {
+        if (maxSize < 1) {
+            throw new IllegalStateException(PREFIX + ".max-size must be at least 1, but is " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.maxWait = maxWait.toNanos();
+        this.maxIdle = maxIdle.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+        this.batchPermits = new Semaphore(Math.max(1, maxSize / 4));
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "teiid-odata-session-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1000, Math.min(60000, maxIdle.toMillis() / 2));
+        this.executor.scheduleWithFixedDelay(this::evict, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static ClientSessionPool build(Environment env) {
+        if (!env.getProperty(PREFIX + ".enabled", Boolean.class, true)) {
+            return null;
+        }
+        int maxSize = env.getProperty(PREFIX + ".max-size", Integer.class, 32);
+        Binder binder = Binder.get(env);
+        Duration maxWait = binder.bind(PREFIX + ".max-wait", Duration.class).orElse(Duration.ofSeconds(30));
+        Duration maxIdle = binder.bind(PREFIX + ".max-idle", Duration.class).orElse(Duration.ofMinutes(10));
+        return new ClientSessionPool(maxSize, maxWait, maxIdle);
+    }
+
+    /**
+     * The identity a session is opened for: the name, the roles and a digest of the credentials of the current Spring
+     * Security authentication, as the session may pass the credentials on to the sources.
+     * @return the identity, or null when the credentials can not be compared and the session is not to be pooled
+     */
+    public static String identity() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return "";
+        }
+        TreeSet<String> roles = new TreeSet<>();
+        for (GrantedAuthority ga : authentication.getAuthorities()) {
+            roles.add(ga.getAuthority());
+        }
+        Object credentials = authentication.getCredentials();
+        String secret;
+        if (credentials == null) {
+            secret = "";
+        } else if (credentials instanceof String) {
+            secret = digest((String) credentials);
+        } else if (credentials instanceof char[]) {
+            secret = digest(new String((char[]) credentials));
+        } else {
+            return null;
+        }
+        return authentication.getName() + roles + secret;
+    }
+
+    private static String digest(String credentials) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256") //$NON-NLS-1$
+                    .digest(credentials.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hands out an idle session of the identity, or opens a new one with the factory. The connection must be given
+     * back with {@link #release(String, ConnectionImpl)}.
+     */
+    public ConnectionImpl borrow(String identity, ConnectionFactory factory) throws SQLException {
+        long start = System.nanoTime();
+        boolean permitted;
+        try {
+            permitted = this.permits.tryAcquire(this.maxWait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for an OData session", e);
+        }
+        this.waitTime.addAndGet(System.nanoTime() - start);
+        this.acquired.incrementAndGet();
+        if (!permitted) {
+            this.timeouts.incrementAndGet();
+            throw new SQLException("All " + this.maxSize + " OData sessions are in use, none was returned within "
+                    + TimeUnit.NANOSECONDS.toMillis(this.maxWait) + "ms. Increase " + PREFIX + ".max-size");
+        }
+        try {
+            return checkout(identity, factory);
+        } catch (SQLException | RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands out a session for a part of a batch processed in parallel, only when one is free right away and the
+     * batches do not already hold their share of the pool.
+     * @return the connection, to give back with {@link #release(String, ConnectionImpl)}, or null when none is free
+     */
+    public ConnectionImpl tryBorrow(String identity, ConnectionFactory factory) throws SQLException {
+        if (!this.batchPermits.tryAcquire()) {
+            return null;
+        }
+        if (!this.permits.tryAcquire()) {
+            this.batchPermits.release();
+            return null;
+        }
+        this.acquired.incrementAndGet();
+        try {
+            ConnectionImpl connection = checkout(identity, factory);
+            this.batchSessions.add(connection);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            this.permits.release();
+            this.batchPermits.release();
+            throw e;
+        }
+    }
+
+    private ConnectionImpl checkout(String identity, ConnectionFactory factory) throws SQLException {
+        Session s;
+        while ((s = take(identity)) != null) {
+            if (isUsable(s.connection)) {
+                return s.connection;
+            }
+            close(s.connection);
+        }
+        // the sessions in use and the idle ones together stay within the max size
+        Session evicted = null;
+        synchronized (this.idle) {
+            if (!this.idle.isEmpty() && this.idle.size() + getActive() > this.maxSize) {
+                evicted = this.idle.pollFirst();
+            }
+        }
+        if (evicted != null) {
+            close(evicted.connection);
+        }
+        ConnectionImpl connection = factory.open();
+        this.created.incrementAndGet();
+        return connection;
+    }
+
+    public void release(String identity, ConnectionImpl connection) {
+        try {
+            if (this.closed || !isUsable(connection)) {
+                close(connection);
+                return;
+            }
+            connection.recycleConnection();
+            if (!clearSessionVariables(connection)) {
+                close(connection);
+                return;
+            }
+            Session evicted = null;
+            synchronized (this.idle) {
+                if (this.idle.size() >= this.maxSize) {
+                    evicted = this.idle.pollFirst();
+                }
+                this.idle.addLast(new Session(identity, connection));
+            }
+            if (evicted != null) {
+                close(evicted.connection);
+            }
+        } finally {
+            if (this.batchSessions.remove(connection)) {
+                this.batchPermits.release();
+            }
+            this.permits.release();
+        }
+    }
+
+    private Session take(String identity) {
+        synchronized (this.idle) {
+            for (Iterator<Session> iter = this.idle.descendingIterator(); iter.hasNext();) {
+                Session s = iter.next();
+                if (s.identity.equals(identity)) {
+                    iter.remove();
+                    return s;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isUsable(ConnectionImpl connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            ServerConnection sc = connection.getServerConnection();
+            if (sc instanceof LocalServerConnection) {
+                // the session of a redeployed VDB can not be used with the new deployment
+                VDBMetaData vdb = ((LocalServerConnection) sc).getWorkContext().getVDB();
+                return vdb != null && vdb.getStatus() == VDB.Status.ACTIVE;
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * the values set with teiid_session_set are not to be seen by the next request
+     * @return false if the session can not be reused
+     */
+    private static boolean clearSessionVariables(ConnectionImpl connection) {
+        try {
+            ServerConnection sc = connection.getServerConnection();
+            if (sc instanceof LocalServerConnection) {
+                SessionMetadata session = ((LocalServerConnection) sc).getWorkContext().getSession();
+                if (session == null) {
+                    return false;
+                }
+                session.getSessionVariables().clear();
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void close(ConnectionImpl connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Failed to close the OData session", e);
+        }
+    }
+
+    void evict() {
+        List<Session> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this.idle) {
+            while (!this.idle.isEmpty() && now - this.idle.peekFirst().idleSince >= this.maxIdle) {
+                expired.add(this.idle.pollFirst());
+            }
+        }
+        for (Session s : expired) {
+            close(s.connection);
+        }
+    }
+
+    public int getActive() {
+        return this.maxSize - this.permits.availablePermits();
+    }
+
+    public int getIdle() {
+        synchronized (this.idle) {
+            return this.idle.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public long getCreated() {
+        return this.created.get();
+    }
+
+    public long getAcquired() {
+        return this.acquired.get();
+    }
+
+    /**
+     * @return total time the requests waited for a session, in nanoseconds
+     */
+    public long getWaitTime() {
+        return this.waitTime.get();
+    }
+
+    public long getTimeouts() {
+        return this.timeouts.get();
+    }
+
+    public void close() {
+        this.closed = true;
+        this.executor.shutdownNow();
+        List<Session> sessions;
+        synchronized (this.idle) {
+            sessions = new ArrayList<>(this.idle);
+            this.idle.clear();
+        }
+        for (Session s : sessions) {
+            close(s.connection);
+        }
+    }
+}
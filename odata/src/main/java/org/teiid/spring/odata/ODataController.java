@@ -16,19 +16,35 @@
 package org.teiid.spring.odata;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.olingo.server.api.ODataHandler;
+import org.apache.olingo.server.api.ODataHttpHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.teiid.odata.api.Client;
 import org.teiid.olingo.web.ODataServlet;
 
 @RestController
 @RequestMapping(value = "/odata")
-public class ODataController {
+public class ODataController implements EnvironmentAware, DisposableBean {
     private ODataServlet servlet = new ODataServlet();
+    private ResponseCompression compression;
+    private ParallelBatch parallelBatch;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.compression = ResponseCompression.build(environment);
+        this.parallelBatch = ParallelBatch.build(environment);
+    }
 
     @RequestMapping(value = "**")
     public void process(HttpServletRequest request, HttpServletResponse response) throws IOException{
@@ -43,6 +59,45 @@ public class ODataController {
                 return (String)actual.getAttribute(SpringODataFilter.CONTEXT_PATH);
             }
         };
-        servlet.service(wrapper, response);
+        HttpServletResponse compressed = (this.compression == null) ? response
+                : this.compression.wrap(actual, response);
+        try {
+            service(actual, wrapper, compressed);
+        } catch (IOException | RuntimeException e) {
+            // releases the compressor, without hiding the failure
+            try {
+                ResponseCompression.finish(compressed);
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+        // writes the end of the compressed content, and releases the compressor
+        ResponseCompression.finish(compressed);
+    }
+
+    private void service(HttpServletRequest actual, HttpServletRequest wrapper, HttpServletResponse response)
+            throws IOException {
+        HttpServletRequest target = wrapper;
+        if (this.parallelBatch != null && ParallelBatch.isBatch(wrapper)) {
+            byte[] body = StreamUtils.copyToByteArray(wrapper.getInputStream());
+            ODataHandler handler = (ODataHandler) actual.getAttribute(ODataHttpHandler.class.getName());
+            Client outer = (Client) actual.getAttribute(Client.class.getName());
+            @SuppressWarnings("unchecked")
+            Supplier<SpringClient> clients = (Supplier<SpringClient>) actual
+                    .getAttribute(SpringODataFilter.CLIENTS);
+            if (this.parallelBatch.process(wrapper, body, response, handler, outer, clients)) {
+                return;
+            }
+            target = ParallelBatch.withBody(wrapper, body);
+        }
+        servlet.service(target, response);
+    }
+
+    @Override
+    public void destroy() {
+        if (this.parallelBatch != null) {
+            this.parallelBatch.close();
+        }
     }
 }
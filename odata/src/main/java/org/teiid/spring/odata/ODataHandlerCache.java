@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.servlet.ServletException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.olingo.commons.api.edm.EdmSchema;
+import org.teiid.adminapi.Model;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.deployers.CompositeVDB;
+import org.teiid.deployers.VDBLifeCycleListener;
+import org.teiid.odata.api.Client;
+import org.teiid.olingo.service.OlingoBridge;
+import org.teiid.olingo.service.OlingoBridge.HandlerInfo;
+import org.teiid.spring.autoconfigure.TeiidServer;
+import org.teiid.vdb.runtime.VDBKey;
+
+/**
+ * Holds the OData handlers, and with them the EDM, of the deployed VDBs. The handlers of a VDB are built right
+ * after it is deployed and stay until the VDB is redeployed or removed, a redeployed VDB is detected also on the
+ * request path as the handlers remember the {@link VDBMetaData} they were built from.
+ */
+public class ODataHandlerCache implements VDBLifeCycleListener {
+    private static final Log logger = LogFactory.getLog(ODataHandlerCache.class);
+
+    private static class Handlers {
+        private final VDBMetaData vdb;
+        private final OlingoBridge bridge = new OlingoBridge("odata");
+        private final Map<String, HandlerInfo> models = new ConcurrentHashMap<>();
+        private final AtomicLong entityTypes = new AtomicLong();
+
+        Handlers(VDBMetaData vdb) {
+            this.vdb = vdb;
+        }
+    }
+
+    private final TeiidServer server;
+    private final String baseUri;
+    private final Function<VDBKey, Client> clients;
+    private final Map<String, Handlers> handlers = new ConcurrentHashMap<>();
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong buildTime = new AtomicLong();
+    private final ExecutorService executor;
+
+    /**
+     * @param server the server to listen for deployments on, may be null to only build on request
+     * @param baseUri the context path the handlers are built with after a deployment
+     * @param clients opens the clients used to build the handlers after a deployment
+     */
+    public ODataHandlerCache(TeiidServer server, String baseUri, Function<VDBKey, Client> clients) {
+        this.server = server;
+        this.baseUri = baseUri;
+        this.clients = clients;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "teiid-odata-handlers");
+            t.setDaemon(true);
+            return t;
+        });
+        if (server != null) {
+            server.addVDBLifeCycleListener(this);
+        }
+    }
+
+    /**
+     * Returns the handler of the model, building the handlers of the client's VDB when they are missing or were
+     * built from an earlier deployment.
+     */
+    public HandlerInfo getHandler(String baseUri, Client client, String modelName)
+            throws ServletException, TeiidProcessingException {
+        VDBMetaData vdb = client.getVDB();
+        String key = key(new VDBKey(vdb.getName(), vdb.getVersion()), baseUri);
+        Handlers h = this.handlers.get(key);
+        if (h == null || h.vdb != vdb) {
+            h = this.handlers.compute(key, (k, current) -> {
+                if (current != null && current.vdb == vdb) {
+                    return current;
+                }
+                return new Handlers(vdb);
+            });
+        }
+        HandlerInfo info = h.models.get(modelName);
+        if (info != null) {
+            return info;
+        }
+        synchronized (h) {
+            info = h.models.get(modelName);
+            if (info == null) {
+                long start = System.nanoTime();
+                info = h.bridge.getHandlers(baseUri, client, modelName);
+                int types = 0;
+                for (EdmSchema schema : info.serviceMetadata.getEdm().getSchemas()) {
+                    types += schema.getEntityTypes().size();
+                }
+                long elapsed = System.nanoTime() - start;
+                this.builds.incrementAndGet();
+                this.buildTime.addAndGet(elapsed);
+                h.entityTypes.addAndGet(types);
+                h.models.put(modelName, info);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Built the OData handler of " + vdb.getName() + "." + modelName + " with " + types
+                            + " entity types in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+                }
+            }
+        }
+        return info;
+    }
+
+    @Override
+    public void finishedDeployment(String name, CompositeVDB cvdb) {
+        VDBKey key = cvdb.getVDBKey();
+        invalidate(key);
+        prepare(key);
+    }
+
+    @Override
+    public void removed(String name, CompositeVDB cvdb) {
+        invalidate(cvdb.getVDBKey());
+    }
+
+    void invalidate(VDBKey key) {
+        String prefix = key(key, "");
+        this.handlers.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    /**
+     * Builds the handlers of every visible model of the VDB in the background, the models already built are kept.
+     */
+    public void prepare(VDBKey key) {
+        if (this.clients != null) {
+            this.executor.execute(() -> build(key));
+        }
+    }
+
+    private void build(VDBKey key) {
+        Client client = this.clients.apply(key);
+        if (client == null) {
+            return;
+        }
+        try {
+            client.open();
+            VDBMetaData vdb = client.getVDB();
+            for (Model model : vdb.getModels()) {
+                if (model.isVisible()) {
+                    try {
+                        getHandler(this.baseUri, client, model.getName());
+                    } catch (ServletException | TeiidProcessingException e) {
+                        // not every visible model has an OData service
+                        logger.debug("No OData handler built for model " + model.getName(), e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to build the OData handlers of " + key + ", they will be built on request", e);
+        } finally {
+            try {
+                client.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static String key(VDBKey key, String baseUri) {
+        return key.getName() + "." + key.getVersion() + "/" + baseUri;
+    }
+
+    /**
+     * @return number of handlers built since the start
+     */
+    public long getBuildCount() {
+        return this.builds.get();
+    }
+
+    /**
+     * @return total time spent building the handlers, in nanoseconds
+     */
+    public long getBuildTime() {
+        return this.buildTime.get();
+    }
+
+    public int size() {
+        return this.handlers.values().stream().mapToInt(h -> h.models.size()).sum();
+    }
+
+    /**
+     * @return entity types in the EDM of the cached handlers
+     */
+    public long getEntityTypeCount() {
+        return this.handlers.values().stream().mapToLong(h -> h.entityTypes.get()).sum();
+    }
+
+    public void close() {
+        if (this.server != null) {
+            this.server.removeVDBLifeCycleListener(this);
+        }
+        this.executor.shutdownNow();
+    }
+}
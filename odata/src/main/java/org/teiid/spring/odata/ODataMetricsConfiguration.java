@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Configuration
+@AutoConfigureAfter(WebConfig.class)
+@ConditionalOnClass(MeterBinder.class)
+@ConditionalOnBean(SpringODataFilter.class)
+@ConditionalOnProperty(name = "spring.teiid.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class ODataMetricsConfiguration {
+
+    @Bean
+    public MeterBinder teiidODataMetrics(SpringODataFilter filter) {
+        ODataHandlerCache cache = filter.getHandlerCache();
+        return registry -> {
+            FunctionTimer.builder("teiid.odata.handler.build", cache, ODataHandlerCache::getBuildCount,
+                    ODataHandlerCache::getBuildTime, TimeUnit.NANOSECONDS)
+                    .description("Time spent building the OData handlers and their EDM").register(registry);
+            Gauge.builder("teiid.odata.handlers", cache, ODataHandlerCache::size)
+                    .description("Cached OData handlers, one per VDB model").register(registry);
+            Gauge.builder("teiid.odata.entity.types", cache, ODataHandlerCache::getEntityTypeCount)
+                    .description("Entity types in the EDM of the cached OData handlers").register(registry);
+
+            ClientSessionPool pool = filter.getSessionPool();
+            if (pool != null) {
+                Gauge.builder("teiid.odata.sessions.active", pool, ClientSessionPool::getActive)
+                        .description("OData sessions in use").register(registry);
+                Gauge.builder("teiid.odata.sessions.idle", pool, ClientSessionPool::getIdle)
+                        .description("OData sessions kept open for reuse").register(registry);
+                Gauge.builder("teiid.odata.sessions.max", pool, ClientSessionPool::getMaxSize)
+                        .description("Maximum number of OData sessions in use").register(registry);
+                FunctionCounter.builder("teiid.odata.sessions.created", pool, ClientSessionPool::getCreated)
+                        .description("OData sessions opened").register(registry);
+                FunctionCounter.builder("teiid.odata.sessions.timeouts", pool, ClientSessionPool::getTimeouts)
+                        .description("Requests that gave up waiting for an OData session").register(registry);
+                FunctionTimer.builder("teiid.odata.sessions.wait", pool, ClientSessionPool::getAcquired,
+                        ClientSessionPool::getWaitTime, TimeUnit.NANOSECONDS)
+                        .description("Time the requests waited for an OData session").register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataHandler;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException;
+import org.apache.olingo.server.api.deserializer.batch.BatchOptions;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
+import org.apache.olingo.server.api.serializer.BatchSerializerException;
+import org.springframework.core.env.Environment;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.MimeType;
+import org.springframework.util.StreamUtils;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.odata.api.Client;
+import org.teiid.olingo.service.TeiidServiceHandler;
+
+/**
+ * Runs the parts of a $batch request at the same time, when every part is a GET outside of a change set. Such
+ * parts do not depend on each other, so each is processed with its own client, and session, on a shared executor,
+ * at most max-concurrency of one batch at a time. A part only gets its own session when the session pool has one
+ * free right away, otherwise it is processed on the request thread with the session of the batch request. The
+ * responses are returned in the order of the requests. A batch with a change set or any other method is left to
+ * Olingo, which processes the parts in order.
+ */
+public class ParallelBatch {
+    public static final String PREFIX = "spring.teiid.odata.parallel-batch";
+    private static final Log logger = LogFactory.getLog(ParallelBatch.class);
+
+    private final OData odata = OData.newInstance();
+    private final ThreadPoolExecutor executor;
+    private final int maxConcurrency;
+
+    /**
+     * @param maxThreads threads shared by all the batches, when all are busy a part runs on the request thread
+     * @param maxConcurrency parts of a single batch that run at the same time
+     */
+    public ParallelBatch(int maxThreads, int maxConcurrency) {
+        if (maxThreads < 1 || maxConcurrency < 1) {
+            throw new IllegalStateException(PREFIX + ".max-threads and " + PREFIX
+                    + ".max-concurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "teiid-odata-batch-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static ParallelBatch build(Environment env) {
+        if (!env.getProperty(PREFIX + ".enabled", Boolean.class, false)) {
+            return null;
+        }
+        int maxThreads = env.getProperty(PREFIX + ".max-threads", Integer.class, 16);
+        int maxConcurrency = env.getProperty(PREFIX + ".max-concurrency", Integer.class, 4);
+        return new ParallelBatch(maxThreads, maxConcurrency);
+    }
+
+    static boolean isBatch(HttpServletRequest request) {
+        return "POST".equals(request.getMethod()) && request.getRequestURI().endsWith("/$batch");
+    }
+
+    /**
+     * @param outer the open client of the batch request, used for the parts when no other session is free
+     * @param clients new clients for the parts processed in parallel
+     * @return false when the batch is not made of independent reads, and was not processed
+     */
+    public boolean process(HttpServletRequest request, byte[] body, HttpServletResponse response,
+            ODataHandler handler, Client outer, Supplier<SpringClient> clients) throws IOException {
+        String boundary = boundary(request.getContentType());
+        if (boundary == null) {
+            return false;
+        }
+        String url = request.getRequestURL().toString();
+        String contextPath = request.getContextPath();
+        String rawBaseUri = url.substring(0, url.indexOf(contextPath) + contextPath.length());
+
+        List<BatchRequestPart> parts;
+        try {
+            parts = this.odata.createFixedFormatDeserializer().parseBatchRequest(new ByteArrayInputStream(body),
+                    boundary, BatchOptions.with().rawBaseUri(rawBaseUri).build());
+        } catch (BatchDeserializerException e) {
+            // Olingo reports the error
+            return false;
+        }
+        List<ODataRequest> requests = new ArrayList<>();
+        for (BatchRequestPart part : parts) {
+            if (part.isChangeSet() || part.getRequests().size() != 1
+                    || part.getRequests().get(0).getMethod() != HttpMethod.GET) {
+                return false;
+            }
+            requests.add(part.getRequests().get(0));
+        }
+
+        Semaphore permits = new Semaphore(this.maxConcurrency);
+        List<Future<ODataResponse>> futures = new ArrayList<>();
+        for (ODataRequest part : requests) {
+            permits.acquireUninterruptibly();
+            SpringClient client = clients.get();
+            boolean open = false;
+            try {
+                open = client.tryOpen();
+            } catch (SQLException | TeiidProcessingException e) {
+                throw new IOException(e);
+            } finally {
+                if (!open) {
+                    permits.release();
+                }
+            }
+            if (!open) {
+                // no session is free, process the part with the session of the batch request itself
+                FutureTask<ODataResponse> task = new FutureTask<>(() -> execute(part, handler, outer));
+                task.run();
+                futures.add(task);
+                continue;
+            }
+            Callable<ODataResponse> task = () -> {
+                try {
+                    return execute(part, handler, client);
+                } finally {
+                    try {
+                        client.close();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            };
+            futures.add(this.executor.submit(new DelegatingSecurityContextCallable<>(task,
+                    SecurityContextHolder.getContext())));
+        }
+
+        boolean continueOnError = continueOnError(request.getHeaders(HttpHeader.PREFER));
+        List<ODataResponsePart> responses = new ArrayList<>();
+        for (Future<ODataResponse> future : futures) {
+            ODataResponse partResponse;
+            try {
+                partResponse = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while processing the batch", e);
+            } catch (ExecutionException e) {
+                logger.warn("Failed to process a part of the batch", e.getCause());
+                partResponse = new ODataResponse();
+                partResponse.setStatusCode(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                partResponse.setHeader(HttpHeader.CONTENT_TYPE, "text/plain;charset=utf-8");
+                partResponse.setContent(new ByteArrayInputStream(
+                        String.valueOf(e.getCause().getMessage()).getBytes(StandardCharsets.UTF_8)));
+            }
+            responses.add(new ODataResponsePart(partResponse, false));
+            if (!continueOnError && partResponse.getStatusCode() >= 400) {
+                // same as the sequential processing, nothing is returned after the first failure
+                break;
+            }
+        }
+
+        String responseBoundary = "batch_" + UUID.randomUUID();
+        InputStream content;
+        try {
+            content = this.odata.createFixedFormatSerializer().batchResponse(responses, responseBoundary);
+        } catch (BatchSerializerException e) {
+            throw new IOException(e);
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("multipart/mixed;boundary=" + responseBoundary);
+        response.setHeader(HttpHeader.ODATA_VERSION, "4.0");
+        StreamUtils.copy(content, response.getOutputStream());
+        return true;
+    }
+
+    private static ODataResponse execute(ODataRequest request, ODataHandler handler, Client client)
+            throws Exception {
+        Client previous = TeiidServiceHandler.getClient();
+        try {
+            TeiidServiceHandler.setClient(client);
+            ODataResponse response = handler.process(request);
+            // read the results while the session is still open
+            if (response.getContent() != null) {
+                response.setContent(new ByteArrayInputStream(StreamUtils.copyToByteArray(response.getContent())));
+            }
+            String contentId = request.getHeader(HttpHeader.CONTENT_ID);
+            if (contentId != null) {
+                response.setHeader(HttpHeader.CONTENT_ID, contentId);
+            }
+            return response;
+        } finally {
+            TeiidServiceHandler.setClient(previous);
+        }
+    }
+
+    static String boundary(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            MimeType type = MimeType.valueOf(contentType);
+            if (!type.getType().equals("multipart") || !type.getSubtype().equals("mixed")) {
+                return null;
+            }
+            String boundary = type.getParameter("boundary");
+            if (boundary != null && boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                boundary = boundary.substring(1, boundary.length() - 1);
+            }
+            return boundary;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static boolean continueOnError(Enumeration<String> preferences) {
+        while (preferences != null && preferences.hasMoreElements()) {
+            for (String preference : preferences.nextElement().split(",")) {
+                String name = preference.split("[;=]")[0].trim();
+                if (name.equalsIgnoreCase("odata.continue-on-error") || name.equalsIgnoreCase("continue-on-error")) {
+                    return !preference.trim().toLowerCase().endsWith("=false");
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the request with the body that was already read for {@link #process}
+     */
+    static HttpServletRequest withBody(HttpServletRequest request, byte[] body) {
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public ServletInputStream getInputStream() {
+                ByteArrayInputStream in = new ByteArrayInputStream(body);
+                return new ServletInputStream() {
+                    @Override
+                    public int read() {
+                        return in.read();
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) {
+                        return in.read(b, off, len);
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return in.available() == 0;
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener readListener) {
+                        // the body is already in memory, all of it can be read right away
+                        try {
+                            if (!isFinished()) {
+                                readListener.onDataAvailable();
+                            }
+                            readListener.onAllDataRead();
+                        } catch (IOException e) {
+                            readListener.onError(e);
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
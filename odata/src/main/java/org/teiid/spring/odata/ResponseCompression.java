@@ -0,0 +1,357 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.util.MimeType;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Compresses the OData responses with gzip or deflate, whichever the client prefers in its Accept-Encoding. The
+ * first min-response-size bytes are held back to decide, smaller responses are sent as they are. Once decided the
+ * response is flushed to the client every flush-size bytes, so a large page is sent in chunks while it is being
+ * serialized instead of when the container buffer fills up.
+ */
+public class ResponseCompression {
+    public static final String PREFIX = "spring.teiid.odata.compression";
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private final int minResponseSize;
+    private final int flushSize;
+    private final int level;
+    private final List<MimeType> mimeTypes = new ArrayList<>();
+
+    public ResponseCompression(int minResponseSize, int flushSize, int level, String[] mimeTypes) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalStateException(PREFIX + ".level must be between 0 and 9, or -1 for the default, but is "
+                    + level);
+        }
+        this.minResponseSize = Math.max(0, minResponseSize);
+        this.flushSize = Math.max(1, flushSize);
+        this.level = level;
+        for (String mimeType : mimeTypes) {
+            this.mimeTypes.add(MimeType.valueOf(mimeType.trim()));
+        }
+    }
+
+    public static ResponseCompression build(Environment env) {
+        if (!env.getProperty(PREFIX + ".enabled", Boolean.class, false)) {
+            return null;
+        }
+        Binder binder = Binder.get(env);
+        DataSize minResponseSize = binder.bind(PREFIX + ".min-response-size", DataSize.class)
+                .orElse(DataSize.ofKilobytes(1));
+        DataSize flushSize = binder.bind(PREFIX + ".flush-size", DataSize.class).orElse(DataSize.ofKilobytes(32));
+        int level = env.getProperty(PREFIX + ".level", Integer.class, Deflater.DEFAULT_COMPRESSION);
+        String mimeTypes = env.getProperty(PREFIX + ".mime-types",
+                "application/json,application/xml,application/atom+xml,text/plain,text/csv,multipart/mixed");
+        return new ResponseCompression((int) minResponseSize.toBytes(), (int) flushSize.toBytes(), level,
+                StringUtils.commaDelimitedListToStringArray(mimeTypes));
+    }
+
+    /**
+     * The response is also wrapped when the client does not accept a compression, as whether the response varies
+     * on the Accept-Encoding is only known from its content type and size.
+     * @return the response to write to, {@link #finish(HttpServletResponse)} must be called once it is complete
+     */
+    public HttpServletResponse wrap(HttpServletRequest request, HttpServletResponse response) {
+        return new CompressedResponse(response, negotiate(request.getHeader("Accept-Encoding")));
+    }
+
+    public static void finish(HttpServletResponse response) throws IOException {
+        if (response instanceof CompressedResponse) {
+            ((CompressedResponse) response).finish();
+        }
+    }
+
+    /**
+     * @return gzip or deflate, whichever has the higher quality, null when neither is accepted
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String part : StringUtils.commaDelimitedListToStringArray(acceptEncoding)) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            float q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals(DEFLATE)) {
+                deflate = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        if (deflate > 0) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        MimeType type;
+        try {
+            type = MimeType.valueOf(contentType);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        for (MimeType mimeType : this.mimeTypes) {
+            if (mimeType.isCompatibleWith(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class CompressedResponse extends HttpServletResponseWrapper {
+        // null when the client does not accept a compression
+        private final String encoding;
+        private CompressingStream stream;
+        private PrintWriter writer;
+
+        CompressedResponse(HttpServletResponse response, String encoding) {
+            super(response);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (this.writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            if (this.stream == null) {
+                this.stream = new CompressingStream(this);
+            }
+            return this.stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (this.writer == null) {
+                if (this.stream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                this.stream = new CompressingStream(this);
+                this.writer = new PrintWriter(new OutputStreamWriter(this.stream, getCharacterEncoding()));
+            }
+            return this.writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            // the compressed length is not known until the response is complete
+            if (this.encoding == null) {
+                super.setContentLength(len);
+            }
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (this.encoding == null) {
+                super.setContentLengthLong(len);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (this.writer != null) {
+                this.writer.flush();
+            } else if (this.stream != null) {
+                this.stream.flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (this.writer != null) {
+                this.writer.flush();
+            }
+            if (this.stream != null) {
+                this.stream.finish();
+            }
+        }
+    }
+
+    private class CompressingStream extends ServletOutputStream {
+        private final CompressedResponse response;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private ServletOutputStream raw;
+        private DeflaterOutputStream compressed;
+        private OutputStream target;
+        private int unflushed;
+        private boolean finished;
+
+        CompressingStream(CompressedResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (this.finished) {
+                throw new IOException("The response is already complete");
+            }
+            if (this.target == null) {
+                this.pending.write(b, off, len);
+                if (this.pending.size() >= minResponseSize) {
+                    start(true);
+                }
+                return;
+            }
+            this.target.write(b, off, len);
+            this.unflushed += len;
+            if (this.unflushed >= flushSize) {
+                flush();
+            }
+        }
+
+        private void start(boolean largeEnough) throws IOException {
+            HttpServletResponse actual = (HttpServletResponse) this.response.getResponse();
+            if (!largeEnough) {
+                actual.setContentLength(this.pending.size());
+            }
+            // only a compressible response that is large enough differs by the Accept-Encoding of the request
+            boolean compress = largeEnough && !actual.isCommitted() && !actual.containsHeader("Content-Encoding")
+                    && isCompressible(actual.getContentType());
+            if (compress) {
+                actual.addHeader("Vary", "Accept-Encoding");
+            }
+            if (compress && this.response.encoding != null) {
+                actual.setHeader("Content-Encoding", this.response.encoding);
+                this.raw = actual.getOutputStream();
+                if (this.response.encoding.equals(GZIP)) {
+                    this.compressed = new GZIPOutputStream(this.raw, 8192, true) {
+                        {
+                            this.def.setLevel(level);
+                        }
+                    };
+                } else {
+                    this.compressed = new DeflaterOutputStream(this.raw, new Deflater(level), 8192, true) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                this.def.end();
+                            }
+                        }
+                    };
+                }
+                this.target = this.compressed;
+            } else {
+                this.raw = actual.getOutputStream();
+                this.target = this.raw;
+            }
+            this.pending.writeTo(this.target);
+            this.unflushed = this.pending.size();
+            this.pending = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // below the minimum size the decision is postponed to the next write or the end of the response
+            if (this.target != null && !this.finished) {
+                this.target.flush();
+                this.unflushed = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        void finish() throws IOException {
+            if (this.finished) {
+                return;
+            }
+            if (this.target == null) {
+                start(false);
+            }
+            this.finished = true;
+            if (this.compressed != null) {
+                // also ends the deflater and closes the response stream
+                this.compressed.close();
+            } else {
+                this.raw.flush();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            // until the response is started the writes are only buffered
+            return this.raw == null || this.raw.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                ((HttpServletResponse) this.response.getResponse()).getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
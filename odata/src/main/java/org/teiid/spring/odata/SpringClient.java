@@ -15,24 +15,100 @@
  */
 package org.teiid.spring.odata;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Future;
 
 import org.springframework.transaction.TransactionStatus;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.jdbc.ConnectionImpl;
 import org.teiid.jdbc.TeiidDriver;
+import org.teiid.odbc.ODBCServerRemoteImpl;
 import org.teiid.olingo.service.LocalClient;
 import org.teiid.spring.autoconfigure.TeiidServer;
 
 public class SpringClient extends LocalClient {
     private TeiidServer server;
     private TransactionStatus status;
+    private String vdbName;
+    private String vdbVersion;
+    private Properties properties;
+    private ClientSessionPool sessionPool;
+    private String identity;
 
     public SpringClient(String vdbName, String vdbVersion, Properties properties, TeiidServer server,
             Map<Object, Future<Boolean>> loading) {
+        this(vdbName, vdbVersion, properties, server, loading, null);
+    }
+
+    public SpringClient(String vdbName, String vdbVersion, Properties properties, TeiidServer server,
+            Map<Object, Future<Boolean>> loading, ClientSessionPool sessionPool) {
         super(vdbName, vdbVersion, properties, loading);
         this.server = server;
+        this.vdbName = vdbName;
+        this.vdbVersion = vdbVersion;
+        this.properties = properties;
+        this.sessionPool = sessionPool;
+    }
+
+    @Override
+    public Connection open() throws SQLException, TeiidProcessingException {
+        this.identity = (this.sessionPool == null) ? null : ClientSessionPool.identity();
+        if (this.identity == null) {
+            return super.open();
+        }
+        this.connection = this.sessionPool.borrow(this.identity,
+                () -> buildConnection(getDriver(), this.vdbName, this.vdbVersion, this.properties));
+        prepare();
+        return this.connection;
+    }
+
+    /**
+     * Opens the client for a part of a batch processed in parallel, see {@link ClientSessionPool#tryBorrow}
+     * @return false when no pooled session is free, the client is then not open
+     */
+    public boolean tryOpen() throws SQLException, TeiidProcessingException {
+        this.identity = (this.sessionPool == null) ? null : ClientSessionPool.identity();
+        if (this.identity == null) {
+            open();
+            return true;
+        }
+        this.connection = this.sessionPool.tryBorrow(this.identity,
+                () -> buildConnection(getDriver(), this.vdbName, this.vdbVersion, this.properties));
+        if (this.connection == null) {
+            return false;
+        }
+        prepare();
+        return true;
+    }
+
+    private void prepare() throws SQLException {
+        try {
+            ODBCServerRemoteImpl.setConnectionProperties(this.connection);
+            ODBCServerRemoteImpl.setConnectionProperties(this.connection, this.properties);
+            getVDB();
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        ConnectionImpl pooled = (this.identity == null) ? null : this.connection;
+        if (pooled == null) {
+            super.close();
+            return;
+        }
+        // let the super class finish the results, but give the session back instead of closing it
+        this.connection = null;
+        try {
+            super.close();
+        } finally {
+            this.sessionPool.release(this.identity, pooled);
+        }
     }
 
     @Override
@@ -15,11 +15,12 @@
  */
 package org.teiid.spring.odata;
 
-import java.lang.ref.SoftReference;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -28,6 +29,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.olingo.server.api.ODataHandler;
 import org.apache.olingo.server.api.ODataHttpHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.lang.Nullable;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
@@ -35,22 +39,23 @@ import org.teiid.adminapi.Model;
 import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.metadata.Schema;
 import org.teiid.odata.api.Client;
-import org.teiid.olingo.service.OlingoBridge;
 import org.teiid.olingo.service.OlingoBridge.HandlerInfo;
 import org.teiid.olingo.web.OpenApiHandler;
 import org.teiid.olingo.web.ProxyHttpServletRequest;
 import org.teiid.spring.autoconfigure.TeiidServer;
 import org.teiid.vdb.runtime.VDBKey;
 
-public class SpringODataFilter implements HandlerInterceptor {
+public class SpringODataFilter implements HandlerInterceptor, ApplicationListener<ApplicationReadyEvent>, DisposableBean {
     static final String CONTEXT_PATH = "__CONTEXT_PATH__";
     static final String REQUEST = "__REQUEST__";
+    static final String CLIENTS = "__CLIENTS__";
     private TeiidServer server;
     private VDBMetaData vdb;
     protected OpenApiHandler openApiHandler;
-    protected SoftReference<OlingoBridge> clientReference = null;
+    protected ODataHandlerCache handlerCache;
     protected Properties connectionProperties;
     private Map<Object, Future<Boolean>> loadingQueries = new ConcurrentHashMap<>();
+    protected ClientSessionPool sessionPool;
 
     public SpringODataFilter(Properties props, TeiidServer server, VDBMetaData vdb, ServletContext servletContext) {
         this.connectionProperties = props;
@@ -61,6 +66,11 @@ public class SpringODataFilter implements HandlerInterceptor {
         } catch (ServletException e) {
             throw new IllegalStateException(e);
         }
+        VDBKey served = new VDBKey(vdb.getName(), vdb.getVersion());
+        this.handlerCache = new ODataHandlerCache(server, servletContext.getContextPath(),
+                // not pooled, the session of the background build has no user to be reused for
+                key -> key.equals(served) ? new SpringClient(key.getName(), key.getVersion(),
+                        this.connectionProperties, server, loadingQueries) : null);
     }
 
     @Override
@@ -106,36 +116,36 @@ public class SpringODataFilter implements HandlerInterceptor {
             return false;
         }
 
-        OlingoBridge context = null;
-        if (this.clientReference != null) {
-            context = this.clientReference.get();
-        }
-
-        if (context == null) {
-            context = new OlingoBridge("odata");
-            this.clientReference = new SoftReference<OlingoBridge>(context);
-        }
-
         VDBKey key = new VDBKey(vdbName, vdbVersion);
         Client client = buildClient(vdbName, vdbVersion, this.connectionProperties);
         client.open();
+        boolean handled = false;
+        try {
+            //we'll use a base context for /static/metadata.file
+            //it's not enforced, but if there are cross references between more than 1 visible model,
+            //then the logic will create urls which are invalid for spring
+            HandlerInfo handlerInfo = this.handlerCache.getHandler(httpRequest.getContextPath(), client, modelName);
+            ODataHandler handler = handlerInfo.oDataHttpHandler;
+
+            if (openApiHandler.processOpenApiMetadata(httpRequest, key, httpRequest.getRequestURI(), modelName,
+                    response, handlerInfo.serviceMetadata, null)) {
+                return false;
+            }
 
-        //we'll use a base context for /static/metadata.file
-        //it's not enforced, but if there are cross references between more than 1 visible model,
-        //then the logic will create urls which are invalid for spring
-        HandlerInfo handlerInfo = context.getHandlers(httpRequest.getContextPath(), client, modelName);
-        ODataHandler handler = handlerInfo.oDataHttpHandler;
-
-        if (openApiHandler.processOpenApiMetadata(httpRequest, key, httpRequest.getRequestURI(), modelName,
-                response, handlerInfo.serviceMetadata, null)) {
-            return false;
+            httpRequest.setAttribute(ODataHttpHandler.class.getName(), handler);
+            httpRequest.setAttribute(Client.class.getName(), client);
+            httpRequest.setAttribute(REQUEST, httpRequest);
+            httpRequest.setAttribute(CONTEXT_PATH, contextPath);
+            // more clients of the same VDB, for the parts of a batch processed in parallel
+            httpRequest.setAttribute(CLIENTS, (Supplier<SpringClient>) () -> new SpringClient(vdbName, vdbVersion,
+                    this.connectionProperties, server, loadingQueries, this.sessionPool));
+            handled = true;
+            return true;
+        } finally {
+            if (!handled) {
+                client.close();
+            }
         }
-
-        httpRequest.setAttribute(ODataHttpHandler.class.getName(), handler);
-        httpRequest.setAttribute(Client.class.getName(), client);
-        httpRequest.setAttribute(REQUEST, httpRequest);
-        httpRequest.setAttribute(CONTEXT_PATH, contextPath);
-        return true;
     }
 
     public String modelName(String path, VDBMetaData vdb, boolean implicitVdb) {
@@ -169,18 +179,57 @@ public class SpringODataFilter implements HandlerInterceptor {
         return null;
     }
 
+    public ODataHandlerCache getHandlerCache() {
+        return this.handlerCache;
+    }
+
     public Client buildClient(String vdbName, String version, Properties props) {
-        return new SpringClient(vdbName, version, props, server, loadingQueries);
+        return new SpringClient(vdbName, version, props, server, loadingQueries, this.sessionPool);
+    }
+
+    /**
+     * @param sessionPool pool of the local sessions of the OData requests, null to open a session per request
+     */
+    public void setSessionPool(ClientSessionPool sessionPool) {
+        this.sessionPool = sessionPool;
+    }
+
+    public ClientSessionPool getSessionPool() {
+        return this.sessionPool;
     }
 
     @Override
     public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
             @Nullable ModelAndView modelAndView) throws Exception {
+        closeClient(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            @Nullable Exception ex) throws Exception {
+        // postHandle is skipped when the handler fails
+        closeClient(request);
+    }
+
+    private void closeClient(HttpServletRequest request) throws SQLException {
         Client client = (Client) request.getAttribute(Client.class.getName());
         if (client != null) {
+            request.removeAttribute(Client.class.getName());
             client.close();
         }
     }
 
-}
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        // the VDB is not always redeployed at the end of the boot, make sure its handlers are ready
+        this.handlerCache.prepare(new VDBKey(this.vdb.getName(), this.vdb.getVersion()));
+    }
 
+    @Override
+    public void destroy() {
+        this.handlerCache.close();
+        if (this.sessionPool != null) {
+            this.sessionPool.close();
+        }
+    }
+}
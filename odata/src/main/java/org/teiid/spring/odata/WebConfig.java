@@ -74,7 +74,9 @@ public class WebConfig implements WebMvcConfigurer {
 
     @Bean
     SpringODataFilter getOdataFilter() {
-        return new SpringODataFilter(this.props, this.server, this.vdb, this.servletContext);
+        SpringODataFilter filter = new SpringODataFilter(this.props, this.server, this.vdb, this.servletContext);
+        filter.setSessionPool(ClientSessionPool.build(context.getEnvironment()));
+        return filter;
     }
 
     @Bean
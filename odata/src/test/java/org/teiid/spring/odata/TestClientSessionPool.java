@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.teiid.adminapi.VDB;
+import org.teiid.adminapi.impl.SessionMetadata;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.dqp.internal.process.DQPWorkContext;
+import org.teiid.jdbc.ConnectionImpl;
+import org.teiid.transport.LocalServerConnection;
+
+public class TestClientSessionPool {
+    private ClientSessionPool pool;
+
+    @Before
+    public void setup() {
+        this.pool = new ClientSessionPool(2, Duration.ofMillis(10), Duration.ofMinutes(10));
+    }
+
+    @After
+    public void teardown() {
+        this.pool.close();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testReuseByIdentity() throws SQLException {
+        ConnectionImpl a = this.pool.borrow("a", TestClientSessionPool::connection);
+        this.pool.release("a", a);
+        assertNotSame(a, this.pool.borrow("b", TestClientSessionPool::connection));
+        assertSame(a, this.pool.borrow("a", TestClientSessionPool::connection));
+        assertEquals(2, this.pool.getCreated());
+    }
+
+    @Test
+    public void testMaxSize() throws SQLException {
+        ConnectionImpl a = this.pool.borrow("a", TestClientSessionPool::connection);
+        ConnectionImpl b = this.pool.borrow("b", TestClientSessionPool::connection);
+        try {
+            this.pool.borrow("c", TestClientSessionPool::connection);
+            fail();
+        } catch (SQLException e) {
+            assertEquals(1, this.pool.getTimeouts());
+        }
+        this.pool.release("a", a);
+        assertEquals(1, this.pool.getActive());
+        assertEquals(1, this.pool.getIdle());
+
+        // the idle session of another user is closed to stay within the max size
+        this.pool.borrow("c", TestClientSessionPool::connection);
+        Mockito.verify(a).close();
+        assertEquals(2, this.pool.getActive());
+        assertEquals(0, this.pool.getIdle());
+        this.pool.release("b", b);
+    }
+
+    @Test
+    public void testTryBorrow() throws SQLException {
+        // a quarter of the pool, at least one session, is left to the batches
+        ConnectionImpl a = this.pool.tryBorrow("a", TestClientSessionPool::connection);
+        assertNull(this.pool.tryBorrow("a", TestClientSessionPool::connection));
+        this.pool.release("a", a);
+        ConnectionImpl b = this.pool.borrow("b", TestClientSessionPool::connection);
+        assertSame(a, this.pool.tryBorrow("a", TestClientSessionPool::connection));
+        assertEquals(2, this.pool.getActive());
+        this.pool.release("a", a);
+        this.pool.release("b", b);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        this.pool.close();
+        this.pool = new ClientSessionPool(2, Duration.ofMillis(10), Duration.ofMillis(1));
+        ConnectionImpl a = this.pool.borrow("a", TestClientSessionPool::connection);
+        this.pool.release("a", a);
+        Thread.sleep(10);
+        this.pool.evict();
+        assertEquals(0, this.pool.getIdle());
+        Mockito.verify(a).close();
+    }
+
+    @Test
+    public void testClosedNotReused() throws SQLException {
+        ConnectionImpl a = this.pool.borrow("a", TestClientSessionPool::connection);
+        this.pool.release("a", a);
+        Mockito.stub(a.isClosed()).toReturn(true);
+        assertNotSame(a, this.pool.borrow("a", TestClientSessionPool::connection));
+    }
+
+    @Test
+    public void testSessionVariablesCleared() throws SQLException {
+        SessionMetadata session = new SessionMetadata();
+        VDBMetaData vdb = new VDBMetaData();
+        vdb.setStatus(VDB.Status.ACTIVE);
+        DQPWorkContext context = Mockito.mock(DQPWorkContext.class);
+        Mockito.stub(context.getSession()).toReturn(session);
+        Mockito.stub(context.getVDB()).toReturn(vdb);
+        LocalServerConnection sc = Mockito.mock(LocalServerConnection.class);
+        Mockito.stub(sc.getWorkContext()).toReturn(context);
+        ConnectionImpl a = connection();
+        Mockito.stub(a.getServerConnection()).toReturn(sc);
+
+        assertSame(a, this.pool.borrow("a", () -> a));
+        session.getSessionVariables().put("x", "y");
+        this.pool.release("a", a);
+        assertSame(a, this.pool.borrow("a", TestClientSessionPool::connection));
+        assertTrue(session.getSessionVariables().isEmpty());
+        this.pool.release("a", a);
+    }
+
+    @Test
+    public void testIdentity() {
+        assertEquals("", ClientSessionPool.identity());
+        String identity = identity("user", "token1", "admin");
+        assertEquals(identity, identity("user", "token1", "admin"));
+        assertNotEquals(identity, identity("user", "token2", "admin"));
+        assertNotEquals(identity, identity("user", "token1", "other"));
+        assertNotEquals(identity, identity("other", "token1", "admin"));
+        assertEquals(identity, identity("user", "token1".toCharArray(), "admin"));
+        // credentials that can not be compared are not pooled
+        assertNull(identity("user", new Object(), "admin"));
+    }
+
+    private static String identity(String name, Object credentials, String role) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(name,
+                credentials, Arrays.asList(new SimpleGrantedAuthority(role))));
+        return ClientSessionPool.identity();
+    }
+
+    private static ConnectionImpl connection() {
+        return Mockito.mock(ConnectionImpl.class);
+    }
+}
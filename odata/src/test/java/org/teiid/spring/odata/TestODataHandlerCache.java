@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.teiid.adminapi.Model;
+import org.teiid.adminapi.impl.ModelMetaData;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.metadata.MetadataFactory;
+import org.teiid.metadata.MetadataStore;
+import org.teiid.metadata.Table;
+import org.teiid.odata.api.Client;
+import org.teiid.olingo.service.OlingoBridge.HandlerInfo;
+import org.teiid.query.metadata.SystemMetadata;
+import org.teiid.vdb.runtime.VDBKey;
+
+public class TestODataHandlerCache {
+    private static final VDBKey KEY = new VDBKey("test", "1");
+
+    private ODataHandlerCache cache;
+    private Client client;
+
+    @Before
+    public void setup() throws Exception {
+        this.cache = new ODataHandlerCache(null, "/odata", k -> KEY.equals(k) ? this.client : null);
+        this.client = client(vdb());
+    }
+
+    @After
+    public void tearDown() {
+        this.cache.close();
+    }
+
+    private static VDBMetaData vdb() {
+        VDBMetaData vdb = new VDBMetaData();
+        vdb.setName(KEY.getName());
+        vdb.setVersion(KEY.getVersion());
+        ModelMetaData model = new ModelMetaData();
+        model.setName("m");
+        model.setModelType(Model.Type.VIRTUAL);
+        vdb.addModel(model);
+        return vdb;
+    }
+
+    private static Client client(VDBMetaData vdb) throws Exception {
+        MetadataFactory mf = new MetadataFactory(vdb.getName(), vdb.getVersion(),
+                SystemMetadata.getInstance().getRuntimeTypeMap(), vdb.getModel("m"));
+        Table t = mf.addTable("Person");
+        mf.addColumn("id", "integer", t);
+        mf.addColumn("name", "string", t);
+        mf.addPrimaryKey("PK", Arrays.asList("id"), t);
+        MetadataStore store = new MetadataStore();
+        store.addSchema(mf.getSchema());
+
+        Client client = Mockito.mock(Client.class);
+        Mockito.when(client.getVDB()).thenReturn(vdb);
+        Mockito.when(client.getMetadataStore()).thenReturn(store);
+        return client;
+    }
+
+    @Test
+    public void testHandlerKept() throws Exception {
+        HandlerInfo info = this.cache.getHandler("/odata", this.client, "m");
+        assertSame(info, this.cache.getHandler("/odata", this.client, "m"));
+        assertEquals(1, this.cache.getBuildCount());
+        assertEquals(1, this.cache.size());
+        assertEquals(1, this.cache.getEntityTypeCount());
+
+        // other context path
+        assertNotSame(info, this.cache.getHandler("/other", this.client, "m"));
+        assertEquals(2, this.cache.size());
+    }
+
+    @Test
+    public void testRedeployedVdbRebuilt() throws Exception {
+        HandlerInfo info = this.cache.getHandler("/odata", this.client, "m");
+        HandlerInfo redeployed = this.cache.getHandler("/odata", client(vdb()), "m");
+        assertNotSame(info, redeployed);
+        assertEquals(2, this.cache.getBuildCount());
+        assertEquals(1, this.cache.size());
+
+        this.cache.invalidate(KEY);
+        assertEquals(0, this.cache.size());
+        assertEquals(0, this.cache.getEntityTypeCount());
+    }
+
+    @Test
+    public void testPrepare() throws Exception {
+        this.cache.prepare(KEY);
+        for (int i = 0; i < 500 && this.cache.size() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, this.cache.size());
+        Mockito.verify(this.client, Mockito.timeout(5000)).close();
+        Mockito.verify(this.client).open();
+
+        // built on request only when missing
+        this.cache.getHandler("/odata", this.client, "m");
+        assertEquals(1, this.cache.getBuildCount());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.server.api.ODataHandler;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.teiid.odata.api.Client;
+import org.teiid.olingo.service.TeiidServiceHandler;
+
+public class TestParallelBatch {
+    private ParallelBatch batch;
+    private ODataHandler handler;
+    private Client outer;
+    private Map<String, Client> usedClients = new ConcurrentHashMap<>();
+    private List<SpringClient> clients = Collections.synchronizedList(new ArrayList<>());
+    private ByteArrayOutputStream body;
+    private HttpServletResponse response;
+
+    @Before
+    public void setup() throws Exception {
+        this.batch = new ParallelBatch(4, 2);
+        this.outer = Mockito.mock(Client.class);
+        this.handler = Mockito.mock(ODataHandler.class);
+        Mockito.when(this.handler.process(Mockito.any(ODataRequest.class))).thenAnswer(invocation -> {
+            ODataRequest request = (ODataRequest) invocation.getArguments()[0];
+            String path = request.getRawODataPath();
+            this.usedClients.put(path, TeiidServiceHandler.getClient());
+            ODataResponse result = new ODataResponse();
+            result.setStatusCode(path.contains("missing") ? 404 : 200);
+            result.setHeader(HttpHeader.CONTENT_TYPE, "text/plain");
+            result.setContent(new ByteArrayInputStream(("result of " + path).getBytes(StandardCharsets.UTF_8)));
+            return result;
+        });
+
+        this.body = new ByteArrayOutputStream();
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+        this.response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(this.response.getOutputStream()).thenReturn(out);
+    }
+
+    @After
+    public void tearDown() {
+        this.batch.close();
+    }
+
+    private static HttpServletRequest request(String... prefer) {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getMethod()).thenReturn("POST");
+        Mockito.when(request.getRequestURI()).thenReturn("/odata/$batch");
+        Mockito.when(request.getRequestURL()).thenReturn(new StringBuffer("http://localhost/odata/$batch"));
+        Mockito.when(request.getContextPath()).thenReturn("/odata");
+        Mockito.when(request.getContentType()).thenReturn("multipart/mixed;boundary=\"b\"");
+        Mockito.when(request.getHeaders(HttpHeader.PREFER)).thenReturn(Collections.enumeration(Arrays.asList(prefer)));
+        return request;
+    }
+
+    private static byte[] body(String... requests) {
+        StringBuilder sb = new StringBuilder();
+        for (String request : requests) {
+            sb.append("--b\r\nContent-Type: application/http\r\nContent-Transfer-Encoding: binary\r\n\r\n")
+                    .append(request).append(" HTTP/1.1\r\nAccept: text/plain\r\n\r\n\r\n");
+        }
+        return sb.append("--b--\r\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private SpringClient client(boolean free) throws Exception {
+        SpringClient client = Mockito.mock(SpringClient.class);
+        Mockito.when(client.tryOpen()).thenReturn(free);
+        this.clients.add(client);
+        return client;
+    }
+
+    private boolean process(HttpServletRequest request, byte[] content, boolean free) throws IOException {
+        return this.batch.process(request, content, this.response, this.handler, this.outer, () -> {
+            try {
+                return client(free);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testReadsInParallel() throws Exception {
+        assertTrue(process(request(), body("GET People(1)", "GET People(2)", "GET People(3)"), true));
+
+        String result = new String(this.body.toByteArray(), StandardCharsets.UTF_8);
+        int first = result.indexOf("result of /People(1)");
+        int second = result.indexOf("result of /People(2)");
+        int third = result.indexOf("result of /People(3)");
+        assertTrue(result, first > 0 && second > first && third > second);
+        Mockito.verify(this.response).setStatus(HttpServletResponse.SC_OK);
+        Mockito.verify(this.response).setContentType(Mockito.startsWith("multipart/mixed;boundary="));
+
+        // each part has its own session, which is closed when the part is done
+        assertEquals(3, this.clients.size());
+        for (int i = 0; i < 3; i++) {
+            SpringClient client = this.clients.get(i);
+            assertEquals(client, this.usedClients.get("/People(" + (i + 1) + ")"));
+            Mockito.verify(client).close();
+        }
+    }
+
+    @Test
+    public void testNoFreeSession() throws Exception {
+        assertTrue(process(request(), body("GET People(1)", "GET People(2)"), false));
+
+        assertEquals(this.outer, this.usedClients.get("/People(1)"));
+        assertEquals(this.outer, this.usedClients.get("/People(2)"));
+        for (SpringClient client : this.clients) {
+            Mockito.verify(client, Mockito.never()).close();
+        }
+    }
+
+    @Test
+    public void testStopAtFirstError() throws Exception {
+        assertTrue(process(request(), body("GET missing", "GET People(2)"), true));
+        String result = new String(this.body.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(result, result.contains("404"));
+        assertFalse(result, result.contains("result of /People(2)"));
+
+        this.body.reset();
+        assertTrue(process(request("odata.continue-on-error"), body("GET missing", "GET People(2)"), true));
+        result = new String(this.body.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(result, result.contains("result of /People(2)"));
+    }
+
+    @Test
+    public void testChangesLeftToOlingo() throws Exception {
+        assertFalse(process(request(), body("GET People(1)", "DELETE People(2)"), true));
+        Mockito.verify(this.handler, Mockito.never()).process(Mockito.any(ODataRequest.class));
+        assertTrue(this.clients.isEmpty());
+    }
+
+    @Test
+    public void testBoundary() {
+        assertEquals("b", ParallelBatch.boundary("multipart/mixed; boundary=b"));
+        assertEquals("b", ParallelBatch.boundary("multipart/mixed; boundary=\"b\""));
+        assertNull(ParallelBatch.boundary("application/json"));
+        assertNull(ParallelBatch.boundary(null));
+    }
+
+    @Test
+    public void testContinueOnError() {
+        assertTrue(ParallelBatch.continueOnError(Collections.enumeration(Arrays.asList("odata.continue-on-error"))));
+        assertTrue(ParallelBatch.continueOnError(
+                Collections.enumeration(Arrays.asList("odata.maxpagesize=10, continue-on-error=true"))));
+        assertFalse(ParallelBatch.continueOnError(
+                Collections.enumeration(Arrays.asList("odata.continue-on-error=false"))));
+        assertFalse(ParallelBatch.continueOnError(null));
+    }
+}
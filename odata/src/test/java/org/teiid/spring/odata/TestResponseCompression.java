@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.odata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.util.StreamUtils;
+
+public class TestResponseCompression {
+    private ResponseCompression compression;
+    private HttpServletResponse response;
+    private ByteArrayOutputStream body;
+
+    @Before
+    public void setup() throws IOException {
+        this.compression = new ResponseCompression(1024, 32 * 1024, -1,
+                new String[] {"application/json", "text/plain"});
+        this.body = new ByteArrayOutputStream();
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+        this.response = Mockito.mock(HttpServletResponse.class);
+        Mockito.stub(this.response.getOutputStream()).toReturn(out);
+        Mockito.stub(this.response.getCharacterEncoding()).toReturn("UTF-8");
+        Mockito.stub(this.response.getContentType()).toReturn("application/json;charset=UTF-8");
+    }
+
+    private byte[] write(String acceptEncoding, int size) throws IOException {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.stub(request.getHeader("Accept-Encoding")).toReturn(acceptEncoding);
+        HttpServletResponse wrapped = this.compression.wrap(request, this.response);
+        char[] content = new char[size];
+        Arrays.fill(content, 'x');
+        PrintWriter writer = wrapped.getWriter();
+        writer.write(content);
+        ResponseCompression.finish(wrapped);
+        return new String(content).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertEquals("gzip", ResponseCompression.negotiate("gzip, deflate"));
+        assertEquals("deflate", ResponseCompression.negotiate("gzip;q=0.5, deflate"));
+        assertEquals("gzip", ResponseCompression.negotiate("*"));
+        assertEquals("deflate", ResponseCompression.negotiate("gzip;q=0, *;q=0.1"));
+        assertNull(ResponseCompression.negotiate("identity"));
+        assertNull(ResponseCompression.negotiate(null));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        byte[] expected = write("deflate;q=0.5, gzip", 4096);
+        Mockito.verify(this.response).setHeader("Content-Encoding", "gzip");
+        Mockito.verify(this.response).addHeader("Vary", "Accept-Encoding");
+        assertArrayEquals(expected,
+                StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(this.body.toByteArray()))));
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        byte[] expected = write("deflate", 4096);
+        Mockito.verify(this.response).setHeader("Content-Encoding", "deflate");
+        assertArrayEquals(expected, StreamUtils
+                .copyToByteArray(new InflaterInputStream(new ByteArrayInputStream(this.body.toByteArray()))));
+    }
+
+    @Test
+    public void testSmallResponsePassedThrough() throws IOException {
+        byte[] expected = write("gzip", 100);
+        assertArrayEquals(expected, this.body.toByteArray());
+        Mockito.verify(this.response).setContentLength(100);
+        // the size does not depend on the request
+        Mockito.verify(this.response, Mockito.never()).addHeader("Vary", "Accept-Encoding");
+        Mockito.verify(this.response, Mockito.never()).setHeader(Mockito.eq("Content-Encoding"), Mockito.anyString());
+    }
+
+    @Test
+    public void testNotAcceptedPassedThrough() throws IOException {
+        byte[] expected = write("identity", 4096);
+        assertArrayEquals(expected, this.body.toByteArray());
+        // another client would get it compressed
+        Mockito.verify(this.response).addHeader("Vary", "Accept-Encoding");
+        Mockito.verify(this.response, Mockito.never()).setHeader(Mockito.eq("Content-Encoding"), Mockito.anyString());
+    }
+
+    @Test
+    public void testOtherContentTypePassedThrough() throws IOException {
+        Mockito.stub(this.response.getContentType()).toReturn("image/png");
+        byte[] expected = write("gzip", 4096);
+        assertArrayEquals(expected, this.body.toByteArray());
+        Mockito.verify(this.response, Mockito.never()).addHeader("Vary", "Accept-Encoding");
+        Mockito.verify(this.response, Mockito.never()).setHeader(Mockito.eq("Content-Encoding"), Mockito.anyString());
+    }
+}
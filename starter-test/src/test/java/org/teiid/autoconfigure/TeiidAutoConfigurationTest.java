@@ -17,6 +17,7 @@
 package org.teiid.autoconfigure;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.teiid.autoconfigure.JDBCUtils.close;
@@ -41,6 +42,8 @@ import org.teiid.spring.autoconfigure.TeiidAutoConfiguration;
 import org.teiid.spring.autoconfigure.TeiidServer;
 import org.teiid.spring.configuration.TestConfiguration;
 
+import com.zaxxer.hikari.HikariDataSource;
+
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringBootTest(classes = {TeiidAutoConfiguration.class, TestConfiguration.class})
@@ -86,6 +89,8 @@ public class TeiidAutoConfigurationTest {
 
     @Test
     public void testTeiidSpringDatasource() throws SQLException {
+        // pooling is opt-in
+        assertFalse(datasource.isWrapperFor(HikariDataSource.class));
         Connection conn = datasource.getConnection();
         testConnection(conn);
     }
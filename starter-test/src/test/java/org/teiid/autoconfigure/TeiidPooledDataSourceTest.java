@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.teiid.autoconfigure.JDBCUtils.close;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.teiid.spring.autoconfigure.TeiidAutoConfiguration;
+import org.teiid.spring.configuration.TestConfiguration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = {TeiidAutoConfiguration.class, TestConfiguration.class},
+        properties = {"spring.datasource.teiid.pool.enabled=true",
+                "spring.datasource.teiid.pool.maximum-pool-size=1"})
+@DirtiesContext
+public class TeiidPooledDataSourceTest {
+
+    @Autowired
+    private DataSource datasource;
+
+    @After
+    public void clearIdentity() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static void login(String user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, AuthorityUtils.createAuthorityList("user")));
+    }
+
+    @Test
+    public void testCallersWithoutIdentityShareSession() throws SQLException {
+        assertTrue(datasource.isWrapperFor(HikariDataSource.class));
+
+        Connection conn = datasource.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.execute("CREATE LOCAL TEMPORARY TABLE #shared (id integer)");
+        close(stmt, conn);
+
+        // the only connection of the pool keeps its session, as documented
+        conn = datasource.getConnection();
+        stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT count(*) FROM #shared");
+        assertTrue(rs.next());
+        stmt.execute("DROP TABLE #shared");
+        close(rs, stmt, conn);
+    }
+
+    @Test
+    public void testSecondIdentityGetsNewSession() throws SQLException {
+        // Teiid builds the roles of an authenticated session with java.security.acl, removed in Java 14
+        Assume.assumeTrue(isAclAvailable());
+
+        login("alice");
+        Connection conn = datasource.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.execute("CREATE LOCAL TEMPORARY TABLE #alice (id integer)");
+        stmt.execute("INSERT INTO #alice (id) VALUES (1)");
+        ResultSet rs = stmt.executeQuery("SELECT teiid_session_set('owner', 'alice')");
+        close(rs, stmt, conn);
+
+        // the only connection of the pool, now borrowed by another identity
+        login("bob");
+        conn = datasource.getConnection();
+        stmt = conn.createStatement();
+        rs = stmt.executeQuery("SELECT user(), teiid_session_get('owner')");
+        assertTrue(rs.next());
+        assertEquals("bob", rs.getString(1).split("@")[0]);
+        assertNull(rs.getString(2));
+        rs.close();
+        try {
+            stmt.executeQuery("SELECT id FROM #alice");
+            fail("the temporary table of the previous identity must not be visible");
+        } catch (SQLException e) {
+            // expected
+        }
+        close(stmt, conn);
+
+        // the same identity shares the session, as documented
+        conn = datasource.getConnection();
+        stmt = conn.createStatement();
+        rs = stmt.executeQuery("SELECT teiid_session_get('owner')");
+        assertTrue(rs.next());
+        assertNull(rs.getString(1));
+        rs = stmt.executeQuery("SELECT teiid_session_set('owner', 'bob')");
+        close(rs, stmt, conn);
+
+        conn = datasource.getConnection();
+        stmt = conn.createStatement();
+        rs = stmt.executeQuery("SELECT teiid_session_get('owner')");
+        assertTrue(rs.next());
+        assertEquals("bob", rs.getString(1));
+        assertFalse(rs.next());
+        close(rs, stmt, conn);
+    }
+
+    private static boolean isAclAvailable() {
+        try {
+            Class.forName("java.security.acl.Group");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -78,4 +78,12 @@ public @interface ExcelTable {
      * @return string
      */
     String source() default "file"; // this the default web connection manager
+
+    /**
+     * Caches the rows of the sheet, so that the file is only read again once the time to live expires. See
+     * {@link SelectQuery#cacheTtl()}.
+     *
+     * @return time to live in milliseconds, 0 for no expiry, -1 (default) to not cache
+     */
+    long cacheTtl() default -1;
 }
@@ -132,5 +132,12 @@ public @interface JsonTable {
      * @return boolean
      */
     boolean rootIsArray() default false;
-}
 
+    /**
+     * Caches the rows, so that the endpoint is only called again once the time to live expires. See
+     * {@link SelectQuery#cacheTtl()}.
+     *
+     * @return time to live in milliseconds, 0 for no expiry, -1 (default) to not cache
+     */
+    long cacheTtl() default -1;
+}
@@ -102,5 +102,22 @@ public @interface RestConfiguration {
      * @return body
      */
     String bodyBean() default "";
+
+    /**
+     * When the source has the response cache enabled with its "responseCacheSize" property, GET responses of this
+     * entity are served from the cache while they are fresh. Set to false for the data that must always be read
+     * from the service.
+     *
+     * @return default true
+     */
+    boolean responseCache() default true;
+
+    /**
+     * Time in seconds a cached response is used without asking the service again, when the service does not define
+     * it with the Cache-Control or Expires headers. Negative value uses the "responseCacheTtl" of the source.
+     *
+     * @return default -1
+     */
+    int responseCacheTtl() default -1;
 }
 
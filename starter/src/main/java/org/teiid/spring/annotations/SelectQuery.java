@@ -89,5 +89,13 @@ import java.lang.annotation.Target;
 @Retention(RUNTIME)
 public @interface SelectQuery {
     String value() default "";
-}
 
+    /**
+     * Caches the rows of the view, see the cache hint in Teiid. The rows are read once and then served from the
+     * cache until the time to live expires, updates through the view do not refresh the cache.
+     *
+     * @return time to live of the cached rows in milliseconds, 0 to keep them until the application restarts,
+     *         -1 (default) to not cache the view
+     */
+    long cacheTtl() default -1;
+}
@@ -168,5 +168,12 @@ public @interface TextTable {
      * @return for fixed with, width of column
      */
     int width() default 0;
-}
 
+    /**
+     * Caches the parsed rows, so that the file is only read again once the time to live expires. See
+     * {@link SelectQuery#cacheTtl()}.
+     *
+     * @return time to live in milliseconds, 0 for no expiry, -1 (default) to not cache
+     */
+    long cacheTtl() default -1;
+}
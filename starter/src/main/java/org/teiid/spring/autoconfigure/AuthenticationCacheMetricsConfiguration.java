@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.teiid.spring.identity.AuthenticationCache;
+import org.teiid.spring.identity.SpringSecurityHelper;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+@Configuration
+@ConditionalOnClass(MeterBinder.class)
+@ConditionalOnProperty(name = AuthenticationCache.PREFIX + ".enabled", havingValue = "true")
+public class AuthenticationCacheMetricsConfiguration {
+
+    @Bean
+    public MeterBinder teiidAuthenticationCacheMetrics(SpringSecurityHelper securityHelper) {
+        return registry -> {
+            AuthenticationCache cache = securityHelper.getAuthenticationCache();
+            if (cache != null) {
+                CaffeineCacheMetrics.monitor(registry, cache.getCache(), "teiid.authentication");
+            }
+        };
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.teiid.logging.CommandLogMessage;
+import org.teiid.logging.CommandLogMessage.Event;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.Logger;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.navigator.DeepPreOrderNavigator;
+import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.sql.visitor.GroupCollectorVisitor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Times the user queries, per query and per referenced view, and the queries Teiid sends to the sources, per
+ * source model, from the Teiid command log. While bound it is installed as the Teiid log listener, every other
+ * message is passed on to the listener it replaced.
+ */
+public class CommandLogMetrics implements Logger, MeterBinder, DisposableBean {
+    static final String PREFIX = "spring.teiid.metrics";
+    private static final int MAX_IN_FLIGHT = 100000;
+    private static final Log logger = LogFactory.getLog(CommandLogMetrics.class);
+
+    private static class InFlight {
+        private final long start = System.nanoTime();
+        private final Collection<String> views;
+
+        InFlight(Collection<String> views) {
+            this.views = views;
+        }
+    }
+
+    private final Supplier<Map<String, String>> views;
+    private final Cache<String, Collection<String>> viewsBySql = Caffeine.newBuilder().maximumSize(1000).build();
+    private final Map<String, InFlight> requests = new ConcurrentHashMap<>();
+    private final Map<Object, InFlight> sourceRequests = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+    private volatile Logger delegate;
+
+    /**
+     * @param views the views that may be used as a tag, by lower case full and unique short name
+     */
+    public CommandLogMetrics(Supplier<Map<String, String>> views) {
+        this.views = views;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("teiid.requests.active", this.requests, Map::size)
+                .description("User queries in progress").register(registry);
+        Gauge.builder("teiid.source.requests.active", this.sourceRequests, Map::size)
+                .description("Source queries in progress").register(registry);
+        if (this.delegate == null) {
+            this.delegate = LogManager.setLogListener(this);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        Logger previous = this.delegate;
+        if (previous != null) {
+            LogManager.setLogListener(previous);
+            this.delegate = null;
+        }
+    }
+
+    @Override
+    public boolean isEnabled(String context, int msgLevel) {
+        // the plans are logged at TRACE, only build them if the delegate wants them
+        return (msgLevel <= MessageLevel.DETAIL && isCommandLog(context))
+                || (this.delegate != null && this.delegate.isEnabled(context, msgLevel));
+    }
+
+    @Override
+    public void log(int level, String context, Object... msg) {
+        if (isCommandLog(context) && msg.length == 1 && msg[0] instanceof CommandLogMessage) {
+            record((CommandLogMessage) msg[0]);
+        }
+        Logger d = this.delegate;
+        if (d != null && d.isEnabled(context, level)) {
+            d.log(level, context, msg);
+        }
+    }
+
+    @Override
+    public void log(int level, String context, Throwable t, Object... msg) {
+        Logger d = this.delegate;
+        if (d != null && d.isEnabled(context, level)) {
+            d.log(level, context, t, msg);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        Logger d = this.delegate;
+        if (d != null) {
+            d.shutdown();
+        }
+    }
+
+    @Override
+    public void putMdc(String key, String val) {
+        Logger d = this.delegate;
+        if (d != null) {
+            d.putMdc(key, val);
+        }
+    }
+
+    @Override
+    public void removeMdc(String key) {
+        Logger d = this.delegate;
+        if (d != null) {
+            d.removeMdc(key);
+        }
+    }
+
+    private static boolean isCommandLog(String context) {
+        return LogConstants.CTX_COMMANDLOGGING.equals(context)
+                || LogConstants.CTX_COMMANDLOGGING_SOURCE.equals(context);
+    }
+
+    void record(CommandLogMessage message) {
+        MeterRegistry r = this.registry;
+        if (r == null || message.getStatus() == null) {
+            return;
+        }
+        if (message.isSource()) {
+            Object key = message.getExecutionContext() != null ? message.getExecutionContext()
+                    : message.getRequestID() + "." + message.getSourceCommandID();
+            if (message.getStatus() == Event.NEW) {
+                if (this.sourceRequests.size() < MAX_IN_FLIGHT) {
+                    this.sourceRequests.put(key, new InFlight(Collections.emptyList()));
+                }
+                return;
+            }
+            String outcome = outcome(message.getStatus());
+            InFlight inFlight = outcome == null ? null : this.sourceRequests.remove(key);
+            if (inFlight == null) {
+                return;
+            }
+            String model = String.valueOf(message.getModelName());
+            String translator = String.valueOf(message.getTranslatorName());
+            Timer.builder("teiid.source.query").description("Queries Teiid sent to a source")
+                    .tags("model", model, "translator", translator, "outcome", outcome).register(r)
+                    .record(System.nanoTime() - inFlight.start, TimeUnit.NANOSECONDS);
+            if (message.getStatus() == Event.ERROR) {
+                Counter.builder("teiid.source.errors").description("Source queries that failed")
+                        .tags("model", model, "translator", translator).register(r).increment();
+            }
+            return;
+        }
+        String key = message.getSessionID() + "." + message.getRequestID();
+        if (message.getStatus() == Event.NEW) {
+            if (this.requests.size() < MAX_IN_FLIGHT) {
+                this.requests.put(key, new InFlight(viewsOf(message.getSql())));
+            }
+            return;
+        }
+        String outcome = outcome(message.getStatus());
+        InFlight inFlight = outcome == null ? null : this.requests.remove(key);
+        if (inFlight == null) {
+            return;
+        }
+        long duration = System.nanoTime() - inFlight.start;
+        Timer.builder("teiid.query").description("User queries").tags("outcome", outcome).register(r)
+                .record(duration, TimeUnit.NANOSECONDS);
+        for (String view : inFlight.views) {
+            Timer.builder("teiid.view.query").description("User queries that read or write a view")
+                    .tags("view", view, "outcome", outcome).register(r).record(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String outcome(Event event) {
+        switch (event) {
+        case END:
+            return "success";
+        case ERROR:
+            return "error";
+        case CANCEL:
+            return "cancel";
+        default:
+            return null;
+        }
+    }
+
+    Collection<String> viewsOf(String sql) {
+        if (sql == null) {
+            return Collections.emptyList();
+        }
+        return this.viewsBySql.get(sql, k -> {
+            Map<String, String> known = this.views.get();
+            if (known.isEmpty()) {
+                return Collections.emptyList();
+            }
+            try {
+                Command command = QueryParser.getQueryParser().parseCommand(k);
+                GroupCollectorVisitor visitor = new GroupCollectorVisitor(new ArrayList<>());
+                DeepPreOrderNavigator.doVisit(command, visitor);
+                Set<String> result = new LinkedHashSet<>();
+                for (GroupSymbol group : visitor.getGroups()) {
+                    String view = known.get(group.getNonCorrelationName().toLowerCase());
+                    if (view != null) {
+                        result.add(view);
+                    }
+                }
+                return new ArrayList<>(result);
+            } catch (Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Could not find the views of " + k, e);
+                }
+                return Collections.<String>emptyList();
+            }
+        });
+    }
+
+    /**
+     * @return the views by lower case full name, and by lower case name where that is unique
+     */
+    static Map<String, String> viewNames(Collection<String> fullNames) {
+        Map<String, String> result = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (String fullName : fullNames) {
+            result.put(fullName.toLowerCase(), fullName);
+            counts.merge(shortName(fullName), 1, Integer::sum);
+        }
+        for (String fullName : fullNames) {
+            String name = shortName(fullName);
+            if (counts.get(name) == 1) {
+                result.putIfAbsent(name, fullName);
+            }
+        }
+        return result;
+    }
+
+    private static String shortName(String fullName) {
+        return fullName.substring(fullName.indexOf('.') + 1).toLowerCase();
+    }
+}
@@ -15,49 +15,217 @@
  */
 package org.teiid.spring.autoconfigure;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.springframework.data.transaction.ChainedTransactionManager;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.transaction.HeuristicCompletionException;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.TransactionStatus;
-import org.springframework.util.Assert;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
-public class DelegatingPlatformTransactionManager implements PlatformTransactionManager {
-    private List<PlatformTransactionManager> tms;
-    private ChainedTransactionManager delegate;
+/**
+ * Transaction manager used when there is no JTA transaction manager, it spans the resource local transactions of the
+ * data sources. Beginning a transaction does not touch any data source, a data source is enlisted when Teiid first
+ * obtains a connection from it within the transaction, see {@link #enlist(DataSource)}. Only the enlisted data
+ * sources are committed or rolled back, in the reverse order of their enlistment.
+ *
+ * Like with the ChainedTransactionManager this is not a two phase commit, when one of the data sources fails to
+ * commit the ones already committed are not rolled back.
+ */
+public class DelegatingPlatformTransactionManager extends AbstractPlatformTransactionManager {
+    private static final long serialVersionUID = -4468186125565637133L;
+    private static final Log logger = LogFactory.getLog(DelegatingPlatformTransactionManager.class);
 
-    @Override
-    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
-        check();
-        return this.delegate.getTransaction(definition);
+    private transient Map<DataSource, PlatformTransactionManager> tms = new HashMap<>();
+
+    private static final class Enlisted {
+        final DataSource dataSource;
+        final PlatformTransactionManager tm;
+        final TransactionStatus status;
+
+        Enlisted(DataSource dataSource, PlatformTransactionManager tm, TransactionStatus status) {
+            this.dataSource = dataSource;
+            this.tm = tm;
+            this.status = status;
+        }
     }
 
-    @Override
-    public void commit(TransactionStatus status) throws TransactionException {
-        check();
-        this.delegate.commit(status);
+    /**
+     * Bound to the thread for the duration of the transaction
+     */
+    private static final class Enlistment {
+        final TransactionDefinition definition;
+        final List<Enlisted> resources = new ArrayList<>();
+        final Map<DataSource, Object> suspended = new HashMap<>();
+        boolean rollbackOnly;
+
+        Enlistment(TransactionDefinition definition) {
+            DefaultTransactionDefinition def = new DefaultTransactionDefinition(definition);
+            def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+            this.definition = def;
+        }
     }
 
-    @Override
-    public void rollback(TransactionStatus status) throws TransactionException {
-        check();
-        this.delegate.rollback(status);
+    private static final class TransactionObject implements SmartTransactionObject {
+        Enlistment enlistment;
+
+        @Override
+        public boolean isRollbackOnly() {
+            return this.enlistment != null && this.enlistment.rollbackOnly;
+        }
+
+        @Override
+        public void flush() {
+            TransactionSynchronizationUtils.triggerFlush();
+        }
+    }
+
+    public DelegatingPlatformTransactionManager() {
+        setTransactionSynchronization(SYNCHRONIZATION_ALWAYS);
     }
 
     // do not make copy, use same reference as the PlatformTransactionManagerAdapter
     // can keep adding the data sources.
-    void setTransactionManagers(List<PlatformTransactionManager> tms) {
+    void setTransactionManagers(Map<DataSource, PlatformTransactionManager> tms) {
         this.tms = tms;
     }
 
-    void check() throws TransactionException {
-        if (this.delegate == null) {
-            Assert.notNull(tms, "No registered data sources found");
-            Assert.isTrue(!tms.isEmpty(), "No registered data sources found");
-            this.delegate = new ChainedTransactionManager(tms.toArray(new PlatformTransactionManager[tms.size()]));
+    /**
+     * Begins the resource local transaction of the data source, when there is a transaction of this manager active
+     * on the current thread and the data source is not already part of it.
+     */
+    void enlist(DataSource ds) {
+        Enlistment enlistment = (Enlistment) TransactionSynchronizationManager.getResource(this);
+        if (enlistment == null || TransactionSynchronizationManager.hasResource(ds)) {
+            return;
+        }
+        PlatformTransactionManager tm = this.tms.get(ds);
+        if (tm == null) {
+            return;
+        }
+        TransactionStatus status = tm.getTransaction(enlistment.definition);
+        enlistment.resources.add(new Enlisted(ds, tm, status));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Data source " + ds + " enlisted in the transaction");
+        }
+    }
+
+    @Override
+    protected Object doGetTransaction() throws TransactionException {
+        TransactionObject txObject = new TransactionObject();
+        txObject.enlistment = (Enlistment) TransactionSynchronizationManager.getResource(this);
+        return txObject;
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) throws TransactionException {
+        return ((TransactionObject) transaction).enlistment != null;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) throws TransactionException {
+        TransactionObject txObject = (TransactionObject) transaction;
+        txObject.enlistment = new Enlistment(definition);
+        TransactionSynchronizationManager.bindResource(this, txObject.enlistment);
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) throws TransactionException {
+        TransactionObject txObject = (TransactionObject) transaction;
+        Enlistment enlistment = (Enlistment) TransactionSynchronizationManager.unbindResource(this);
+        // connections of the enlisted sources must not be seen by the new transaction
+        for (Enlisted e : enlistment.resources) {
+            enlistment.suspended.put(e.dataSource, TransactionSynchronizationManager.unbindResource(e.dataSource));
+        }
+        txObject.enlistment = null;
+        return enlistment;
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) throws TransactionException {
+        Enlistment enlistment = (Enlistment) suspendedResources;
+        for (Map.Entry<DataSource, Object> entry : enlistment.suspended.entrySet()) {
+            TransactionSynchronizationManager.bindResource(entry.getKey(), entry.getValue());
+        }
+        enlistment.suspended.clear();
+        TransactionSynchronizationManager.bindResource(this, enlistment);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) throws TransactionException {
+        List<Enlisted> resources = ((TransactionObject) status.getTransaction()).enlistment.resources;
+        Exception commitFailure = null;
+        boolean committed = false;
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            Enlisted e = resources.get(i);
+            if (commitFailure == null) {
+                try {
+                    e.tm.commit(e.status);
+                    committed = true;
+                } catch (Exception ex) {
+                    commitFailure = ex;
+                }
+            } else {
+                rollback(e);
+            }
+        }
+        if (commitFailure != null) {
+            if (!committed) {
+                if (commitFailure instanceof TransactionException) {
+                    throw (TransactionException) commitFailure;
+                }
+                throw new TransactionSystemException("Failed to commit the data source", commitFailure);
+            }
+            throw new HeuristicCompletionException(HeuristicCompletionException.STATE_MIXED, commitFailure);
         }
     }
-}
 
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) throws TransactionException {
+        List<Enlisted> resources = ((TransactionObject) status.getTransaction()).enlistment.resources;
+        RuntimeException rollbackFailure = null;
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            RuntimeException ex = rollback(resources.get(i));
+            if (rollbackFailure == null) {
+                rollbackFailure = ex;
+            }
+        }
+        if (rollbackFailure != null) {
+            throw rollbackFailure;
+        }
+    }
+
+    private RuntimeException rollback(Enlisted e) {
+        try {
+            e.tm.rollback(e.status);
+            return null;
+        } catch (RuntimeException ex) {
+            logger.warn("Rollback of data source " + e.dataSource + " failed", ex);
+            return ex;
+        }
+    }
+
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) throws TransactionException {
+        ((TransactionObject) status.getTransaction()).enlistment.rollbackOnly = true;
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(this);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.unit.DataSize;
+import org.teiid.runtime.EmbeddedConfiguration;
+
+/**
+ * Applies the {@link TeiidProperties.Buffer} and {@link TeiidProperties.Engine} settings to the
+ * {@link EmbeddedConfiguration}. Where a setting is left out Teiid sizes the heap based buffers from the max heap,
+ * which already follows the container limit; on top of that the disk storage is limited to the free space of the
+ * buffer directory, and the off heap buffer to half of the container memory not taken by the heap.
+ */
+public class EngineConfigurer {
+    private static final Log logger = LogFactory.getLog(EngineConfigurer.class);
+
+    static final DataSize TEIID_MAX_STORAGE_SIZE = DataSize.ofGigabytes(50);
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+    private static final String[] CGROUP_MEMORY_LIMITS = { "/sys/fs/cgroup/memory.max",
+            "/sys/fs/cgroup/memory/memory.limit_in_bytes" };
+
+    /**
+     * The buffer settings of the {@link EmbeddedConfiguration}, null where Teiid picks the value. Their setters are
+     * deprecated, but Teiid 16 still reads them to configure the buffer service when the server starts.
+     */
+    private static final class BufferSettings {
+        private boolean offHeap;
+        private Integer maxReserveKb;
+        private Integer maxProcessingKb;
+        private Integer memoryMb;
+        private Integer maxStorageMb;
+        private Integer maxFileMb;
+
+        @SuppressWarnings("deprecation")
+        void applyTo(EmbeddedConfiguration config) {
+            config.setMemoryBufferOffHeap(this.offHeap);
+            if (this.maxReserveKb != null) {
+                config.setMaxReserveKb(this.maxReserveKb);
+            }
+            if (this.maxProcessingKb != null) {
+                config.setMaxProcessingKb(this.maxProcessingKb);
+            }
+            if (this.memoryMb != null) {
+                config.setMemoryBufferSpace(this.memoryMb);
+            }
+            if (this.maxStorageMb != null) {
+                config.setMaxBufferSpace(this.maxStorageMb);
+            }
+            if (this.maxFileMb != null) {
+                config.setMaxFileSize(this.maxFileMb);
+            }
+        }
+    }
+
+    private final TeiidProperties.Buffer buffer;
+    private final TeiidProperties.Engine engine;
+    private final long memoryLimit;
+    private final long maxHeap;
+
+    public EngineConfigurer(TeiidProperties properties) {
+        this(properties.getBuffer(), properties.getEngine(), containerMemoryLimit(), Runtime.getRuntime().maxMemory());
+    }
+
+    EngineConfigurer(TeiidProperties.Buffer buffer, TeiidProperties.Engine engine, long memoryLimit, long maxHeap) {
+        this.buffer = buffer;
+        this.engine = engine;
+        this.memoryLimit = memoryLimit;
+        this.maxHeap = maxHeap;
+    }
+
+    /**
+     * @throws IllegalStateException if the settings can not work together
+     */
+    public void configure(EmbeddedConfiguration config) {
+        TeiidProperties.Buffer b = this.buffer;
+        BufferSettings settings = new BufferSettings();
+        config.setUseDisk(b.isUseDisk());
+        settings.offHeap = b.isOffHeap();
+        if (b.getProcessorBatchSize() != null) {
+            config.setProcessorBatchSize(positive("teiid.buffer.processor-batch-size", b.getProcessorBatchSize()));
+        }
+
+        long reserve = -1;
+        if (b.getMaxReserveSize() != null) {
+            reserve = positive("teiid.buffer.max-reserve-size", b.getMaxReserveSize());
+            if (reserve >= this.maxHeap) {
+                throw new IllegalStateException("teiid.buffer.max-reserve-size " + b.getMaxReserveSize()
+                        + " must be less than the max heap of " + this.maxHeap + "B");
+            }
+            settings.maxReserveKb = (int) (reserve / 1024);
+        }
+        if (b.getMaxProcessingSize() != null) {
+            long processing = positive("teiid.buffer.max-processing-size", b.getMaxProcessingSize());
+            if (reserve != -1 && processing > reserve) {
+                throw new IllegalStateException("teiid.buffer.max-processing-size " + b.getMaxProcessingSize()
+                        + " can not be more than teiid.buffer.max-reserve-size " + b.getMaxReserveSize());
+            }
+            settings.maxProcessingKb = (int) (processing / 1024);
+        }
+
+        if (b.getMemorySize() != null) {
+            long memory = positive("teiid.buffer.memory-size", b.getMemorySize());
+            if (b.isOffHeap() && this.memoryLimit != NO_LIMIT && memory + this.maxHeap > this.memoryLimit) {
+                throw new IllegalStateException("teiid.buffer.memory-size " + b.getMemorySize()
+                        + " and the max heap of " + this.maxHeap + "B do not fit in the container memory limit of "
+                        + this.memoryLimit + "B");
+            }
+            settings.memoryMb = toMegabytes(memory);
+        } else if (b.isOffHeap() && this.memoryLimit != NO_LIMIT) {
+            long memory = Math.max(0, this.memoryLimit - this.maxHeap) / 2;
+            if (memory < DataSize.ofMegabytes(1).toBytes()) {
+                throw new IllegalStateException("The max heap of " + this.maxHeap
+                        + "B leaves no room for an off heap buffer in the container memory limit of "
+                        + this.memoryLimit + "B, lower the heap or set teiid.buffer.off-heap=false");
+            }
+            settings.memoryMb = toMegabytes(memory);
+        }
+
+        if (b.isUseDisk()) {
+            configureStorage(config, settings);
+        }
+        settings.applyTo(config);
+
+        TeiidProperties.Engine e = this.engine;
+        if (e.getMaxThreads() != null) {
+            config.setMaxThreads(positive("teiid.engine.max-threads", e.getMaxThreads()));
+        }
+        if (e.getMaxActivePlans() != null) {
+            config.setMaxActivePlans(positive("teiid.engine.max-active-plans", e.getMaxActivePlans()));
+        }
+        if (e.getMaxActivePlans() == null && config.getMaxActivePlans() > config.getMaxThreads()) {
+            config.setMaxActivePlans(config.getMaxThreads());
+        } else if (config.getMaxActivePlans() > config.getMaxThreads()) {
+            throw new IllegalStateException("teiid.engine.max-active-plans " + config.getMaxActivePlans()
+                    + " can not be more than teiid.engine.max-threads " + config.getMaxThreads());
+        }
+        if (e.getUserRequestSourceConcurrency() != null) {
+            config.setUserRequestSourceConcurrency(
+                    positive("teiid.engine.user-request-source-concurrency", e.getUserRequestSourceConcurrency()));
+        }
+    }
+
+    private void configureStorage(EmbeddedConfiguration config, BufferSettings settings) {
+        TeiidProperties.Buffer b = this.buffer;
+        String directory = b.getDirectory();
+        if (directory == null) {
+            directory = System.getProperty("java.io.tmpdir");
+        }
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("teiid.buffer.directory " + directory + " can not be created");
+        }
+        if (!dir.canWrite()) {
+            throw new IllegalStateException("teiid.buffer.directory " + directory + " is not writable");
+        }
+        config.setBufferDirectory(dir.getAbsolutePath());
+
+        long storage;
+        if (b.getMaxStorageSize() != null) {
+            storage = positive("teiid.buffer.max-storage-size", b.getMaxStorageSize());
+            if (storage > dir.getUsableSpace()) {
+                logger.warn("teiid.buffer.max-storage-size " + b.getMaxStorageSize() + " is more than the "
+                        + dir.getUsableSpace() + "B free in " + dir.getAbsolutePath());
+            }
+        } else {
+            // leave some room for others on the same volume
+            storage = Math.min(TEIID_MAX_STORAGE_SIZE.toBytes(), dir.getUsableSpace() / 10 * 9);
+            if (storage < DataSize.ofMegabytes(1).toBytes()) {
+                throw new IllegalStateException("There is no free space in the teiid.buffer.directory "
+                        + dir.getAbsolutePath() + ", set teiid.buffer.use-disk=false to not spill to disk");
+            }
+        }
+        settings.maxStorageMb = toMegabytes(storage);
+
+        if (b.getMaxFileSize() != null) {
+            long fileSize = positive("teiid.buffer.max-file-size", b.getMaxFileSize());
+            if (fileSize > storage) {
+                throw new IllegalStateException("teiid.buffer.max-file-size " + b.getMaxFileSize()
+                        + " can not be more than the storage size of " + storage + "B");
+            }
+            settings.maxFileMb = toMegabytes(fileSize);
+        }
+        logger.info("Teiid buffer is stored in " + dir.getAbsolutePath() + " up to " + settings.maxStorageMb
+                + "MB");
+    }
+
+    private static long positive(String name, DataSize size) {
+        if (size.toBytes() <= 0) {
+            throw new IllegalStateException(name + " must be positive, but was " + size);
+        }
+        return size.toBytes();
+    }
+
+    private static int positive(String name, int value) {
+        if (value <= 0) {
+            throw new IllegalStateException(name + " must be positive, but was " + value);
+        }
+        return value;
+    }
+
+    private static int toMegabytes(long bytes) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytes / DataSize.ofMegabytes(1).toBytes()));
+    }
+
+    /**
+     * @return the cgroup (v2 or v1) memory limit of the process, {@link Long#MAX_VALUE} if there is none
+     */
+    static long containerMemoryLimit() {
+        for (String file : CGROUP_MEMORY_LIMITS) {
+            long limit = readLimit(Paths.get(file));
+            if (limit != NO_LIMIT) {
+                return limit;
+            }
+        }
+        return NO_LIMIT;
+    }
+
+    static long readLimit(Path file) {
+        if (!Files.isReadable(file)) {
+            return NO_LIMIT;
+        }
+        try {
+            String value = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+            long limit = Long.parseLong(value);
+            // cgroup v1 reports no limit as a number close to Long.MAX_VALUE
+            return limit <= 0 || limit >= (1L << 60) ? NO_LIMIT : limit;
+        } catch (IOException | NumberFormatException e) {
+            // "max" in cgroup v2
+            return NO_LIMIT;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.commons.api.BasicCache;
+
+/**
+ * {@link ResultsetStore} in an Infinispan cache, either embedded and clustered or remote through Hot Rod.
+ */
+public class InfinispanResultsetStore implements ResultsetStore {
+    private final BasicCache<String, byte[]> cache;
+
+    public InfinispanResultsetStore(BasicCache<String, byte[]> cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return this.cache.get(key);
+    }
+
+    @Override
+    public void put(String key, byte[] value, Long ttl) {
+        if (ttl == null) {
+            this.cache.put(key, value);
+        } else {
+            this.cache.put(key, value, ttl, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        this.cache.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        this.cache.clear();
+    }
+
+    @Override
+    public int size() {
+        return this.cache.size();
+    }
+
+    public String getName() {
+        return this.cache.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "Infinispan cache " + getName();
+    }
+}
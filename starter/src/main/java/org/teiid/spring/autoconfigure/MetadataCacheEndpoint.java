@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+/**
+ * Actuator endpoint to inspect the persisted source metadata and evict its entries. Evicting only removes the cache
+ * entries, the deployed metadata is left as it is.
+ */
+@Endpoint(id = "teiidmetadatacache")
+public class MetadataCacheEndpoint {
+
+    private SourceMetadataCache cache;
+
+    public MetadataCacheEndpoint(SourceMetadataCache cache) {
+        this.cache = cache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> entries() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("directory", this.cache.getDirectory().getAbsolutePath());
+        result.put("ttl", this.cache.getTtl().toString());
+        result.put("entries", this.cache.entries());
+        return result;
+    }
+
+    @DeleteOperation
+    public Map<String, Object> evictAll() {
+        return evicted(this.cache.evict(null));
+    }
+
+    @DeleteOperation
+    public Map<String, Object> evict(@Selector String source) {
+        return evicted(this.cache.evict(source));
+    }
+
+    private static Map<String, Object> evicted(int count) {
+        return Collections.singletonMap("evicted", count);
+    }
+}
@@ -16,9 +16,9 @@
 package org.teiid.spring.autoconfigure;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.sql.DataSource;
 import javax.transaction.HeuristicMixedException;
@@ -71,7 +71,7 @@ public final class PlatformTransactionManagerAdapter implements TransactionManag
         }
     }
 
-    private List<PlatformTransactionManager> txnManagersForEachDataSource = new ArrayList<>();
+    private Map<DataSource, PlatformTransactionManager> txnManagersForEachDataSource = new ConcurrentHashMap<>();
 
     private static DefaultTransactionDefinition NEW_TRANSACTION_DEFINITION = new DefaultTransactionDefinition();
     static {
@@ -271,7 +271,17 @@ public final class PlatformTransactionManagerAdapter implements TransactionManag
     }
 
     public void addDataSource(DataSource ds) {
-        this.txnManagersForEachDataSource.add(new DataSourceTransactionManager(ds));
+        this.txnManagersForEachDataSource.put(ds, new DataSourceTransactionManager(ds));
+    }
+
+    /**
+     * Called when Teiid obtains a connection from the data source, to start its transaction only if the data source
+     * is used within the current transaction.
+     */
+    public void enlist(DataSource ds) {
+        if (this.platformTransactionManager instanceof DelegatingPlatformTransactionManager) {
+            ((DelegatingPlatformTransactionManager) this.platformTransactionManager).enlist(ds);
+        }
     }
 
     @SuppressWarnings("rawtypes")
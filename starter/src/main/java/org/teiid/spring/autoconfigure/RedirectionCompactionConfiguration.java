@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Configuration
+// without write back the redirected rows can not be removed, see RedirectionSchemaBuilder
+@ConditionalOnProperty(name = { RedirectionCompactor.PREFIX + ".enabled",
+        RedirectionCompactor.PREFIX + ".write-back" }, havingValue = "true")
+public class RedirectionCompactionConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedirectionCompactor redirectionCompactor(TeiidServer server, DataSource dataSource, Environment env) {
+        int batchSize = env.getProperty(RedirectionCompactor.PREFIX + ".batch-size", Integer.class,
+                RedirectionCompactor.DEFAULT_BATCH_SIZE);
+        Duration interval = Binder.get(env).bind(RedirectionCompactor.PREFIX + ".interval", Duration.class)
+                .orElse(Duration.ofHours(1));
+        return new RedirectionCompactor(dataSource, () -> {
+            RedirectionSchemaBuilder builder = server.getRedirectionSchemaBuilder();
+            return builder == null ? Collections.<String, List<String>>emptyMap() : builder.getCompactionPlans();
+        }, batchSize, interval);
+    }
+
+    @Configuration
+    @ConditionalOnClass(Endpoint.class)
+    static class EndpointConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RedirectionCompactionEndpoint redirectionCompactionEndpoint(RedirectionCompactor compactor) {
+            return new RedirectionCompactionEndpoint(compactor);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(MeterBinder.class)
+    static class MetricsConfiguration {
+
+        @Bean
+        public MeterBinder teiidRedirectionCompactionMetrics(RedirectionCompactor compactor) {
+            return registry -> {
+                Gauge.builder("teiid.redirection.compaction.remaining", compactor, c -> c.getRemaining())
+                        .description("Rows left in the redirected tables after the last compaction")
+                        .register(registry);
+                Gauge.builder("teiid.redirection.compaction.running", compactor, c -> c.isRunning() ? 1 : 0)
+                        .description("1 while a compaction is in progress").register(registry);
+                FunctionCounter.builder("teiid.redirection.compaction.rows", compactor, c -> c.getCompacted())
+                        .description("Rows removed from the redirected tables").register(registry);
+                FunctionCounter.builder("teiid.redirection.compaction.failures", compactor, c -> c.getFailures())
+                        .description("Compaction batches that failed").register(registry);
+            };
+        }
+    }
+}
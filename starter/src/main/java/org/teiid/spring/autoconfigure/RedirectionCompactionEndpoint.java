@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+@Endpoint(id = "teiidcompaction")
+public class RedirectionCompactionEndpoint {
+
+    private RedirectionCompactor compactor;
+
+    public RedirectionCompactionEndpoint(RedirectionCompactor compactor) {
+        this.compactor = compactor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> progress() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("running", this.compactor.isRunning());
+        result.put("compacted", this.compactor.getCompacted());
+        result.put("remaining", this.compactor.getRemaining());
+        result.put("tables", this.compactor.getProgress());
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> compact() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("started", this.compactor.start());
+        return result;
+    }
+}
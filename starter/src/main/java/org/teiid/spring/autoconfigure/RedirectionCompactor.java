@@ -0,0 +1,218 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.teiid.jdbc.ExecutionProperties;
+import org.teiid.jdbc.TeiidStatement;
+
+/**
+ * Keeps the redirected tables small, so that reading the redirected views does not get slower as the updates
+ * accumulate. Each run applies the compaction plan of every redirected table, see
+ * {@link RedirectionSchemaBuilder#getCompactionPlans()}, until a batch removes less than a full batch.
+ * The statements run without a transaction, so a run can be stopped at any point.
+ */
+public class RedirectionCompactor implements DisposableBean {
+    static final String PREFIX = TeiidConstants.REDIRECTED + ".compaction";
+    static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final Log logger = LogFactory.getLog(RedirectionCompactor.class);
+
+    public static class Progress {
+        private final AtomicLong compacted = new AtomicLong();
+        private volatile int remaining = -1;
+        private volatile long lastRun;
+        private volatile String lastError;
+
+        public long getCompacted() {
+            return compacted.get();
+        }
+
+        /**
+         * @return rows in the redirected table after the last batch, -1 if not known yet
+         */
+        public int getRemaining() {
+            return remaining;
+        }
+
+        public long getLastRun() {
+            return lastRun;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final Supplier<Map<String, List<String>>> plans;
+    private final int batchSize;
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong failures = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private volatile boolean stopped;
+
+    /**
+     * @param dataSource Teiid data source
+     * @param plans the compaction plans by entity, empty until the VDB is deployed
+     * @param batchSize the batch size the plans were built with
+     * @param interval time between the runs, zero to only compact on request
+     */
+    public RedirectionCompactor(DataSource dataSource, Supplier<Map<String, List<String>>> plans, int batchSize,
+            Duration interval) {
+        this.dataSource = dataSource;
+        this.plans = plans;
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "teiid-redirection-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!interval.isZero() && !interval.isNegative()) {
+            this.executor.scheduleWithFixedDelay(this::compact, interval.toMillis(), interval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts a run in the background, unless one is already in progress.
+     * @return false if a run is already in progress
+     */
+    public boolean start() {
+        if (this.running.get()) {
+            return false;
+        }
+        this.executor.execute(this::compact);
+        return true;
+    }
+
+    void compact() {
+        if (!this.running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (Map.Entry<String, List<String>> plan : this.plans.get().entrySet()) {
+                if (this.stopped) {
+                    return;
+                }
+                compact(plan.getKey(), plan.getValue());
+            }
+        } finally {
+            this.running.set(false);
+        }
+    }
+
+    private void compact(String entity, List<String> plan) {
+        Progress p = this.progress.computeIfAbsent(entity, k -> new Progress());
+        long start = System.currentTimeMillis();
+        long total = 0;
+        try (Connection c = this.dataSource.getConnection(); Statement s = c.createStatement()) {
+            // each step can be repeated, see RedirectionSchemaBuilder
+            s.unwrap(TeiidStatement.class).setExecutionProperty(ExecutionProperties.PROP_TXN_AUTO_WRAP, "OFF");
+            int compacted;
+            do {
+                compacted = compactBatch(s, plan, p);
+                p.compacted.addAndGet(compacted);
+                total += compacted;
+            } while (compacted >= this.batchSize && !this.stopped);
+            p.lastError = null;
+        } catch (SQLException e) {
+            this.failures.incrementAndGet();
+            p.lastError = e.getMessage();
+            logger.warn("Failed to compact the redirected table of " + entity, e);
+        }
+        p.lastRun = start;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Compacted " + total + " rows of " + entity + " in "
+                    + (System.currentTimeMillis() - start) + "ms, " + p.remaining + " rows remaining");
+        }
+    }
+
+    /**
+     * runs the statements of one batch, the last one drops the temporary table of the batch also on a failure
+     */
+    private int compactBatch(Statement s, List<String> plan, Progress p) throws SQLException {
+        int compacted = 0;
+        int last = plan.size() - 1;
+        try {
+            for (int i = 0; i < last; i++) {
+                if (s.execute(plan.get(i))) {
+                    try (ResultSet rs = s.getResultSet()) {
+                        if (rs.next()) {
+                            compacted = rs.getInt(1);
+                            p.remaining = rs.getInt(2);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            try {
+                s.execute(plan.get(last));
+            } catch (SQLException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+        s.execute(plan.get(last));
+        return compacted;
+    }
+
+    public boolean isRunning() {
+        return this.running.get();
+    }
+
+    public Map<String, Progress> getProgress() {
+        return new LinkedHashMap<>(this.progress);
+    }
+
+    public long getCompacted() {
+        return this.progress.values().stream().mapToLong(Progress::getCompacted).sum();
+    }
+
+    public long getRemaining() {
+        return this.progress.values().stream().mapToLong(p -> Math.max(0, p.remaining)).sum();
+    }
+
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    @Override
+    public void destroy() {
+        this.stopped = true;
+        this.executor.shutdownNow();
+    }
+}
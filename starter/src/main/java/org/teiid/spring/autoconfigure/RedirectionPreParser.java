@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.teiid.CommandContext;
+import org.teiid.PreParser;
+import org.teiid.api.exception.query.QueryParserException;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.sql.lang.Command;
+
+/**
+ * Replaces the bulk INSERT, UPDATE and DELETE statements on the redirected views with a set based UPSERT, see
+ * {@link RedirectionSchemaBuilder#buildSetBasedPlan(Command)}. Any other statement is passed on unchanged, and only
+ * the statements on a redirected view are parsed.
+ */
+public class RedirectionPreParser implements PreParser {
+    private static final Log logger = LogFactory.getLog(RedirectionPreParser.class);
+    private static final Pattern UPDATE_COMMAND = Pattern.compile(
+            "^\\s*(?:UPDATE|DELETE\\s+FROM|INSERT\\s+INTO)\\s+((?:\"[^\"]+\"|\\w+)(?:\\.(?:\"[^\"]+\"|\\w+))?)",
+            Pattern.CASE_INSENSITIVE);
+
+    private RedirectionSchemaBuilder builder;
+
+    public RedirectionPreParser(RedirectionSchemaBuilder builder) {
+        this.builder = builder;
+    }
+
+    @Override
+    public String preParse(String command, CommandContext context) {
+        Matcher matcher = UPDATE_COMMAND.matcher(command);
+        if (!matcher.find() || !this.builder.isRedirected(matcher.group(1).replace("\"", ""))) {
+            return command;
+        }
+        try {
+            String plan = this.builder.buildSetBasedPlan(QueryParser.getQueryParser().parseCommand(command));
+            if (plan != null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Redirected update " + command + " is processed as\n" + plan);
+                }
+                return plan;
+            }
+        } catch (QueryParserException e) {
+            // not valid, the engine reports the error
+        }
+        return command;
+    }
+}
@@ -20,27 +20,57 @@ import static org.teiid.spring.autoconfigure.TeiidConstants.VDBVERSION;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationContext;
 import org.teiid.adminapi.Model;
 import org.teiid.adminapi.impl.ModelMetaData;
+import org.teiid.api.exception.query.QueryParserException;
 import org.teiid.metadata.Column;
 import org.teiid.metadata.ForeignKey;
 import org.teiid.metadata.KeyRecord;
 import org.teiid.metadata.MetadataFactory;
+import org.teiid.metadata.Procedure;
 import org.teiid.metadata.Table;
 import org.teiid.query.metadata.DDLStringVisitor;
 import org.teiid.query.metadata.SystemMetadata;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.Delete;
+import org.teiid.query.sql.lang.Insert;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.lang.SetClause;
+import org.teiid.query.sql.lang.UnaryFromClause;
+import org.teiid.query.sql.lang.Update;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.Reference;
+import org.teiid.query.sql.util.SymbolMap;
 
 public class RedirectionSchemaBuilder {
     static String ROW_STATUS_COLUMN = "ROW__STATUS";
+    private static String SET_BASED_ROWS = "REDIRECTED__ROWS";
+    private static String INSERTED_ROWS = "INSERTED__ROWS";
+    private static String COMPACTED_ROWS = "#COMPACTED_ROWS";
     private static String TAB = "\t";
+    private static final Log logger = LogFactory.getLog(RedirectionSchemaBuilder.class);
 
     private ApplicationContext context;
     private String redirectedDS;
     private HashMap<String, List<Table>> relations = new HashMap<>();
+    private Map<String, Table> redirectedTables = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private Map<String, List<String>> compactionPlans = new LinkedHashMap<>();
 
     public RedirectionSchemaBuilder(ApplicationContext context, String redirectedDS) {
         this.context = context;
@@ -392,6 +422,211 @@ public class RedirectionSchemaBuilder {
         return plan.toString();
     }
 
+    /**
+     * Builds a single UPSERT that applies a bulk INSERT, UPDATE or DELETE on a redirected view to the redirected
+     * table, instead of running the FOR EACH ROW trigger of the view for every affected row. The affected rows are
+     * materialized first, like the trigger does, and the update count of the UPSERT is the number of those rows.
+     * The rows of an INSERT whose key is already used by the view are left out with an anti-join, where the
+     * trigger raises an error on the first of them.
+     *
+     * @return the statement, or null when the command does not target a redirected view, affects a single row by
+     *         its key, changes the key or deletes rows other tables may refer to, in which case the trigger with
+     *         its checks is used
+     */
+    public String buildSetBasedPlan(Command command) {
+        if (command instanceof Update) {
+            Update update = (Update) command;
+            Table srcTable = getRedirectedTable(update.getGroup().getNonCorrelationName());
+            if (srcTable == null || isSingleRow(srcTable, update.getCriteria())) {
+                return null;
+            }
+            return buildSetBasedUpdatePlan(srcTable, update);
+        } else if (command instanceof Delete) {
+            Delete delete = (Delete) command;
+            Table srcTable = getRedirectedTable(delete.getGroup().getNonCorrelationName());
+            if (srcTable == null || isSingleRow(srcTable, delete.getCriteria())) {
+                return null;
+            }
+            return buildSetBasedDeletePlan(srcTable, delete);
+        } else if (command instanceof Insert) {
+            Insert insert = (Insert) command;
+            Table srcTable = getRedirectedTable(insert.getGroup().getNonCorrelationName());
+            // a single row of values is left to the trigger
+            if (srcTable == null || insert.getQueryExpression() == null || insert.isUpsert()) {
+                return null;
+            }
+            return buildSetBasedInsertPlan(srcTable, insert);
+        }
+        return null;
+    }
+
+    boolean isRedirected(String name) {
+        return getRedirectedTable(name) != null;
+    }
+
+    private Table getRedirectedTable(String name) {
+        int index = name.indexOf('.');
+        if (index > 0) {
+            if (!name.substring(0, index).equalsIgnoreCase(TeiidConstants.EXPOSED_VIEW)) {
+                return null;
+            }
+            name = name.substring(index + 1);
+        }
+        return this.redirectedTables.get(name);
+    }
+
+    /**
+     * single row updates, like the ones from JPA, are left to the trigger as they also rely on its update count
+     */
+    private boolean isSingleRow(Table srcTable, Criteria criteria) {
+        Set<String> keys = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        keys.addAll(getColumnNames(getPK(srcTable).getColumns()));
+        for (Criteria crit : Criteria.separateCriteriaByAnd(criteria)) {
+            if (!(crit instanceof CompareCriteria) || ((CompareCriteria) crit).getOperator() != CompareCriteria.EQ) {
+                continue;
+            }
+            Expression left = ((CompareCriteria) crit).getLeftExpression();
+            Expression right = ((CompareCriteria) crit).getRightExpression();
+            if (left instanceof ElementSymbol && (right instanceof Constant || right instanceof Reference)) {
+                keys.remove(((ElementSymbol) left).getShortName());
+            } else if (right instanceof ElementSymbol && (left instanceof Constant || left instanceof Reference)) {
+                keys.remove(((ElementSymbol) right).getShortName());
+            }
+        }
+        return keys.isEmpty();
+    }
+
+    private String buildSetBasedUpdatePlan(Table srcTable, Update update) {
+        Map<String, String> changes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> columns = new ArrayList<>();
+        // the new values come first in the order of the SET clause, so that the parameter references keep their order
+        for (SetClause clause : update.getChangeList().getClauses()) {
+            Column c = srcTable.getColumnByName(clause.getSymbol().getShortName());
+            if (c == null) {
+                return null;
+            }
+            changes.put(c.getName(), clause.getValue().toString());
+            columns.add(c.getName());
+        }
+        for (Column c : srcTable.getColumns()) {
+            if (!changes.containsKey(c.getName())) {
+                columns.add(c.getName());
+            }
+        }
+        List<String> pk = getColumnNames(getPK(srcTable).getColumns());
+        if (pk.stream().anyMatch(changes::containsKey)) {
+            // needs the duplicate key and referential checks of the trigger
+            return null;
+        }
+
+        StringBuilder plan = new StringBuilder();
+        plan.append("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                plan.append(", ");
+            }
+            String value = changes.get(columns.get(i));
+            plan.append(value == null ? columns.get(i) : value).append(" AS ").append(columns.get(i));
+        }
+        plan.append(" FROM ").append(exposedTable(srcTable));
+        appendWhere(update.getCriteria(), plan);
+        return buildUpsert(srcTable, getColumnNames(srcTable.getColumns()), plan.toString(), 2);
+    }
+
+    private String buildSetBasedDeletePlan(Table srcTable, Delete delete) {
+        List<Table> assosiatedTables = this.relations.get(srcTable.getName());
+        if (assosiatedTables != null && !assosiatedTables.isEmpty()) {
+            // needs the referential checks of the trigger
+            return null;
+        }
+        List<String> pk = getColumnNames(getPK(srcTable).getColumns());
+        StringBuilder plan = new StringBuilder();
+        plan.append("SELECT ");
+        appendNames(pk, plan);
+        plan.append(" FROM ").append(exposedTable(srcTable));
+        appendWhere(delete.getCriteria(), plan);
+        return buildUpsert(srcTable, pk, plan.toString(), 3);
+    }
+
+    private String buildSetBasedInsertPlan(Table srcTable, Insert insert) {
+        List<String> columns = new ArrayList<>();
+        if (insert.getVariables().isEmpty()) {
+            columns.addAll(getColumnNames(srcTable.getColumns()));
+        } else {
+            for (ElementSymbol symbol : insert.getVariables()) {
+                Column c = srcTable.getColumnByName(symbol.getShortName());
+                if (c == null) {
+                    return null;
+                }
+                columns.add(c.getName());
+            }
+        }
+        List<String> pk = getColumnNames(getPK(srcTable).getColumns());
+        if (!columns.containsAll(pk) || (insert.getQueryExpression().getWith() != null
+                && !insert.getQueryExpression().getWith().isEmpty())) {
+            return null;
+        }
+
+        StringBuilder plan = new StringBuilder();
+        plan.append("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                plan.append(", ");
+            }
+            plan.append("n.").append(columns.get(i));
+        }
+        plan.append(" FROM ").append(INSERTED_ROWS).append(" AS n WHERE NOT EXISTS (SELECT 1 FROM ")
+        .append(exposedTable(srcTable)).append(" AS o WHERE ");
+        appendEquals(pk, "o.", "n.", false, plan);
+        plan.append(")");
+
+        StringBuilder with = new StringBuilder();
+        with.append(INSERTED_ROWS).append(" (");
+        appendNames(columns, with);
+        with.append(") AS (").append(insert.getQueryExpression()).append("), ");
+        return buildUpsert(srcTable, columns, with.toString(), plan.toString(), 1);
+    }
+
+    private String exposedTable(Table table) {
+        return TeiidConstants.EXPOSED_VIEW + "." + table.getName();
+    }
+
+    private void appendWhere(Criteria criteria, StringBuilder plan) {
+        if (criteria != null) {
+            plan.append(" WHERE ").append(criteria);
+        }
+    }
+
+    /**
+     * the rows are materialized before the redirected table is written, as it is also read through the view
+     */
+    private String buildUpsert(Table srcTable, List<String> columns, String rows, int status) {
+        return buildUpsert(srcTable, columns, "", rows, status);
+    }
+
+    private String buildUpsert(Table srcTable, List<String> columns, String with, String rows, int status) {
+        StringBuilder plan = new StringBuilder();
+        plan.append("UPSERT INTO ").append(redirectedTable(srcTable, this.redirectedDS)).append(" (");
+        appendNames(columns, plan);
+        plan.append(", ").append(ROW_STATUS_COLUMN).append(") WITH ").append(with).append(SET_BASED_ROWS)
+        .append(" AS /*+ materialize */ (").append(rows).append(") SELECT ");
+        appendNames(columns, plan);
+        plan.append(", ").append(status).append(" FROM ").append(SET_BASED_ROWS);
+        return plan.toString();
+    }
+
+    private void appendNames(Iterable<String> columns, StringBuilder sb) {
+        boolean first = true;
+        for (String c : columns) {
+            if (!first) {
+                sb.append(", ");
+            } else {
+                first = false;
+            }
+            sb.append(c);
+        }
+    }
+
     private String pkColumnsAsWhereClause(Table t, String prefix) {
         KeyRecord pk = getPK(t);
         StringBuilder sb = new StringBuilder();
@@ -518,6 +753,7 @@ public class RedirectionSchemaBuilder {
                     target.addIndex(kr.getName(), true, getColumnNames(kr.getColumns()), table);
                 }
             }
+            this.redirectedTables.put(srcTable.getName(), srcTable);
             table.setSelectTransformation(buildSelectPlan(srcTable, this.redirectedDS));
             table.setInsertPlan(buildInsertPlan(srcTable, this.redirectedDS));
 
@@ -537,6 +773,242 @@ public class RedirectionSchemaBuilder {
             table.setUpdatePlan(buildUpdatePlan(srcTable, this.redirectedDS, this.relations.get(table.getName())));
             table.setDeletePlan(buildDeletePlan(srcTable, this.redirectedDS, this.relations.get(table.getName())));
         }
+
+        if (isCompactionEnabled()) {
+            if (isWriteBackEnabled()) {
+                for (Table srcTable : this.redirectedTables.values()) {
+                    addCompactionPlan(srcTable);
+                }
+            } else {
+                logger.warn(RedirectionCompactor.PREFIX + ".enabled is ignored, compaction needs "
+                        + RedirectionCompactor.PREFIX + ".write-back, without it the redirected rows can not be "
+                        + "removed without changing the redirected views");
+            }
+        }
+    }
+
+    private boolean isCompactionEnabled() {
+        return Boolean.parseBoolean(context.getEnvironment().getProperty(RedirectionCompactor.PREFIX + ".enabled"));
+    }
+
+    /**
+     * The compaction is not exposed as a procedure, as any user of the VDB could then trigger a write back. Each
+     * plan is run by the {@link RedirectionCompactor} on its own connection, see
+     * {@link #buildCompactionPlan(Table, int)}.
+     * @return the statements of one compaction batch by entity name
+     */
+    public Map<String, List<String>> getCompactionPlans() {
+        return this.compactionPlans;
+    }
+
+    private boolean isWriteBackEnabled() {
+        return Boolean.parseBoolean(context.getEnvironment().getProperty(RedirectionCompactor.PREFIX + ".write-back"));
+    }
+
+    private void addCompactionPlan(Table srcTable) {
+        if (!isWritable(srcTable)) {
+            logger.warn("The redirected table of " + srcTable.getName() + " is not compacted, its source view "
+                    + "can not be updated");
+            return;
+        }
+        Integer batchSize = context.getEnvironment().getProperty(RedirectionCompactor.PREFIX + ".batch-size",
+                Integer.class);
+        this.compactionPlans.put(srcTable.getName(), buildCompactionPlan(srcTable,
+                batchSize == null ? RedirectionCompactor.DEFAULT_BATCH_SIZE : batchSize));
+    }
+
+    /**
+     * the source view can be written when the entity defines all of its update queries, or when it only projects
+     * the columns of a single table, which Teiid can update without a trigger
+     */
+    private boolean isWritable(Table srcTable) {
+        if (!srcTable.supportsUpdate()) {
+            return false;
+        }
+        if (srcTable.getInsertPlan() != null || srcTable.getUpdatePlan() != null
+                || srcTable.getDeletePlan() != null) {
+            return srcTable.getInsertPlan() != null && srcTable.getUpdatePlan() != null
+                    && srcTable.getDeletePlan() != null;
+        }
+        try {
+            Command command = QueryParser.getQueryParser().parseCommand(srcTable.getSelectTransformation());
+            if (!(command instanceof Query)) {
+                return false;
+            }
+            Query query = (Query) command;
+            if (query.getFrom() == null || query.getFrom().getClauses().size() != 1
+                    || !(query.getFrom().getClauses().get(0) instanceof UnaryFromClause)
+                    || query.getGroupBy() != null || query.getHaving() != null || query.getSelect().isDistinct()
+                    || query.getLimit() != null) {
+                return false;
+            }
+            for (Expression ex : query.getSelect().getSymbols()) {
+                if (!(SymbolMap.getExpression(ex) instanceof ElementSymbol)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (QueryParserException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds the statements that apply up to batchSize rows of the redirected table to the source view, and remove
+     * them. They are run in order on one connection:
+     * <ol>
+     * <li>copy the batch into a session temporary table, only reading the redirected data source</li>
+     * <li>write the batch back to the source view</li>
+     * <li>remove the batch from the redirected table, returning the compacted and remaining row counts</li>
+     * <li>drop the temporary table, to be run even when a previous statement failed</li>
+     * </ol>
+     * The blocks are not atomic and are meant to be run without a transaction, so neither XA nor a transaction
+     * manager is needed. Each step can be repeated: the rows written back but not removed are written back again
+     * by the next run, which gives the same result. A row that was changed again while being compacted is left in
+     * the redirected table.
+     */
+    private List<String> buildCompactionPlan(Table srcTable, int batchSize) {
+        String redirected = redirectedTable(srcTable, this.redirectedDS);
+        String source = "internal." + srcTable.getName();
+        List<String> pk = getColumnNames(getPK(srcTable).getColumns());
+        List<String> columns = getColumnNames(srcTable.getColumns());
+        List<String> values = new ArrayList<>();
+        for (Column c : srcTable.getColumns()) {
+            if (!pk.contains(c.getName()) && isComparable(c)) {
+                values.add(c.getName());
+            }
+        }
+        List<String> statements = new ArrayList<>();
+
+        StringBuilder plan = new StringBuilder();
+        plan.append("SELECT ");
+        for (String c : columns) {
+            plan.append("m.").append(c).append(", ");
+        }
+        plan.append("m.").append(ROW_STATUS_COLUMN).append(" INTO ").append(COMPACTED_ROWS).append(" FROM ")
+        .append(redirected).append(" AS m");
+        plan.append(" LIMIT ").append(batchSize);
+        statements.add(plan.toString());
+
+        plan = new StringBuilder();
+        plan.append("BEGIN\n");
+        appendCompactedLoop(columns, plan);
+        plan.append(TAB).append("BEGIN\n");
+        appendWriteBack(srcTable, source, pk, plan);
+        plan.append(TAB).append("END\n");
+        plan.append("END");
+        statements.add(plan.toString());
+
+        plan = new StringBuilder();
+        plan.append("BEGIN\n");
+        plan.append(TAB).append("DECLARE integer VARIABLES.COMPACTED = 0;\n");
+        appendCompactedLoop(columns, plan);
+        plan.append(TAB).append("BEGIN\n");
+        plan.append(TAB).append(TAB).append("DELETE FROM ").append(redirected).append(" WHERE ");
+        appendEquals(pk, "", "r.", false, plan);
+        plan.append(" AND ").append(ROW_STATUS_COLUMN).append(" = r.").append(ROW_STATUS_COLUMN);
+        if (!values.isEmpty()) {
+            plan.append(" AND ");
+            appendEquals(values, "", "r.", true, plan);
+        }
+        plan.append(";\n");
+        plan.append(TAB).append(TAB).append("VARIABLES.COMPACTED = VARIABLES.COMPACTED + VARIABLES.ROWCOUNT;\n");
+        plan.append(TAB).append("END\n");
+        plan.append(TAB).append("SELECT VARIABLES.COMPACTED, (SELECT COUNT(*) FROM ").append(redirected)
+        .append(");\n");
+        plan.append("END");
+        statements.add(plan.toString());
+
+        statements.add("DROP TABLE " + COMPACTED_ROWS);
+        return statements;
+    }
+
+    private void appendCompactedLoop(List<String> columns, StringBuilder plan) {
+        plan.append(TAB).append("LOOP ON (SELECT ");
+        appendNames(columns, plan);
+        plan.append(", ").append(ROW_STATUS_COLUMN).append(" FROM ").append(COMPACTED_ROWS).append(") AS r\n");
+    }
+
+    private void appendWriteBack(Table srcTable, String source, List<String> pk, StringBuilder plan) {
+        String tab = TAB + TAB;
+        plan.append(tab).append("IF (r.").append(ROW_STATUS_COLUMN).append(" = 3)\n");
+        plan.append(tab).append("BEGIN\n");
+        plan.append(tab).append(TAB).append("DELETE FROM ").append(source).append(" WHERE ");
+        appendEquals(pk, "", "r.", false, plan);
+        plan.append(";\n");
+        plan.append(tab).append("END\n");
+        plan.append(tab).append("ELSE\n");
+        plan.append(tab).append("BEGIN\n");
+        List<String> others = new ArrayList<>();
+        for (Column c : srcTable.getColumns()) {
+            if (!pk.contains(c.getName())) {
+                others.add(c.getName());
+            }
+        }
+        plan.append(tab).append(TAB).append("IF (").append(others.isEmpty() ? "NOT " : "")
+        .append("EXISTS (SELECT 1 FROM ").append(source).append(" WHERE ");
+        appendEquals(pk, "", "r.", false, plan);
+        plan.append("))\n");
+        plan.append(tab).append(TAB).append("BEGIN\n");
+        if (!others.isEmpty()) {
+            plan.append(tab).append(TAB).append(TAB).append("UPDATE ").append(source).append(" SET ");
+            for (int i = 0; i < others.size(); i++) {
+                if (i > 0) {
+                    plan.append(", ");
+                }
+                plan.append(others.get(i)).append(" = r.").append(others.get(i));
+            }
+            plan.append(" WHERE ");
+            appendEquals(pk, "", "r.", false, plan);
+            plan.append(";\n");
+            plan.append(tab).append(TAB).append("END\n");
+            plan.append(tab).append(TAB).append("ELSE\n");
+            plan.append(tab).append(TAB).append("BEGIN\n");
+        }
+        List<String> columns = getColumnNames(srcTable.getColumns());
+        plan.append(tab).append(TAB).append(TAB).append("INSERT INTO ").append(source).append(" (");
+        appendNames(columns, plan);
+        plan.append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                plan.append(", ");
+            }
+            plan.append("r.").append(columns.get(i));
+        }
+        plan.append(");\n");
+        plan.append(tab).append(TAB).append("END\n");
+        plan.append(tab).append("END\n");
+    }
+
+    private static boolean isComparable(Column c) {
+        switch (c.getRuntimeType()) {
+        case "blob":
+        case "clob":
+        case "xml":
+        case "json":
+        case "object":
+        case "geometry":
+        case "geography":
+            return false;
+        default:
+            return !c.getRuntimeType().endsWith("[]");
+        }
+    }
+
+    private void appendEquals(List<String> columns, String left, String right, boolean nullable,
+            StringBuilder sb) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sb.append(" AND ");
+            }
+            String c = columns.get(i);
+            if (nullable) {
+                sb.append("(").append(left).append(c).append(" = ").append(right).append(c).append(" OR (")
+                .append(left).append(c).append(" IS NULL AND ").append(right).append(c).append(" IS NULL))");
+            } else {
+                sb.append(left).append(c).append(" = ").append(right).append(c);
+            }
+        }
     }
 
     private boolean skipRedirection(String tblName) {
@@ -0,0 +1,533 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.teiid.cache.Cache;
+import org.teiid.cache.CacheFactory;
+import org.teiid.client.BatchSerializer;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidRuntimeException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.dqp.internal.process.AccessInfo;
+import org.teiid.dqp.internal.process.CachedResults;
+import org.teiid.dqp.internal.process.SessionAwareCache;
+import org.teiid.query.parser.ParseInfo;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.vdb.runtime.VDBKey;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+/**
+ * Sizes the result set cache from {@link TeiidProperties.ResultsetCache}, by entries or by the estimated size of the
+ * cached rows, with a default time to live for the results cached without one. The other caches are left to the
+ * delegate.
+ * <p>
+ * Teiid puts the results that are not scoped to a session in a separate "resultset-repl" cache. Without a
+ * {@link ResultsetStore} they stay in the same bounded cache, with one they are also written to the store so that
+ * the other instances of the application can read them.
+ */
+public class ResultsetCacheFactory implements CacheFactory {
+    static final String RESULTSET = "resultset";
+    static final String RESULTSET_REPL = RESULTSET + SessionAwareCache.REPL;
+    private static final Log logger = LogFactory.getLog(ResultsetCacheFactory.class);
+
+    private final CacheFactory delegate;
+    private final TeiidProperties.ResultsetCache config;
+    private final ResultsetStore store;
+    private final Supplier<BufferManagerImpl> bufferManager;
+    private ResultsetCache<?, ?> resultset;
+    private SharedResultsetCache<?, ?> shared;
+
+    public ResultsetCacheFactory(CacheFactory delegate, TeiidProperties.ResultsetCache config) {
+        this(delegate, config, null, null);
+    }
+
+    /**
+     * @param store shared store, null to keep the results local
+     * @param bufferManager the buffer manager of the server, that holds the rows of the cached results
+     */
+    public ResultsetCacheFactory(CacheFactory delegate, TeiidProperties.ResultsetCache config, ResultsetStore store,
+            Supplier<BufferManagerImpl> bufferManager) {
+        if (config.getMaxEntries() <= 0) {
+            throw new IllegalStateException(
+                    "teiid.resultset-cache.max-entries must be positive, but was " + config.getMaxEntries());
+        }
+        if (config.getMaxSize() != null && config.getMaxSize().toBytes() <= 0) {
+            throw new IllegalStateException(
+                    "teiid.resultset-cache.max-size must be positive, but was " + config.getMaxSize());
+        }
+        if (config.getTtl() != null && config.getTtl().isNegative()) {
+            throw new IllegalStateException("teiid.resultset-cache.ttl can not be negative");
+        }
+        if (config.getSharedMaxEntrySize().toBytes() <= 0) {
+            throw new IllegalStateException("teiid.resultset-cache.shared-max-entry-size must be positive, but was "
+                    + config.getSharedMaxEntrySize());
+        }
+        if (store != null && bufferManager == null) {
+            throw new IllegalStateException("The shared result set store needs the buffer manager of the server");
+        }
+        if (store != null) {
+            SharedResultsetCache.checkKey();
+        }
+        this.delegate = delegate;
+        this.config = config;
+        this.store = store;
+        this.bufferManager = bufferManager;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized <K, V> Cache<K, V> get(String name) {
+        if (RESULTSET.equals(name)) {
+            return (Cache<K, V>) local();
+        }
+        if (RESULTSET_REPL.equals(name)) {
+            if (this.store == null) {
+                // Teiid then uses the local cache for all the results
+                return null;
+            }
+            if (this.shared == null) {
+                this.shared = new SharedResultsetCache<>(name, (ResultsetCache<K, V>) local(), this.store,
+                        this.bufferManager, this.config.getSharedMaxEntrySize().toBytes());
+            }
+            return (Cache<K, V>) this.shared;
+        }
+        return this.delegate.get(name);
+    }
+
+    private ResultsetCache<?, ?> local() {
+        if (this.resultset == null) {
+            this.resultset = new ResultsetCache<>(RESULTSET, this.config);
+        }
+        return this.resultset;
+    }
+
+    public ResultsetStore getStore() {
+        return this.store;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        // the shared store outlives this instance, only the local copies are dropped
+        if (this.resultset != null) {
+            this.resultset.clear();
+            this.resultset = null;
+        }
+        this.shared = null;
+        this.delegate.destroy();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long ttlNanos;
+
+        Entry(V value, long ttlNanos) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+    static class ResultsetCache<K, V> implements Cache<K, V> {
+        private final String name;
+        private final boolean enabled;
+        private final Long defaultTtl;
+        private final com.github.benmanes.caffeine.cache.Cache<K, Entry<V>> delegate;
+
+        ResultsetCache(String name, TeiidProperties.ResultsetCache config) {
+            this.name = name;
+            this.enabled = config.isEnabled();
+            this.defaultTtl = config.getTtl() == null ? null : config.getTtl().toMillis();
+            Caffeine<Object, Object> builder = Caffeine.newBuilder();
+            if (config.getMaxSize() != null) {
+                builder.maximumWeight(config.getMaxSize().toBytes());
+                builder.weigher((K k, Entry<V> e) -> weight(e.value));
+            } else {
+                builder.maximumSize(config.getMaxEntries());
+            }
+            this.delegate = builder.expireAfter(new Expiry<K, Entry<V>>() {
+                @Override
+                public long expireAfterCreate(K key, Entry<V> value, long currentTime) {
+                    return value.ttlNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(K key, Entry<V> value, long currentTime, long currentDuration) {
+                    return value.ttlNanos;
+                }
+
+                @Override
+                public long expireAfterRead(K key, Entry<V> value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            }).build();
+        }
+
+        /**
+         * @return the estimated bytes of the cached rows, 1 for anything else
+         */
+        static int weight(Object value) {
+            TupleBuffer results = value instanceof CachedResults ? ((CachedResults) value).getResults() : null;
+            if (results != null) {
+                long bytes = results.getRowCount() * Math.max(1, results.getRowSizeEstimate());
+                return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytes));
+            }
+            return 1;
+        }
+
+        @Override
+        public V get(K key) {
+            Entry<V> entry = this.delegate.getIfPresent(key);
+            return entry == null ? null : entry.value;
+        }
+
+        @Override
+        public V put(K key, V value, Long ttl) {
+            if (!this.enabled) {
+                return null;
+            }
+            Long millis = ttl != null ? ttl : this.defaultTtl;
+            long nanos = millis == null ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(millis);
+            Entry<V> previous = this.delegate.asMap().put(key, new Entry<>(value, nanos));
+            return previous == null ? null : previous.value;
+        }
+
+        @Override
+        public V remove(K key) {
+            Entry<V> previous = this.delegate.asMap().remove(key);
+            return previous == null ? null : previous.value;
+        }
+
+        @Override
+        public int size() {
+            return (int) this.delegate.estimatedSize();
+        }
+
+        @Override
+        public void clear() {
+            this.delegate.invalidateAll();
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return Collections.unmodifiableSet(this.delegate.asMap().keySet());
+        }
+
+        @Override
+        public boolean isTransactional() {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the results to the {@link ResultsetStore} together with their rows, and keeps a copy in the local cache.
+     * A result read from the store has its rows loaded into the buffer manager, which spills them to disk as needed,
+     * and is then served locally until it expires. The result and its rows are read with one stream, checked by
+     * {@link #FILTER}.
+     * <p>
+     * Results with lobs, and results larger than the shared max entry size, are only cached locally. The keys of the
+     * store are only known for the local copies, an entry left behind by a redeployed VDB is rejected by Teiid when
+     * it is read.
+     */
+    static class SharedResultsetCache<K, V> implements Cache<K, V> {
+        /**
+         * The fields compared by {@link SessionAwareCache.CacheID#equals(Object)}, they are not exposed
+         */
+        private static final String[] KEY_FIELDS = { "sql", "vdbInfo", "ansiIdentifiers", "sessionId", "userName",
+                "parameters" };
+        private static volatile Field[] keyFields;
+
+        /**
+         * The classes that may be read back from the store: the cached results, their access info, and the values
+         * of the rows restored into the buffer manager. Anything else fails the read and the result is recomputed.
+         */
+        static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter("maxdepth=32;"
+                + CachedResults.class.getName() + ";" + AccessInfo.class.getName() + ";"
+                + "org.teiid.core.types.*;java.lang.*;java.math.*;java.sql.*;java.time.*;java.util.*;!*");
+
+        private final String name;
+        private final ResultsetCache<K, V> local;
+        private final ResultsetStore store;
+        private final Supplier<BufferManagerImpl> bufferManager;
+        private final long maxEntrySize;
+
+        SharedResultsetCache(String name, ResultsetCache<K, V> local, ResultsetStore store,
+                Supplier<BufferManagerImpl> bufferManager, long maxEntrySize) {
+            this.name = name;
+            this.local = local;
+            this.store = store;
+            this.bufferManager = bufferManager;
+            this.maxEntrySize = maxEntrySize;
+        }
+
+        /**
+         * Fails fast when the key of a cached result can not be built from the fields of
+         * {@link SessionAwareCache.CacheID}.
+         */
+        static void checkKey() {
+            try {
+                key(new SessionAwareCache.CacheID(new ParseInfo(), "SELECT 1", "vdb", "1", null, "user"));
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("teiid.resultset-cache.shared-cache can not be used with this "
+                        + "version of Teiid, the keys of the cached results can not be built", e);
+            }
+        }
+
+        private static Field[] keyFields() {
+            Field[] result = keyFields;
+            if (result == null) {
+                result = new Field[KEY_FIELDS.length];
+                try {
+                    for (int i = 0; i < KEY_FIELDS.length; i++) {
+                        result[i] = SessionAwareCache.CacheID.class.getDeclaredField(KEY_FIELDS[i]);
+                        result[i].setAccessible(true);
+                    }
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    throw new IllegalStateException("Unexpected fields of the result set cache key", e);
+                }
+                keyFields = result;
+            }
+            return result;
+        }
+
+        /**
+         * The key is built from the fields compared by {@link SessionAwareCache.CacheID#equals(Object)}: the query,
+         * the VDB, the ANSI identifiers setting, the user and session the result is scoped to, and the parameters.
+         * The original session and user of the key are left out, as they differ between the sessions that share the
+         * result.
+         * @return a digest of the key, the same on every instance for the same query, VDB, parameters and user
+         */
+        static String key(Object key) {
+            StringBuilder sb = new StringBuilder();
+            if (key instanceof SessionAwareCache.CacheID) {
+                for (Field field : keyFields()) {
+                    Object value;
+                    try {
+                        value = field.get(key);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("Failed to read the result set cache key", e);
+                    }
+                    if (value instanceof VDBKey) {
+                        VDBKey vdb = (VDBKey) value;
+                        sb.append(vdb.getName()).append('\n').append(vdb.getVersion());
+                    } else if (value instanceof List) {
+                        for (Object parameter : (List<?>) value) {
+                            sb.append(parameter == null ? null : parameter.getClass().getName()).append(':')
+                                    .append(parameter).append(',');
+                        }
+                    } else {
+                        sb.append(value);
+                    }
+                    sb.append('\n');
+                }
+            } else {
+                sb.append(key);
+            }
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256")
+                        .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Failed to build the shared result set key", e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V get(K key) {
+            V value = this.local.get(key);
+            if (value != null || !this.local.enabled) {
+                return value;
+            }
+            String id = key(key);
+            byte[] bytes = this.store.get(id);
+            if (bytes == null) {
+                return null;
+            }
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+                long expires = in.readLong();
+                Long ttl = null;
+                if (expires > 0) {
+                    ttl = expires - System.currentTimeMillis();
+                    if (ttl <= 0) {
+                        return null;
+                    }
+                }
+                try (ObjectInputStream ois = new ObjectInputStream(in)) {
+                    ois.setObjectInputFilter(FILTER);
+                    value = (V) ois.readObject();
+                    if (value instanceof CachedResults && !restore((CachedResults) value, ois)) {
+                        return null;
+                    }
+                }
+                this.local.put(key, value, ttl);
+                return value;
+            } catch (IOException | ClassNotFoundException | ClassCastException | TeiidComponentException
+                    | TeiidRuntimeException e) {
+                logger.warn("Failed to read the shared result set " + id + ", it will be recomputed", e);
+                this.store.remove(id);
+                return null;
+            }
+        }
+
+        private boolean restore(CachedResults results, ObjectInputStream in)
+                throws IOException, ClassNotFoundException, TeiidComponentException {
+            BufferManagerImpl bm = this.bufferManager.get();
+            if (bm == null) {
+                return false;
+            }
+            if (!bm.hasState(results.getId())) {
+                readRows(bm, results.getId(), in);
+            }
+            // holds the rows, the buffer manager only keeps a weak reference
+            return results.restore(bm);
+        }
+
+        /**
+         * Reads the rows in the format of {@link BufferManagerImpl#getState(String, java.io.OutputStream)}, whose
+         * own reader does not take a filter.
+         */
+        private static void readRows(BufferManagerImpl bm, String id, ObjectInputStream in)
+                throws IOException, ClassNotFoundException, TeiidComponentException {
+            long rowCount = in.readLong();
+            int batchSize = in.readInt();
+            String[] types = (String[]) in.readObject();
+            List<ElementSymbol> schema = new ArrayList<>(types.length);
+            for (String type : types) {
+                ElementSymbol symbol = new ElementSymbol("x");
+                symbol.setType(DataTypeManager.getDataTypeClass(type));
+                schema.add(symbol);
+            }
+            TupleBuffer buffer = bm.createTupleBuffer(schema, "cached", TupleSourceType.FINAL);
+            buffer.setBatchSize(batchSize);
+            buffer.setId(id);
+            for (long row = 1; row <= rowCount; row += batchSize) {
+                for (List<Object> tuple : BatchSerializer.readBatch(in, types)) {
+                    buffer.addTuple(tuple);
+                }
+            }
+            if (buffer.getRowCount() != rowCount) {
+                buffer.remove();
+                throw new IOException("Expected " + rowCount + " rows, but read " + buffer.getRowCount());
+            }
+            buffer.close();
+            bm.addTupleBuffer(buffer);
+        }
+
+        private static void writeRows(TupleBuffer buffer, ObjectOutputStream out)
+                throws IOException, TeiidComponentException {
+            String[] types = buffer.getTypes();
+            out.writeLong(buffer.getRowCount());
+            out.writeInt(buffer.getBatchSize());
+            out.writeObject(types);
+            for (long row = 1; row <= buffer.getRowCount(); row += buffer.getBatchSize()) {
+                BatchSerializer.writeBatch(out, types, buffer.getBatch(row).getTuples());
+            }
+        }
+
+        @Override
+        public V put(K key, V value, Long ttl) {
+            V previous = this.local.put(key, value, ttl);
+            if (!this.local.enabled) {
+                return previous;
+            }
+            Long millis = ttl != null ? ttl : this.local.defaultTtl;
+            TupleBuffer results = value instanceof CachedResults ? ((CachedResults) value).getResults() : null;
+            if (results != null && (results.isLobs() || ResultsetCache.weight(value) > this.maxEntrySize)) {
+                return previous;
+            }
+            String id = key(key);
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeLong(millis == null ? 0 : System.currentTimeMillis() + millis);
+                try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                    oos.writeObject(value);
+                    if (results != null) {
+                        writeRows(results, oos);
+                    }
+                }
+                this.store.put(id, bytes.toByteArray(), millis);
+            } catch (IOException | TeiidComponentException | TeiidRuntimeException e) {
+                logger.warn("Failed to share the result set " + id + ", it is only cached locally", e);
+            }
+            return previous;
+        }
+
+        @Override
+        public V remove(K key) {
+            this.store.remove(key(key));
+            return this.local.remove(key);
+        }
+
+        @Override
+        public int size() {
+            return this.store.size();
+        }
+
+        @Override
+        public void clear() {
+            this.local.clear();
+            this.store.clear();
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return this.local.keySet();
+        }
+
+        @Override
+        public boolean isTransactional() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+/**
+ * Shared store of the serialized result set cache entries, so that a result cached by one instance of the
+ * application, such as the pages behind an OData skiptoken, can be read by the others. Define a bean of this type,
+ * or set teiid.resultset-cache.shared-cache to use a cache of the Infinispan cache container bean.
+ * <p>
+ * The keys are derived from the query, the VDB, the parameters and the user, and are the same on every instance.
+ */
+public interface ResultsetStore {
+
+    byte[] get(String key);
+
+    /**
+     * @param ttl time to live in milliseconds, null for no expiry
+     */
+    void put(String key, byte[] value, Long ttl);
+
+    void remove(String key);
+
+    void clear();
+
+    int size();
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import org.infinispan.commons.api.BasicCache;
+import org.infinispan.commons.api.BasicCacheContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Shares the result set cache through a cache of the Infinispan cache container of the application, an embedded
+ * {@code EmbeddedCacheManager} or a Hot Rod {@code RemoteCacheManager}.
+ */
+@Configuration
+@ConditionalOnClass(BasicCacheContainer.class)
+@ConditionalOnProperty(name = "teiid.resultset-cache.shared-cache")
+public class SharedResultsetStoreConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ResultsetStore resultsetStore(ObjectProvider<BasicCacheContainer> containers, TeiidProperties properties) {
+        String name = properties.getResultsetCache().getSharedCache();
+        BasicCacheContainer container = containers.getIfUnique();
+        if (container == null) {
+            throw new IllegalStateException("teiid.resultset-cache.shared-cache is set to " + name
+                    + ", but there is no single Infinispan cache container bean to get it from");
+        }
+        BasicCache<String, byte[]> cache = container.getCache(name);
+        if (cache == null) {
+            throw new IllegalStateException(
+                    "The Infinispan cache " + name + " for the shared result sets does not exist");
+        }
+        return new InfinispanResultsetStore(cache);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+import javax.sql.XADataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.teiid.spring.data.BaseConnectionFactory;
+import org.teiid.spring.data.ConnectionFactoryConfiguration;
+
+/**
+ * Keeps the DDL imported from a data source on the disk, such that on the restart the metadata import from the
+ * source can be skipped. The entries are keyed by the data source name and a hash of where and as whom it
+ * connects, see {@link #describe(Object)}, and of its import properties, so changing any of those causes a
+ * re-import.
+ */
+public class SourceMetadataCache {
+    static final String PREFIX = "spring.teiid.metadata.cache";
+    private static final String SUFFIX = ".ddl";
+    private static final Log logger = LogFactory.getLog(SourceMetadataCache.class);
+    private static final Pattern SECRET = Pattern.compile("(?i).*(password|secret|credential).*");
+    private static final Pattern ENDPOINT = Pattern.compile(
+            "(?i).*(url|uri|user|schema|catalog|database|server|host|port|endpoint|tenant|project|region).*");
+
+    private File directory;
+    private Duration ttl;
+
+    public SourceMetadataCache(File directory, Duration ttl) {
+        this.directory = directory;
+        this.ttl = ttl;
+    }
+
+    static SourceMetadataCache build(Environment env) {
+        if (!env.getProperty(PREFIX + ".enabled", Boolean.class, false)) {
+            return null;
+        }
+        String dir = env.getProperty(PREFIX + ".directory",
+                System.getProperty("java.io.tmpdir") + File.separator + "teiid-metadata-cache");
+        Duration ttl = Binder.get(env).bind(PREFIX + ".ttl", Duration.class).orElse(Duration.ofDays(1));
+        return new SourceMetadataCache(new File(dir), ttl);
+    }
+
+    /**
+     * Describes where a source connects to and as whom. For a {@link DataSource}, or the XADataSource it wraps, these
+     * are its URL, server, database, schema and user properties. For a {@link BaseConnectionFactory} they are the
+     * properties of its configuration bean. Passwords and other secrets are left out.
+     */
+    public static String describe(Object source) {
+        Map<String, String> properties = new TreeMap<>();
+        properties.put("class", source.getClass().getName());
+        if (source instanceof DataSource) {
+            collect(source, "", true, properties);
+            try {
+                XADataSource xads = ((DataSource) source).unwrap(XADataSource.class);
+                if (xads != null && xads != source) {
+                    collect(xads, "xa.", true, properties);
+                }
+            } catch (SQLException | RuntimeException e) {
+                // not a wrapper
+            }
+        } else if (source instanceof BaseConnectionFactory) {
+            ConnectionFactoryConfiguration cfc = source.getClass().getAnnotation(ConnectionFactoryConfiguration.class);
+            Object config = null;
+            if (cfc != null) {
+                config = cfc.configuration().isInstance(source) ? source : findField(source, cfc.configuration());
+            }
+            if (config != null) {
+                collect(config, "", false, properties);
+            } else {
+                collect(source, "", true, properties);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        properties.forEach((k, v) -> sb.append(k).append('=').append(v).append('\n'));
+        return sb.toString();
+    }
+
+    private static Object findField(Object source, Class<?> type) {
+        for (Class<?> c = source.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (type.isAssignableFrom(f.getType())) {
+                    try {
+                        f.setAccessible(true);
+                        return f.get(source);
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void collect(Object bean, String prefix, boolean endpointOnly, Map<String, String> properties) {
+        BeanWrapper bw = new BeanWrapperImpl(bean);
+        for (PropertyDescriptor pd : bw.getPropertyDescriptors()) {
+            String name = pd.getName();
+            Class<?> type = pd.getPropertyType();
+            // only plain values are read, a getter like DataSource.getConnection must not be called
+            if (type == null || pd.getReadMethod() == null || SECRET.matcher(name).matches()
+                    || !(BeanUtils.isSimpleValueType(type) || Map.class.isAssignableFrom(type))) {
+                continue;
+            }
+            try {
+                Object value = bw.getPropertyValue(name);
+                if (value instanceof Map) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        String key = String.valueOf(entry.getKey());
+                        if (!SECRET.matcher(key).matches() && (!endpointOnly || ENDPOINT.matcher(key).matches())) {
+                            properties.put(prefix + name + "." + key, String.valueOf(entry.getValue()));
+                        }
+                    }
+                } else if (!endpointOnly || ENDPOINT.matcher(name).matches()) {
+                    properties.put(prefix + name, String.valueOf(value));
+                }
+            } catch (RuntimeException e) {
+                // not every getter can be called on a configured bean
+            }
+        }
+    }
+
+    public static String key(String sourceName, String connection, Map<String, String> properties) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(connection).append('\n');
+        for (Map.Entry<String, String> entry : new TreeMap<>(properties).entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder key = new StringBuilder(sourceName.toLowerCase()).append('-');
+            for (byte b : digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8))) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String get(String key) {
+        File f = new File(this.directory, key + SUFFIX);
+        if (!f.exists()) {
+            return null;
+        }
+        if (System.currentTimeMillis() - f.lastModified() > this.ttl.toMillis()) {
+            logger.debug("Cached metadata " + f.getName() + " is expired");
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Failed to read the cached metadata from " + f.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    public void put(String key, String ddl) {
+        try {
+            Files.createDirectories(this.directory.toPath());
+            File tmp = File.createTempFile(key, ".tmp", this.directory);
+            Files.write(tmp.toPath(), ddl.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), new File(this.directory, key + SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to write the metadata cache to " + this.directory.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Removes the cached metadata for the given source, or all the sources when the name is null.
+     * @return number of entries removed
+     */
+    public int evict(String sourceName) {
+        File[] files = this.directory.listFiles((dir, name) -> name.endsWith(SUFFIX)
+                && (sourceName == null || sourceName(name).equals(sourceName.toLowerCase())));
+        int count = 0;
+        if (files != null) {
+            for (File f : files) {
+                if (f.delete()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static String sourceName(String fileName) {
+        // strip the "-<hash>.ddl"
+        int index = fileName.lastIndexOf('-');
+        return index > 0 ? fileName.substring(0, index) : fileName;
+    }
+
+    public Map<String, Long> entries() {
+        Map<String, Long> result = new TreeMap<>();
+        File[] files = this.directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File f : files) {
+                result.put(f.getName().substring(0, f.getName().length() - SUFFIX.length()), f.lastModified());
+            }
+        }
+        return result;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+}
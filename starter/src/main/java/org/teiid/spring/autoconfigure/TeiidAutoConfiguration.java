@@ -32,6 +32,7 @@ import java.sql.Driver;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.PostConstruct;
@@ -44,6 +45,7 @@ import javax.xml.stream.XMLStreamException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.boot.model.naming.PhysicalNamingStrategy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
@@ -55,6 +57,8 @@ import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.autoconfigure.transaction.jta.JtaAutoConfiguration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -85,8 +89,10 @@ import org.teiid.query.metadata.VirtualFile;
 import org.teiid.runtime.EmbeddedConfiguration;
 import org.teiid.runtime.EmbeddedServer;
 import org.teiid.spring.autoconfigure.TeiidPostProcessor.Registrar;
+import org.teiid.spring.common.AuthenticationExpiryResolver;
 import org.teiid.spring.common.ExternalSources;
 import org.teiid.spring.data.file.FileConnectionFactory;
+import org.teiid.spring.identity.AuthenticationCache;
 import org.teiid.spring.identity.SpringSecurityHelper;
 import org.teiid.translator.ExecutionFactory;
 import org.teiid.translator.TranslatorException;
@@ -94,18 +100,22 @@ import org.teiid.transport.SocketConfiguration;
 import org.teiid.transport.WireProtocol;
 import org.xml.sax.SAXException;
 
+import com.zaxxer.hikari.HikariDataSource;
 import com.zaxxer.hikari.pool.ProxyConnection;
 
 @Configuration
 @ConditionalOnClass({EmbeddedServer.class, ExecutionFactory.class})
 @EnableConfigurationProperties(TeiidProperties.class)
-@Import({ Registrar.class, TransactionManagerConfiguration.class })
+@Import({ Registrar.class, TransactionManagerConfiguration.class, MetadataCacheEndpointConfiguration.class,
+        AuthenticationCacheMetricsConfiguration.class, RedirectionCompactionConfiguration.class,
+        TeiidMetricsConfiguration.class, SharedResultsetStoreConfiguration.class })
 @PropertySource("classpath:teiid.properties")
 @AutoConfigureAfter(JtaAutoConfiguration.class)
 @AutoConfigureBefore({ DataSourceAutoConfiguration.class })
 public class TeiidAutoConfiguration {
 
     static final String IMPLICIT_VDB = "implicit";
+    static final String POOL_PREFIX = "spring.datasource.teiid.pool";
     public static ThreadLocal<TeiidServer> serverContext = new ThreadLocal<>();
     private static final Log logger = LogFactory.getLog(TeiidAutoConfiguration.class);
 
@@ -115,6 +125,9 @@ public class TeiidAutoConfiguration {
     @Autowired(required = false)
     private PlatformTransactionManagerAdapter platformTransactionManagerAdapter;
 
+    @Autowired(required = false)
+    private ResultsetStore resultsetStore;
+
     @Autowired
     private TeiidProperties properties;
 
@@ -140,7 +153,11 @@ public class TeiidAutoConfiguration {
             @Override
             public DataSource getDataSource() {
                 String url = context.getEnvironment().getProperty("spring.datasource.teiid.url");
-                return new SimpleDriverDataSource(new TeiidSpringDriver(server.getDriver(), server, vdb), url);
+                DataSource ds = new SimpleDriverDataSource(new TeiidSpringDriver(server.getDriver(), server, vdb), url);
+                if (!context.getEnvironment().getProperty(POOL_PREFIX + ".enabled", Boolean.class, false)) {
+                    return ds;
+                }
+                return buildPooledDataSource(ds);
             }
 
             @Override
@@ -164,6 +181,21 @@ public class TeiidAutoConfiguration {
         return edf.getDatabase();
     }
 
+    /**
+     * Pools the local Teiid connections, so that every JPA/JdbcTemplate call does not open a new connection
+     * and session. The pool starts lazily on first use, any of the Hikari properties can be configured with
+     * "spring.datasource.teiid.pool.*" prefix. The connections use passthrough authentication, a connection used
+     * by another identity than the one of its session logs on again with a new session. The calls of the same
+     * identity, or without one, share the session and its state, which is why the pool is opt-in.
+     */
+    private HikariDataSource buildPooledDataSource(DataSource ds) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("teiid");
+        pool.setDataSource(ds);
+        Binder.get(context.getEnvironment()).bind(POOL_PREFIX, Bindable.ofInstance(pool));
+        return pool;
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public VDBMetaData teiidVDB() {
@@ -321,7 +353,12 @@ public class TeiidAutoConfiguration {
 
         if(embeddedConfiguration == null) {
             embeddedConfiguration = new EmbeddedConfiguration();
-            embeddedConfiguration.setCacheFactory(new CaffeineCacheFactory());
+            embeddedConfiguration.setCacheFactory(new ResultsetCacheFactory(new CaffeineCacheFactory(),
+                    this.properties.getResultsetCache(), this.resultsetStore, server::getBufferManager));
+            if (this.resultsetStore != null) {
+                logger.info("Sharing the result set cache through " + this.resultsetStore);
+            }
+            new EngineConfigurer(this.properties).configure(embeddedConfiguration);
 
             if (this.properties.getNodeName() != null) {
                 String nodeName = this.properties.getNodeName();
@@ -393,6 +430,7 @@ public class TeiidAutoConfiguration {
             embeddedConfiguration.setSecurityHelper(securityHelper);
         }
 
+        server.setMetadataCache(SourceMetadataCache.build(this.context.getEnvironment()));
         server.start(embeddedConfiguration);
 
         // this is dummy vdb to satisfy the boot process to create the connections
@@ -408,8 +446,14 @@ public class TeiidAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean
     @Scope(ConfigurableBeanFactory.SCOPE_SINGLETON)
-    public SpringSecurityHelper securityHelper() {
-        return new SpringSecurityHelper();
+    public SpringSecurityHelper securityHelper(ObjectProvider<AuthenticationExpiryResolver> expiryResolvers) {
+        SpringSecurityHelper helper = new SpringSecurityHelper();
+        AuthenticationCache cache = AuthenticationCache.build(this.context.getEnvironment());
+        if (cache != null) {
+            cache.setExpiryResolvers(expiryResolvers.orderedStream().collect(Collectors.toList()));
+            helper.setAuthenticationCache(cache);
+        }
+        return helper;
     }
 
     @Bean(name="file")
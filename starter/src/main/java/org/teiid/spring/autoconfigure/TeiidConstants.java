@@ -20,6 +20,9 @@ public interface TeiidConstants {
 
     String ENTITY_SCAN_DIR = "spring.teiid.model.package";
     String REDIRECTED = "spring.teiid.redirected";
+    String PARALLEL_LOAD = "spring.teiid.metadata.parallel-load";
+    String PARALLEL_LOAD_THREADS = "spring.teiid.metadata.load-threads";
+    String JSON_STREAMING = "spring.teiid.json.streaming";
 
     String REDIRECTED_TABLE_POSTFIX = "_REDIRECTED";
 
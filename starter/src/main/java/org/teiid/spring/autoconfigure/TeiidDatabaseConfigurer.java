@@ -21,6 +21,8 @@ import javax.sql.DataSource;
 import org.springframework.jdbc.datasource.embedded.ConnectionProperties;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseConfigurer;
 
+import com.zaxxer.hikari.HikariDataSource;
+
 final class TeiidDatabaseConfigurer implements EmbeddedDatabaseConfigurer {
 
     private TeiidServer server;
@@ -35,6 +37,9 @@ final class TeiidDatabaseConfigurer implements EmbeddedDatabaseConfigurer {
 
     @Override
     public void shutdown(DataSource dataSource, String databaseName) {
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).close();
+        }
         server.stop();
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import static org.teiid.spring.autoconfigure.TeiidConstants.VDBNAME;
+import static org.teiid.spring.autoconfigure.TeiidConstants.VDBVERSION;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.teiid.adminapi.Admin;
+import org.teiid.adminapi.AdminException;
+import org.teiid.adminapi.CacheStatistics;
+import org.teiid.adminapi.EngineStatistics;
+import org.teiid.adminapi.impl.ModelMetaData;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.metadata.Schema;
+import org.teiid.metadata.Table;
+import org.teiid.query.metadata.TransformationMetadata;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+@Configuration
+@ConditionalOnClass(MeterBinder.class)
+@ConditionalOnProperty(name = CommandLogMetrics.PREFIX + ".enabled", havingValue = "true", matchIfMissing = true)
+public class TeiidMetricsConfiguration {
+
+    /**
+     * The view names of the last deployed VDB
+     */
+    private static final class ViewNames {
+        private final VDBMetaData vdb;
+        private final Map<String, String> names;
+
+        ViewNames(VDBMetaData vdb) {
+            this.vdb = vdb;
+            this.names = CommandLogMetrics.viewNames(views(vdb));
+        }
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = CommandLogMetrics.PREFIX + ".command-log.enabled", havingValue = "true")
+    public CommandLogMetrics teiidCommandLogMetrics(TeiidServer server) {
+        AtomicReference<ViewNames> last = new AtomicReference<>();
+        return new CommandLogMetrics(() -> {
+            VDBMetaData vdb = deployedVdb(server);
+            if (vdb == null) {
+                return Collections.emptyMap();
+            }
+            ViewNames cached = last.get();
+            if (cached == null || cached.vdb != vdb) {
+                cached = new ViewNames(vdb);
+                last.set(cached);
+            }
+            return cached.names;
+        });
+    }
+
+    @Bean
+    public MeterBinder teiidEngineMetrics(TeiidServer server) {
+        return registry -> {
+            Supplier<EngineStatistics> stats = () -> engineStatistics(server);
+            engineGauge(registry, "teiid.sessions", "Open sessions", null, stats, s -> s.getSessionCount());
+            engineGauge(registry, "teiid.plans.active", "Query plans being processed", null, stats,
+                    s -> s.getActivePlanCount());
+            engineGauge(registry, "teiid.plans.waiting", "Query plans waiting for a processing thread", null,
+                    stats, s -> s.getWaitPlanCount());
+            engineGauge(registry, "teiid.buffer.memory.used", "Heap used by the buffer manager",
+                    BaseUnits.BYTES, stats, s -> s.getBufferHeapInUseKb() * 1024d);
+            engineGauge(registry, "teiid.buffer.memory.plans", "Buffer manager heap reserved by the active plans",
+                    BaseUnits.BYTES, stats, s -> s.getBufferHeapReservedByActivePlansKb() * 1024d);
+            engineGauge(registry, "teiid.buffer.disk.used", "Disk space used by the buffer manager",
+                    BaseUnits.BYTES, stats, s -> s.getDiskSpaceUsedInMB() * 1024d * 1024d);
+            FunctionCounter.builder("teiid.buffer.disk.reads", stats, s -> value(s.get(), e -> e.getDiskReadCount()))
+                    .description("Buffer manager reads from disk").register(registry);
+            FunctionCounter.builder("teiid.buffer.disk.writes", stats, s -> value(s.get(), e -> e.getDiskWriteCount()))
+                    .description("Buffer manager writes to disk").register(registry);
+
+            for (Admin.Cache cache : Admin.Cache.values()) {
+                String name = cache == Admin.Cache.QUERY_SERVICE_RESULT_SET_CACHE ? "resultset" : "preparedplan";
+                Supplier<CacheStatistics> cacheStats = () -> cacheStatistics(server, cache);
+                Gauge.builder("teiid.cache.hit.ratio", cacheStats, s -> value(s.get(), c -> c.getHitRatio()))
+                        .description("Hit ratio of the cache").tag("cache", name).register(registry);
+                Gauge.builder("teiid.cache.entries", cacheStats, s -> value(s.get(), c -> c.getTotalEntries()))
+                        .description("Entries in the cache").tag("cache", name).register(registry);
+                FunctionCounter.builder("teiid.cache.requests", cacheStats,
+                        s -> value(s.get(), c -> c.getRequestCount()))
+                        .description("Requests to the cache").tag("cache", name).register(registry);
+            }
+        };
+    }
+
+    private static void engineGauge(MeterRegistry registry, String name, String description, String baseUnit,
+            Supplier<EngineStatistics> stats, ToDoubleFunction<EngineStatistics> f) {
+        Gauge.builder(name, stats, s -> value(s.get(), f)).description(description).baseUnit(baseUnit)
+                .register(registry);
+    }
+
+    private static <T> double value(T stats, ToDoubleFunction<T> f) {
+        return stats == null ? Double.NaN : f.applyAsDouble(stats);
+    }
+
+    private static EngineStatistics engineStatistics(TeiidServer server) {
+        try {
+            Collection<? extends EngineStatistics> stats = server.getAdmin().getEngineStats();
+            return stats.isEmpty() ? null : stats.iterator().next();
+        } catch (AdminException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static CacheStatistics cacheStatistics(TeiidServer server, Admin.Cache cache) {
+        try {
+            Collection<? extends CacheStatistics> stats = server.getAdmin().getCacheStats(cache.name());
+            return stats.isEmpty() ? null : stats.iterator().next();
+        } catch (AdminException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static VDBMetaData deployedVdb(TeiidServer server) {
+        try {
+            return (VDBMetaData) server.getAdmin().getVDB(VDBNAME, VDBVERSION);
+        } catch (AdminException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static List<String> views(VDBMetaData vdb) {
+        List<String> result = new ArrayList<>();
+        TransformationMetadata metadata = vdb.getAttachment(TransformationMetadata.class);
+        if (metadata == null) {
+            return result;
+        }
+        for (Schema schema : metadata.getMetadataStore().getSchemaList()) {
+            ModelMetaData model = vdb.getModel(schema.getName());
+            if (model == null || !model.isVisible()) {
+                continue;
+            }
+            for (Table table : schema.getTables().values()) {
+                if (table.isVirtual()) {
+                    result.add(table.getFullName());
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.teiid.spring.autoconfigure;
 
+import java.sql.SQLException;
+
 import javax.sql.DataSource;
 import javax.sql.XADataSource;
 
@@ -44,6 +46,9 @@ import org.teiid.spring.data.BaseConnectionFactory;
 import org.teiid.spring.identity.SpringSecurityHelper;
 import org.teiid.translator.ExecutionFactory;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
 /**
  * {@link BeanPostProcessor} used to fire {@link TeiidInitializedEvent}s. Should
  * only be registered via the inner {@link Registrar} class.
@@ -148,6 +153,10 @@ class TeiidPostProcessor implements BeanPostProcessor, Ordered, ApplicationListe
         TeiidServer server = this.beanFactory.getBean(TeiidServer.class);
 
         if (Boolean.valueOf(vdb.getPropertyValue(TeiidAutoConfiguration.IMPLICIT_VDB))) {
+            if (server.isParallelLoadEnabled(this.context)) {
+                // sources were only collected during the boot, load all of them at once
+                server.loadSourceMetadata(vdb, this.context);
+            }
             PhysicalNamingStrategy namingStrategy = this.beanFactory.getBean(PhysicalNamingStrategy.class);
             deploy = server.findAndConfigureViews(vdb, event.getApplicationContext(), namingStrategy);
         }
@@ -157,6 +166,25 @@ class TeiidPostProcessor implements BeanPostProcessor, Ordered, ApplicationListe
             server.undeployVDB(TeiidConstants.VDBNAME);
             server.undeployVDB(vdb.getName(), vdb.getVersion());
             server.deployVDB(vdb, true, this.context);
+            evictPooledConnections();
+        }
+    }
+
+    /**
+     * Connections pooled during the boot are bound to the VDB that was just replaced, let the pool
+     * replace them with the connections to the final VDB.
+     */
+    private void evictPooledConnections() {
+        try {
+            DataSource ds = this.beanFactory.getBean("dataSource", DataSource.class);
+            if (ds.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = ds.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                if (pool != null) {
+                    pool.softEvictConnections();
+                }
+            }
+        } catch (BeansException | SQLException e) {
+            logger.debug("Could not evict the pooled connections", e);
         }
     }
 
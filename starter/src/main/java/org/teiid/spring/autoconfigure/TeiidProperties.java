@@ -16,7 +16,10 @@
 
 package org.teiid.spring.autoconfigure;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 import org.teiid.transport.SSLConfiguration;
 
 @ConfigurationProperties(prefix = "teiid")
@@ -39,6 +42,183 @@ public class TeiidProperties {
     private String labels;
 
     private SSLConfiguration ssl = new SSLConfiguration();
+    private Buffer buffer = new Buffer();
+    private Engine engine = new Engine();
+    private ResultsetCache resultsetCache = new ResultsetCache();
+
+    /**
+     * Buffer manager settings, unset values are derived from the container, see {@link EngineConfigurer}
+     */
+    public static class Buffer {
+        private String directory;
+        private boolean useDisk = true;
+        private DataSize maxStorageSize;
+        private DataSize maxFileSize;
+        private DataSize maxReserveSize;
+        private DataSize maxProcessingSize;
+        private DataSize memorySize;
+        private boolean offHeap = false;
+        private Integer processorBatchSize;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public boolean isUseDisk() {
+            return useDisk;
+        }
+
+        public void setUseDisk(boolean useDisk) {
+            this.useDisk = useDisk;
+        }
+
+        public DataSize getMaxStorageSize() {
+            return maxStorageSize;
+        }
+
+        public void setMaxStorageSize(DataSize maxStorageSize) {
+            this.maxStorageSize = maxStorageSize;
+        }
+
+        public DataSize getMaxFileSize() {
+            return maxFileSize;
+        }
+
+        public void setMaxFileSize(DataSize maxFileSize) {
+            this.maxFileSize = maxFileSize;
+        }
+
+        public DataSize getMaxReserveSize() {
+            return maxReserveSize;
+        }
+
+        public void setMaxReserveSize(DataSize maxReserveSize) {
+            this.maxReserveSize = maxReserveSize;
+        }
+
+        public DataSize getMaxProcessingSize() {
+            return maxProcessingSize;
+        }
+
+        public void setMaxProcessingSize(DataSize maxProcessingSize) {
+            this.maxProcessingSize = maxProcessingSize;
+        }
+
+        public DataSize getMemorySize() {
+            return memorySize;
+        }
+
+        public void setMemorySize(DataSize memorySize) {
+            this.memorySize = memorySize;
+        }
+
+        public boolean isOffHeap() {
+            return offHeap;
+        }
+
+        public void setOffHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+        }
+
+        public Integer getProcessorBatchSize() {
+            return processorBatchSize;
+        }
+
+        public void setProcessorBatchSize(Integer processorBatchSize) {
+            this.processorBatchSize = processorBatchSize;
+        }
+    }
+
+    public static class ResultsetCache {
+        private boolean enabled = true;
+        private int maxEntries = 1024;
+        private DataSize maxSize;
+        private Duration ttl;
+        private String sharedCache;
+        private DataSize sharedMaxEntrySize = DataSize.ofMegabytes(16);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public String getSharedCache() {
+            return sharedCache;
+        }
+
+        public void setSharedCache(String sharedCache) {
+            this.sharedCache = sharedCache;
+        }
+
+        public DataSize getSharedMaxEntrySize() {
+            return sharedMaxEntrySize;
+        }
+
+        public void setSharedMaxEntrySize(DataSize sharedMaxEntrySize) {
+            this.sharedMaxEntrySize = sharedMaxEntrySize;
+        }
+    }
+
+    public static class Engine {
+        private Integer maxThreads;
+        private Integer maxActivePlans;
+        private Integer userRequestSourceConcurrency;
+
+        public Integer getMaxThreads() {
+            return maxThreads;
+        }
+
+        public void setMaxThreads(Integer maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+
+        public Integer getMaxActivePlans() {
+            return maxActivePlans;
+        }
+
+        public void setMaxActivePlans(Integer maxActivePlans) {
+            this.maxActivePlans = maxActivePlans;
+        }
+
+        public Integer getUserRequestSourceConcurrency() {
+            return userRequestSourceConcurrency;
+        }
+
+        public void setUserRequestSourceConcurrency(Integer userRequestSourceConcurrency) {
+            this.userRequestSourceConcurrency = userRequestSourceConcurrency;
+        }
+    }
 
     public TeiidProperties() {
         this.ssl.setMode(SSLConfiguration.ENABLED);
@@ -171,4 +351,28 @@ public class TeiidProperties {
     public void setLabels(String labels) {
         this.labels = labels;
     }
+
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    public void setBuffer(Buffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    public ResultsetCache getResultsetCache() {
+        return resultsetCache;
+    }
+
+    public void setResultsetCache(ResultsetCache resultsetCache) {
+        this.resultsetCache = resultsetCache;
+    }
 }
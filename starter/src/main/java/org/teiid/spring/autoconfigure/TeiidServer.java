@@ -24,14 +24,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.persistence.Embeddable;
 import javax.persistence.Entity;
 import javax.sql.DataSource;
 import javax.sql.XADataSource;
@@ -60,10 +68,10 @@ import org.hibernate.dialect.Dialect;
 import org.hibernate.service.ServiceRegistry;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
 import org.springframework.context.ApplicationContext;
-import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
-import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.teiid.PreParser;
 import org.teiid.adminapi.Admin;
 import org.teiid.adminapi.Admin.TranlatorPropertyType;
@@ -75,9 +83,11 @@ import org.teiid.adminapi.impl.SourceMappingMetadata;
 import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.adminapi.impl.VDBMetadataParser;
 import org.teiid.adminapi.impl.VDBTranslatorMetaData;
+import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.util.ReflectionHelper;
+import org.teiid.deployers.VDBLifeCycleListener;
 import org.teiid.deployers.VirtualDatabaseException;
 import org.teiid.dialect.TeiidDialect;
 import org.teiid.dqp.internal.datamgr.ConnectorManager;
@@ -96,6 +106,7 @@ import org.teiid.spring.annotations.JsonTable;
 import org.teiid.spring.annotations.SelectQuery;
 import org.teiid.spring.annotations.TextTable;
 import org.teiid.spring.annotations.UserDefinedFunctions;
+import org.teiid.spring.common.ComponentIndex;
 import org.teiid.spring.common.ExternalSource;
 import org.teiid.spring.common.ExternalSources;
 import org.teiid.spring.data.BaseConnectionFactory;
@@ -122,6 +133,11 @@ public class TeiidServer extends EmbeddedServer {
     private PlatformTransactionManagerAdapter platformTransactionManagerAdapter;
     private ConcurrentHashMap<String, ConnectionFactoryProvider<?>> connectionFactoryProviders = new ConcurrentHashMap<String, ConnectionFactoryProvider<?>>();
     private ExternalSources externalSources;
+    private volatile ExecutorService metadataLoader;
+    private Map<String, Future<?>> metadataJobs = new ConcurrentHashMap<String, Future<?>>();
+    private SourceMetadataCache metadataCache;
+    private volatile RedirectionSchemaBuilder redirectionSchemaBuilder;
+    private Map<String, String> uncachedModels = new ConcurrentHashMap<String, String>();
 
     public TeiidServer(ExternalSources es) {
         this.cmr = new SBConnectorManagerRepository();
@@ -135,7 +151,8 @@ public class TeiidServer extends EmbeddedServer {
             boolean redirectUpdates = isRedirectUpdatesEnabled(context);
             String redirectedDSName = getRedirectedDataSource(context);
 
-            addConnectionFactoryProvider(sourceBeanName, new SBConnectionFactoryProvider(source));
+            addConnectionFactoryProvider(sourceBeanName, new SBConnectionFactoryProvider(source,
+                    this.platformTransactionManagerAdapter));
 
             ModelMetaData model = null;
 
@@ -167,31 +184,25 @@ public class TeiidServer extends EmbeddedServer {
                 throw new IllegalStateException("Unknown source type is being added");
             }
 
-            // since each time a data source is added the vdb is reloaded
-            // this is a cheap way not to do the reload of the metadata from source. a.k.a
-            // metadata caching
-            try {
-                final Admin admin = getAdmin();
-                VDBMetaData previous = (VDBMetaData) admin.getVDB(VDBNAME, VDBVERSION);
-                for (Map.Entry<String, ModelMetaData> entry : previous.getModelMetaDatas().entrySet()) {
-                    String metadata = admin.getSchema(VDBNAME, VDBVERSION, entry.getKey(), null, null);
-                    if (vdb.getModel(entry.getKey()).getSourceMetadataType().isEmpty()) {
-                        vdb.getModel(entry.getKey()).addSourceMetadata("DDL", metadata);
-                    }
-                }
-            } catch (AdminException e) {
-                // no-op. if failed redo
+            // in parallel mode the sources are only collected here, their metadata is loaded
+            // all at once by loadSourceMetadata
+            boolean parallel = isParallelLoadEnabled(context);
+            if (!parallel) {
+                reuseDeployedMetadata(vdb);
             }
 
             // add the new model
             if (model != null) {
+                attachCachedMetadata(vdb, model, SourceMetadataCache.describe(source));
                 model.setVisible(false);
                 vdb.addModel(model);
                 logger.info("Added " + sourceBeanName + " to the Teiid Database");
             }
 
-            undeployVDB(vdb.getName(), vdb.getVersion());
-            deployVDB(vdb, false, context);
+            if (!parallel) {
+                undeployVDB(vdb.getName(), vdb.getVersion());
+                deployVDB(vdb, false, context);
+            }
         } else {
             for (ModelMetaData model : vdb.getModelMetaDatas().values()) {
                 for (SourceMappingMetadata smm : model.getSourceMappings()) {
@@ -204,6 +215,135 @@ public class TeiidServer extends EmbeddedServer {
         }
     }
 
+    /**
+     * since each time a data source is added the vdb is reloaded this is a cheap way not to do the
+     * reload of the metadata from source. a.k.a metadata caching
+     */
+    private void reuseDeployedMetadata(VDBMetaData vdb) {
+        try {
+            final Admin admin = getAdmin();
+            VDBMetaData previous = (VDBMetaData) admin.getVDB(VDBNAME, VDBVERSION);
+            if (previous == null) {
+                return;
+            }
+            for (Map.Entry<String, ModelMetaData> entry : previous.getModelMetaDatas().entrySet()) {
+                String metadata = admin.getSchema(VDBNAME, VDBVERSION, entry.getKey(), null, null);
+                ModelMetaData model = vdb.getModel(entry.getKey());
+                if (model != null && model.getSourceMetadataType().isEmpty()) {
+                    model.addSourceMetadata("DDL", metadata);
+                }
+            }
+        } catch (AdminException e) {
+            // no-op. if failed redo
+        }
+    }
+
+    private void attachCachedMetadata(VDBMetaData vdb, ModelMetaData model, String connection) {
+        if (this.metadataCache == null || !model.getSourceMetadataType().isEmpty()) {
+            return;
+        }
+        Map<String, String> properties = new HashMap<String, String>(model.getPropertiesMap());
+        for (SourceMappingMetadata smm : model.getSourceMappings()) {
+            properties.put("translator", smm.getTranslatorName());
+            VDBTranslatorMetaData translator = vdb.getTranslator(smm.getTranslatorName());
+            if (translator != null) {
+                translator.getPropertiesMap().forEach((k, v) -> properties.put("translator." + k, v));
+            }
+        }
+        String key = SourceMetadataCache.key(model.getName(), connection, properties);
+        String ddl = this.metadataCache.get(key);
+        if (ddl != null) {
+            model.addSourceMetadata("DDL", ddl);
+            logger.info("Metadata for " + model.getName() + " loaded from the metadata cache");
+        } else {
+            this.uncachedModels.put(model.getName(), key);
+        }
+    }
+
+    private void cacheImportedMetadata(VDBMetaData vdb) {
+        if (this.metadataCache == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : this.uncachedModels.entrySet()) {
+            try {
+                String ddl = getAdmin().getSchema(vdb.getName(), vdb.getVersion(), entry.getKey(), null, null);
+                if (ddl != null) {
+                    this.metadataCache.put(entry.getValue(), ddl);
+                    this.uncachedModels.remove(entry.getKey());
+                }
+            } catch (AdminException e) {
+                logger.debug("Metadata for " + entry.getKey() + " is not available to cache", e);
+            }
+        }
+    }
+
+    /**
+     * Deploys the VDB with all the collected source models, importing their metadata in parallel. The
+     * imported metadata is kept on the models, such that the final deployment with the views does not go
+     * back to the sources.
+     */
+    void loadSourceMetadata(VDBMetaData vdb, ApplicationContext context) {
+        undeployVDB(vdb.getName(), vdb.getVersion());
+        deployVDB(vdb, false, context);
+        reuseDeployedMetadata(vdb);
+    }
+
+    boolean isParallelLoadEnabled(ApplicationContext context) {
+        return Boolean.parseBoolean(context.getEnvironment().getProperty(TeiidConstants.PARALLEL_LOAD));
+    }
+
+    private int getParallelLoadThreads(ApplicationContext context) {
+        int threads = context.getEnvironment().getProperty(TeiidConstants.PARALLEL_LOAD_THREADS, Integer.class,
+                Runtime.getRuntime().availableProcessors());
+        if (threads < 1) {
+            throw new IllegalStateException(TeiidConstants.PARALLEL_LOAD_THREADS + " must be greater than zero");
+        }
+        return threads;
+    }
+
+    private void deployInParallel(VDBMetaData vdb, ApplicationContext context)
+            throws ConnectorManagerException, VirtualDatabaseException, TranslatorException {
+        int threads = Math.min(getParallelLoadThreads(context), Math.max(1, vdb.getModelMetaDatas().size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new CustomizableThreadFactory("teiid-metadata-"));
+        this.metadataJobs.clear();
+        this.metadataLoader = executor;
+        try {
+            deployVDB(vdb, vdb.getAttachment(VDBResources.class));
+            for (Map.Entry<String, Future<?>> job : this.metadataJobs.entrySet()) {
+                try {
+                    job.getValue().get();
+                } catch (ExecutionException e) {
+                    throw new TranslatorException(e.getCause());
+                }
+                ModelMetaData model = vdb.getModel(job.getKey());
+                Exception e = model == null ? null : model.getAttachment(Exception.class);
+                if (e instanceof TranslatorException) {
+                    throw (TranslatorException)e;
+                } else if (e != null) {
+                    throw new TranslatorException(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the metadata of VDB " + vdb.getName(), e);
+        } finally {
+            this.metadataLoader = null;
+            this.metadataJobs.clear();
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void runMetadataJob(VDBMetaData vdb, ModelMetaData model, Runnable job) throws TranslatorException {
+        ExecutorService executor = this.metadataLoader;
+        if (executor == null) {
+            super.runMetadataJob(vdb, model, job);
+        } else {
+            this.metadataJobs.put(model.getName(), executor.submit(job));
+        }
+    }
+
     String addOverrideTranslator(String overrideName, Map<String, String> properties, ExternalSource base,
             ApplicationContext context) {
         try {
@@ -240,15 +380,26 @@ public class TeiidServer extends EmbeddedServer {
 
     static class SBConnectionFactoryProvider implements ConnectionFactoryProvider<Object> {
         private Object bean;
+        private PlatformTransactionManagerAdapter transactionManager;
 
-        SBConnectionFactoryProvider(Object bean) {
+        SBConnectionFactoryProvider(Object bean, PlatformTransactionManagerAdapter transactionManager) {
             this.bean = bean;
+            this.transactionManager = transactionManager;
         }
 
         @Override
         public Object getConnectionFactory() throws TranslatorException {
             if (this.bean instanceof DataSource) {
-                return new TransactionAwareDataSourceProxy((DataSource) bean);
+                return new TransactionAwareDataSourceProxy((DataSource) bean) {
+                    @Override
+                    public Connection getConnection() throws SQLException {
+                        // the source joins the transaction only once it is actually used in it
+                        if (transactionManager != null) {
+                            transactionManager.enlist(getTargetDataSource());
+                        }
+                        return super.getConnection();
+                    }
+                };
             }
             return bean;
         }
@@ -364,7 +515,12 @@ public class TeiidServer extends EmbeddedServer {
                 logger.debug("XML Form of VDB:\n" + prettyFormat(new String(out.toByteArray())));
             }
 
-            deployVDB(vdb, vdb.getAttachment(VDBResources.class));
+            if (isParallelLoadEnabled(context)) {
+                deployInParallel(vdb, context);
+            } else {
+                deployVDB(vdb, vdb.getAttachment(VDBResources.class));
+            }
+            cacheImportedMetadata(vdb);
         } catch (VirtualDatabaseException | ConnectorManagerException | TranslatorException | XMLStreamException
                 |AdminException | IOException e) {
             throw new IllegalStateException("Failed to deploy the VDB file", e);
@@ -511,18 +667,9 @@ public class TeiidServer extends EmbeddedServer {
     }
 
     boolean findAndConfigureViews(VDBMetaData vdb, ApplicationContext context, PhysicalNamingStrategy namingStrategy) {
-        ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
-        provider.addIncludeFilter(new AnnotationTypeFilter(javax.persistence.Entity.class));
-        provider.addIncludeFilter(new AnnotationTypeFilter(javax.persistence.Embeddable.class));
-        provider.addIncludeFilter(new AnnotationTypeFilter(SelectQuery.class));
-        provider.addIncludeFilter(new AnnotationTypeFilter(UserDefinedFunctions.class));
-        provider.addIncludeFilter(new AnnotationTypeFilter(ConnectionFactoryConfiguration.class));
-
-        String basePackage = getBasePackage(context, false);
-
         // check to add any source models first based on the annotations
         boolean load = false;
-        Set<BeanDefinition> components = provider.findCandidateComponents(basePackage);
+        Set<BeanDefinition> components = findComponents(context);
         for (BeanDefinition c : components) {
             try {
                 Class<?> clazz = Class.forName(c.getBeanClassName());
@@ -618,6 +765,7 @@ public class TeiidServer extends EmbeddedServer {
                 }
 
                 RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(context, redirectedDSName);
+                this.redirectionSchemaBuilder = mg;
                 // if none of the annotations defined, create layer with tables from all data
                 // sources
                 if (mf.getSchema().getTables().isEmpty()) {
@@ -628,6 +776,9 @@ public class TeiidServer extends EmbeddedServer {
                 // now add the modified model that does the redirection
                 ModelMetaData exposedModel = mg.buildRedirectionLayer(mf, EXPOSED_VIEW);
                 vdb.addModel(exposedModel);
+                if (context.getEnvironment().getProperty(REDIRECTED + ".set-based", Boolean.class, false)) {
+                    vdb.addAttachment(PreParser.class, new RedirectionPreParser(mg));
+                }
 
                 // we need to create the schema in the redirected data source to store the
                 // ephemeral data, will use
@@ -666,6 +817,23 @@ public class TeiidServer extends EmbeddedServer {
         return load;
     }
 
+    /**
+     * Use the index generated at build time by the ComponentIndexProcessor for the jars and directories that have
+     * one, and scan the rest of the classpath.
+     */
+    private Set<BeanDefinition> findComponents(ApplicationContext context) {
+        Set<String> classNames = ComponentIndex.findCandidateTypes(context.getClassLoader(),
+                getBasePackage(context, false), Arrays.asList(Entity.class, Embeddable.class, SelectQuery.class,
+                        UserDefinedFunctions.class, ConnectionFactoryConfiguration.class));
+        Set<BeanDefinition> components = new LinkedHashSet<BeanDefinition>();
+        for (String className : classNames) {
+            GenericBeanDefinition bd = new GenericBeanDefinition();
+            bd.setBeanClassName(className);
+            components.add(bd);
+        }
+        return components;
+    }
+
     private String getBasePackage(ApplicationContext context, boolean translator) {
         String basePackage = context.getEnvironment().getProperty(TeiidConstants.ENTITY_SCAN_DIR);
         if (basePackage == null) {
@@ -760,6 +928,24 @@ public class TeiidServer extends EmbeddedServer {
         vdb.addModel(model);
     }
 
+    /**
+     * Notifies the listener of every VDB deployed to, or removed from, this server.
+     */
+    public void addVDBLifeCycleListener(VDBLifeCycleListener listener) {
+        getVDBRepository().addListener(listener);
+    }
+
+    public void removeVDBLifeCycleListener(VDBLifeCycleListener listener) {
+        getVDBRepository().removeListener(listener);
+    }
+
+    /**
+     * @return the buffer manager of the engine, null until the server is started
+     */
+    BufferManagerImpl getBufferManager() {
+        return this.bufferService == null ? null : this.bufferService.getBufferManager();
+    }
+
     public Schema getSchema(VDBMetaData vdb, String modelName) {
         if (vdb == null) {
             return null;
@@ -781,6 +967,18 @@ public class TeiidServer extends EmbeddedServer {
         }
     }
 
+    public SourceMetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    public void setMetadataCache(SourceMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    public RedirectionSchemaBuilder getRedirectionSchemaBuilder() {
+        return redirectionSchemaBuilder;
+    }
+
     public PlatformTransactionManagerAdapter getPlatformTransactionManagerAdapter() {
         return platformTransactionManagerAdapter;
     }
@@ -30,6 +30,7 @@ public class TeiidSpringDriver implements Driver {
     private Driver delegate;
     private TeiidServer server;
     private VDBMetaData vdb;
+    private volatile boolean vdbDeployed;
 
     public TeiidSpringDriver(Driver d, TeiidServer server, VDBMetaData vdb) {
         this.delegate = d;
@@ -44,18 +45,27 @@ public class TeiidSpringDriver implements Driver {
 
     @Override
     public Connection connect(String url, Properties info) throws SQLException {
-        boolean exists = false;
-        try {
-            exists = server.getAdmin().getVDB(vdb.getName(), vdb.getVersion()) != null;
-        } catch (AdminException e) {
-            // ignore.
-        }
-        if (!vdb.getName().equals(TeiidConstants.VDBNAME) && exists) {
+        if (!vdb.getName().equals(TeiidConstants.VDBNAME) && isVdbDeployed()) {
             url = url.replace(TeiidConstants.VDBNAME, vdb.getName());
         }
         return delegate.connect(url, info);
     }
 
+    /**
+     * The VDB lookup is only needed until the user's VDB is deployed, after that the result is remembered
+     * so that connection creation does not go through the admin api each time.
+     */
+    private boolean isVdbDeployed() {
+        if (!this.vdbDeployed) {
+            try {
+                this.vdbDeployed = server.getAdmin().getVDB(vdb.getName(), vdb.getVersion()) != null;
+            } catch (AdminException e) {
+                // ignore.
+            }
+        }
+        return this.vdbDeployed;
+    }
+
     @Override
     public int getMajorVersion() {
         return delegate.getMajorVersion();
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.identity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.Authentication;
+import org.teiid.spring.common.AuthenticationExpiryResolver;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * Keeps the result of a successful authentication for the JDBC/PG transports, so that a client that reconnects
+ * with the same credentials is not authenticated again with the identity provider. The entries are keyed by the
+ * user name and a salted hash of the credentials, and expire after the configured time or when the token of the
+ * authentication expires, whichever is earlier. The resolvers are told when an authentication is evicted.
+ */
+public class AuthenticationCache {
+    public static final String PREFIX = "spring.teiid.security.authentication-cache";
+
+    private static final class Entry {
+        final Authentication authentication;
+        final long expiresAt;
+
+        Entry(Authentication authentication, long expiresAt) {
+            this.authentication = authentication;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Cache<String, Entry> cache;
+    private final long ttl;
+    private final byte[] salt = new byte[16];
+    private List<AuthenticationExpiryResolver> expiryResolvers = new ArrayList<>();
+
+    public AuthenticationCache(long maxSize, Duration ttl) {
+        this.ttl = ttl.toMillis();
+        new SecureRandom().nextBytes(this.salt);
+        this.cache = Caffeine.newBuilder().maximumSize(maxSize).recordStats().expireAfter(new Expiry<String, Entry>() {
+            @Override
+            public long expireAfterCreate(String key, Entry value, long currentTime) {
+                long remaining = value.expiresAt - System.currentTimeMillis();
+                return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, Entry value, long currentTime, long currentDuration) {
+                return expireAfterCreate(key, value, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(String key, Entry value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        }).removalListener((String key, Entry value, RemovalCause cause) -> {
+            if (value != null && cause.wasEvicted()) {
+                for (AuthenticationExpiryResolver resolver : this.expiryResolvers) {
+                    resolver.evicted(value.authentication);
+                }
+            }
+        }).build();
+    }
+
+    public static AuthenticationCache build(Environment env) {
+        if (!env.getProperty(PREFIX + ".enabled", Boolean.class, false)) {
+            return null;
+        }
+        long maxSize = env.getProperty(PREFIX + ".max-size", Long.class, 1000L);
+        Duration ttl = Binder.get(env).bind(PREFIX + ".ttl", Duration.class).orElse(Duration.ofMinutes(5));
+        return new AuthenticationCache(maxSize, ttl);
+    }
+
+    public void setExpiryResolvers(List<AuthenticationExpiryResolver> expiryResolvers) {
+        this.expiryResolvers = expiryResolvers;
+    }
+
+    /**
+     * @return the key, or null when the credentials are not of a type that can be cached
+     */
+    String key(String userName, Object credentials) {
+        byte[] secret;
+        if (credentials instanceof char[]) {
+            secret = new String((char[]) credentials).getBytes(StandardCharsets.UTF_8);
+        } else if (credentials instanceof String) {
+            secret = ((String) credentials).getBytes(StandardCharsets.UTF_8);
+        } else {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(this.salt);
+            digest.update(secret);
+            StringBuilder key = new StringBuilder(userName).append('\n');
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Authentication get(String key) {
+        Entry entry = this.cache.getIfPresent(key);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.authentication;
+    }
+
+    void put(String key, Authentication authentication) {
+        long expiresAt = System.currentTimeMillis() + this.ttl;
+        for (AuthenticationExpiryResolver resolver : this.expiryResolvers) {
+            Long expiry = resolver.getExpiry(authentication);
+            if (expiry != null) {
+                expiresAt = Math.min(expiresAt, expiry);
+                break;
+            }
+        }
+        if (expiresAt > System.currentTimeMillis()) {
+            this.cache.put(key, new Entry(authentication, expiresAt));
+        }
+    }
+
+    public void clear() {
+        this.cache.invalidateAll();
+    }
+
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+    public Cache<String, ?> getCache() {
+        return this.cache;
+    }
+}
@@ -35,6 +35,7 @@ public class SpringSecurityHelper implements SecurityHelper {
     private static final Log logger = LogFactory.getLog(SpringSecurityHelper.class);
 
     private AuthenticationManager authenticationManager;
+    private AuthenticationCache authenticationCache;
 
     @Override
     public Object associateSecurityContext(Object newContext) {
@@ -74,10 +75,22 @@ public class SpringSecurityHelper implements SecurityHelper {
                 UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(baseUserName,
                         credentials == null ? null
                                 : credentials.getCredentials());
-                try {
-                    authentication = authenticationManager.authenticate(token);
-                } catch (AuthenticationException e) {
-                    throw new LoginException(e.getMessage());
+                String key = null;
+                if (authenticationCache != null && baseUserName != null && token.getCredentials() != null) {
+                    key = authenticationCache.key(baseUserName, token.getCredentials());
+                    if (key != null) {
+                        authentication = authenticationCache.get(key);
+                    }
+                }
+                if (authentication == null) {
+                    try {
+                        authentication = authenticationManager.authenticate(token);
+                    } catch (AuthenticationException e) {
+                        throw new LoginException(e.getMessage());
+                    }
+                    if (key != null && authentication != null && authentication.isAuthenticated()) {
+                        authenticationCache.put(key, authentication);
+                    }
                 }
             }
             baseUserName = authentication.getName();
@@ -113,4 +126,12 @@ public class SpringSecurityHelper implements SecurityHelper {
         this.authenticationManager = authenticationManager;
     }
 
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
+    public AuthenticationCache getAuthenticationCache() {
+        return authenticationCache;
+    }
+
 }
@@ -42,6 +42,7 @@ public class ExcelTableView extends ViewBuilder<ExcelTable> {
         sb.append(entityClazz.getSimpleName().toLowerCase()).append(".").append(annotation.sheetName());
         sb.append(" AS st");
         view.setSelectTransformation(sb.toString());
+        addCacheHint(view, annotation.cacheTtl());
     }
 
     @Override
@@ -16,21 +16,38 @@
 package org.teiid.spring.views;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.hibernate.boot.Metadata;
 import org.springframework.context.ApplicationContext;
+import org.teiid.core.types.DataTypeManager;
 import org.teiid.metadata.Column;
 import org.teiid.metadata.MetadataFactory;
 import org.teiid.metadata.Table;
 import org.teiid.spring.annotations.JsonTable;
 import org.teiid.spring.annotations.RestConfiguration;
+import org.teiid.spring.autoconfigure.TeiidConstants;
 import org.teiid.spring.data.BaseConnectionFactory;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class JsonTableView extends ViewBuilder<JsonTable> {
+    // the streaming path returns the values as text, these are the types that convert from it the same way
+    private static final Set<String> STREAMING_TYPES = new HashSet<>(Arrays.asList(DataTypeManager.DefaultDataTypes.STRING,
+            DataTypeManager.DefaultDataTypes.CHAR, DataTypeManager.DefaultDataTypes.BOOLEAN,
+            DataTypeManager.DefaultDataTypes.BYTE, DataTypeManager.DefaultDataTypes.SHORT,
+            DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.LONG,
+            DataTypeManager.DefaultDataTypes.BIG_INTEGER, DataTypeManager.DefaultDataTypes.FLOAT,
+            DataTypeManager.DefaultDataTypes.DOUBLE, DataTypeManager.DefaultDataTypes.BIG_DECIMAL));
+
     private StringBuilder columndef = new StringBuilder();
     private StringBuilder columns = new StringBuilder();
+    private List<String[]> columnSpecs = new ArrayList<>(); // name, type, path or null when ordinal
+    private boolean streamable = true;
 
     public JsonTableView(Metadata metadata) {
         super(metadata);
@@ -65,6 +82,39 @@ public class JsonTableView extends ViewBuilder<JsonTable> {
         sb.append(") AS f, ").append("\n");
 
         String root = annotation.root();
+        boolean streaming = this.streamable && StreamingJsonTable.isSimplePath(StreamingJsonTable.trim(root))
+                && context.getEnvironment().getProperty(TeiidConstants.JSON_STREAMING, Boolean.class, false);
+        String input = translator.equalsIgnoreCase("file") ? "f.file" : "f.result";
+
+        if (streaming) {
+            StreamingJsonTable.addFunction(mf);
+            List<String> paths = new ArrayList<>();
+            for (String[] spec : this.columnSpecs) {
+                if (spec[2] != null) {
+                    paths.add(spec[2]);
+                }
+            }
+            sb.append("OBJECTTABLE('jr' PASSING ").append(StreamingJsonTable.FUNCTION_NAME).append("(")
+                    .append(input).append(", '").append(StreamingJsonTable.trim(root)).append("', '")
+                    .append(String.join(",", paths)).append("', ").append(annotation.rootIsArray())
+                    .append(") AS jr COLUMNS ");
+            int index = 0;
+            for (int i = 0; i < this.columnSpecs.size(); i++) {
+                String[] spec = this.columnSpecs.get(i);
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                // the row number follows the column values
+                int position = spec[2] == null ? paths.size() + 1 : ++index;
+                sb.append(spec[0]).append(" ").append(spec[2] == null ? DataTypeManager.DefaultDataTypes.INTEGER
+                        : spec[1]).append(" 'teiid_row.").append(position).append("'");
+            }
+            sb.append(") AS jt");
+            view.setSelectTransformation(sb.toString());
+            addCacheHint(view, annotation.cacheTtl());
+            return;
+        }
+
         root = "/response" + root;
         if (annotation.rootIsArray()) {
             root = "/response" + root;
@@ -73,15 +123,12 @@ public class JsonTableView extends ViewBuilder<JsonTable> {
             root = root.substring(0, root.lastIndexOf('/'));
         }
 
-        if (translator.equals("file")) {
-            sb.append("XMLTABLE('").append(root).append("' PASSING JSONTOXML('response', f.file) ");
-        } else if (translator.equalsIgnoreCase("rest")){
-            sb.append("XMLTABLE('").append(root).append("' PASSING JSONTOXML('response', f.result) ");
-        }
+        sb.append("XMLTABLE('").append(root).append("' PASSING JSONTOXML('response', ").append(input).append(") ");
         sb.append("COLUMNS ").append(columndef.toString());
         sb.append(") AS jt");
 
         view.setSelectTransformation(sb.toString());
+        addCacheHint(view, annotation.cacheTtl());
     }
 
     static void generateRestProcedure(Class<?> entityClazz, String source, String endPoint, StringBuilder sb) {
@@ -93,8 +140,18 @@ public class JsonTableView extends ViewBuilder<JsonTable> {
             String body = (config == null) ? null : config.bodyBean();
             sb.append("EXEC ").append(source).append(".invokeHttp(action=>'").append(method).append("', ");
             sb.append("endpoint=>'").append(endPoint).append("', ");
+            List<String> headerArgs = new ArrayList<>();
             if (headers != null && !headers.isEmpty()) {
-                sb.append("headers=>jsonObject('").append(headers).append("' as \"T-Spring-Bean\"), ");
+                headerArgs.add("'" + headers + "' as \"T-Spring-Bean\"");
+            }
+            if (config != null && !config.responseCache()) {
+                headerArgs.add("'false' as \"T-Spring-Cache\"");
+            }
+            if (config != null && config.responseCacheTtl() >= 0) {
+                headerArgs.add("'" + config.responseCacheTtl() + "' as \"T-Spring-Cache-Ttl\"");
+            }
+            if (!headerArgs.isEmpty()) {
+                sb.append("headers=>jsonObject(").append(String.join(", ", headerArgs)).append("), ");
             }
             if (body != null && !body.isEmpty()) {
                 sb.append("body=>'").append(body).append("', ");
@@ -126,22 +183,36 @@ public class JsonTableView extends ViewBuilder<JsonTable> {
 
         this.columndef.append(column.getName());
 
-        if (colAnnotation != null && colAnnotation.ordinal()) {
+        boolean ordinal = colAnnotation != null && colAnnotation.ordinal();
+        if (ordinal) {
             columndef.append(" FOR ORDINALITY");
         } else {
             columndef.append(" ").append(column.getRuntimeType());
         }
 
+        String path = column.getName();
         JsonProperty jsonProperty = field == null ? null : field.getAnnotation(JsonProperty.class);
         if (jsonProperty != null) {
+            path = jsonProperty.value();
             columndef.append(" PATH '").append(jsonProperty.value()).append("'");
         } else if (parent != null) {
+            path = parent + "/" + column.getName();
             columndef.append(" PATH '").append(parent).append("/").append(column.getName()).append("'");
         } if (field == null) {
             // this is implicit join, where the array item does not have an id, but parent's id is its id
+            path = "../" + column.getName();
             columndef.append(" PATH '").append("../").append(column.getName()).append("'");
         }
 
+        if (ordinal) {
+            this.columnSpecs.add(new String[] {column.getName(), null, null});
+        } else {
+            this.columnSpecs.add(new String[] {column.getName(), column.getRuntimeType(), path});
+            if (!StreamingJsonTable.isSimplePath(path) || !STREAMING_TYPES.contains(column.getRuntimeType())) {
+                this.streamable = false;
+            }
+        }
+
         if (!last) {
             this.columndef.append(", ");
         } else {
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.views;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.teiid.CommandContext;
+import org.teiid.adminapi.VDB;
+import org.teiid.jdbc.TeiidConnection;
+import org.teiid.metadata.FunctionMethod;
+import org.teiid.metadata.MetadataFactory;
+
+/**
+ * Hands out the values of a sequence from blocks of allocationSize values, so that only one call in
+ * allocationSize goes to the source sequence. A value v fetched from the source stands for the block
+ * (v - allocationSize, v], the same way the Hibernate "pooled" optimizer reads it, so both can draw from
+ * the same sequence as long as it increments by allocationSize.
+ */
+public class PooledSequence {
+    static final String FUNCTION_NAME = "teiid_spring_pooled_nextval";
+
+    private static final Map<VDB, Map<String, Range>> RANGES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    interface Source {
+        long fetch() throws SQLException;
+    }
+
+    static class Range {
+        private final int allocationSize;
+        private final long initialValue;
+        private long next;
+        private long hi;
+        private boolean fetched;
+
+        Range(int allocationSize, long initialValue) {
+            this.allocationSize = allocationSize;
+            this.initialValue = initialValue;
+        }
+
+        synchronized long next(Source source) throws SQLException {
+            if (!this.fetched || this.next > this.hi) {
+                long value = source.fetch();
+                if (this.fetched && value - this.hi < this.allocationSize) {
+                    throw new SQLException("The sequence returned " + value + " after " + this.hi
+                            + ", it must increment by the allocationSize " + this.allocationSize);
+                }
+                this.hi = value;
+                this.next = Math.max(value - this.allocationSize + 1, Math.min(this.initialValue, value));
+                this.fetched = true;
+            }
+            return this.next++;
+        }
+    }
+
+    static void addFunction(MetadataFactory mf) {
+        for (FunctionMethod fm : mf.getSchema().getFunctions().values()) {
+            if (fm.getName().equalsIgnoreCase(FUNCTION_NAME)) {
+                return;
+            }
+        }
+        try {
+            FunctionMethod fm = MetadataFactory.createFunctionFromMethod(FUNCTION_NAME, PooledSequence.class
+                    .getMethod("nextval", CommandContext.class, String.class, int.class, long.class));
+            fm.setNullOnNull(true);
+            fm.setDeterminism(FunctionMethod.Determinism.NONDETERMINISTIC);
+            mf.addFunction(fm);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param context command context
+     * @param function the function that fetches the next value from the source sequence
+     * @param allocationSize the increment of the source sequence
+     * @param initialValue the first value of the source sequence
+     * @return the next value of the sequence
+     */
+    public static long nextval(CommandContext context, String function, int allocationSize, long initialValue)
+            throws SQLException {
+        Map<String, Range> ranges = RANGES.computeIfAbsent(context.getVdb(), k -> new ConcurrentHashMap<>());
+        Range range = ranges.computeIfAbsent(function.toLowerCase(),
+                k -> new Range(Math.max(1, allocationSize), initialValue));
+        return range.next(() -> fetch(context, function));
+    }
+
+    private static long fetch(CommandContext context, String function) throws SQLException {
+        try (TeiidConnection c = context.getConnection();
+                Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery("SELECT " + function + "()")) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                throw new SQLException(function + " did not return a value");
+            }
+            return rs.getLong(1);
+        }
+    }
+}
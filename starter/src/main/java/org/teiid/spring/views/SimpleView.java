@@ -45,6 +45,7 @@ public class SimpleView extends ViewBuilder<SelectQuery> {
         String select = annotation.value();
         validateOrderingOfColumns(select, view, entityClazz);
         view.setSelectTransformation(annotation.value());
+        addCacheHint(view, annotation.cacheTtl());
 
         InsertQuery insertAnnotation = entityClazz.getAnnotation(InsertQuery.class);
         if (insertAnnotation != null) {
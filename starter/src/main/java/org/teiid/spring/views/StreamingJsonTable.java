@@ -0,0 +1,279 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.views;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import org.teiid.CommandContext;
+import org.teiid.core.TeiidRuntimeException;
+import org.teiid.metadata.FunctionMethod;
+import org.teiid.metadata.MetadataFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Produces the rows of a {@link org.teiid.spring.annotations.JsonTable} view directly from the JSON stream, used
+ * through OBJECTTABLE instead of converting the whole document to XML with JSONTOXML and evaluating XMLTABLE on it.
+ * Only one row is held in memory at a time.
+ *
+ * The paths are the same "/" separated names that the XMLTABLE based view uses; arrays met on the way to the rows are
+ * flattened, like JSONTOXML does with them. A column path that finds more than one value is an error, as it is for
+ * XMLTABLE.
+ */
+public class StreamingJsonTable {
+    static final String FUNCTION_NAME = "teiid_spring_jsonrows";
+    private static final Pattern SIMPLE_PATH = Pattern
+            .compile("[\\w$\\-]+(\\.[\\w$\\-]+)*(/[\\w$\\-]+(\\.[\\w$\\-]+)*)*");
+    private static final JsonFactory FACTORY = new ObjectMapper().getFactory();
+
+    /**
+     * @return true if the path can be evaluated by the streaming parser, i.e. it only navigates down by names
+     */
+    static boolean isSimplePath(String path) {
+        return path.isEmpty() || SIMPLE_PATH.matcher(path).matches();
+    }
+
+    static void addFunction(MetadataFactory mf) {
+        for (FunctionMethod fm : mf.getSchema().getFunctions().values()) {
+            if (fm.getName().equalsIgnoreCase(FUNCTION_NAME)) {
+                return;
+            }
+        }
+        try {
+            FunctionMethod fm = MetadataFactory.createFunctionFromMethod(FUNCTION_NAME,
+                    StreamingJsonTable.class.getMethod("jsonRows", CommandContext.class, Blob.class, String.class,
+                            String.class, boolean.class));
+            fm.setNullOnNull(true);
+            fm.setDeterminism(FunctionMethod.Determinism.NONDETERMINISTIC);
+            mf.addFunction(fm);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param context the context of the query, whose end closes the rows left unread, may be null
+     * @param json the document
+     * @param rowPath "/" separated path of the row objects
+     * @param columnPaths comma separated, "/" separated paths of the column values relative to a row
+     * @param rootIsArray true if the document is expected to be an array
+     * @return iterator of the rows, each row is the list of the column values as text followed by the row number
+     */
+    public static Object jsonRows(CommandContext context, Blob json, String rowPath, String columnPaths,
+            boolean rootIsArray) throws SQLException {
+        String[][] columns;
+        if (columnPaths.isEmpty()) {
+            columns = new String[0][];
+        } else {
+            String[] paths = columnPaths.split(",");
+            columns = new String[paths.length][];
+            for (int i = 0; i < paths.length; i++) {
+                columns[i] = split(paths[i]);
+            }
+        }
+        try {
+            RowIterator rows = new RowIterator(json.getBinaryStream(), split(rowPath), columns, rootIsArray);
+            if (context != null) {
+                // OBJECTTABLE does not close the iterator when the query stops early
+                context.addListener(c -> rows.close());
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    static String trim(String path) {
+        String p = path;
+        while (p.startsWith("/")) {
+            p = p.substring(1);
+        }
+        while (p.endsWith("/")) {
+            p = p.substring(0, p.length() - 1);
+        }
+        return p;
+    }
+
+    private static String[] split(String path) {
+        String p = trim(path);
+        return p.isEmpty() ? new String[0] : p.split("/");
+    }
+
+    private static final class Frame {
+        final boolean array;
+        final int matched;
+
+        Frame(boolean array, int matched) {
+            this.array = array;
+            this.matched = matched;
+        }
+    }
+
+    static final class RowIterator implements Iterator<List<Object>>, Closeable {
+        private final InputStream in;
+        private final JsonParser parser;
+        private final String[] rowPath;
+        private final String[][] columns;
+        private final boolean rootIsArray;
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private List<Object> next;
+        private int rowNumber;
+        private boolean done;
+
+        RowIterator(InputStream in, String[] rowPath, String[][] columns, boolean rootIsArray) throws IOException {
+            this.in = in;
+            this.parser = FACTORY.createParser(in);
+            this.rowPath = rowPath;
+            this.columns = columns;
+            this.rootIsArray = rootIsArray;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next == null && !this.done) {
+                try {
+                    this.next = fetch();
+                } catch (IOException e) {
+                    close();
+                    throw new TeiidRuntimeException(e);
+                } catch (RuntimeException e) {
+                    close();
+                    throw e;
+                }
+                if (this.next == null) {
+                    this.done = true;
+                    close();
+                }
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public List<Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<Object> result = this.next;
+            this.next = null;
+            return result;
+        }
+
+        /**
+         * Releases the parser and the stream of the document, the remaining rows are not read
+         */
+        @Override
+        public void close() {
+            this.done = true;
+            this.next = null;
+            try (InputStream stream = this.in) {
+                this.parser.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        private List<Object> fetch() throws IOException {
+            JsonToken token;
+            while ((token = this.parser.nextToken()) != null) {
+                Frame top = this.stack.peek();
+                int matched = 0;
+                if (top == null && (token == JsonToken.START_ARRAY) != this.rootIsArray) {
+                    throw new TeiidRuntimeException(this.rootIsArray
+                            ? "The JSON document is not an array, but the view is defined with rootIsArray"
+                            : "The JSON document is an array, the view needs to be defined with rootIsArray");
+                }
+                if (top != null) {
+                    if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT) {
+                        this.stack.pop();
+                        continue;
+                    }
+                    matched = top.matched;
+                    if (!top.array) {
+                        // field of an object on the way to the rows
+                        String name = this.parser.getCurrentName();
+                        token = this.parser.nextToken();
+                        if (!name.equals(this.rowPath[matched])) {
+                            this.parser.skipChildren();
+                            continue;
+                        }
+                        matched++;
+                    }
+                }
+
+                if (token == JsonToken.START_ARRAY) {
+                    // array items are at the same level as the array itself
+                    this.stack.push(new Frame(true, matched));
+                } else if (matched == this.rowPath.length) {
+                    return toRow(this.parser.readValueAsTree());
+                } else if (token == JsonToken.START_OBJECT) {
+                    this.stack.push(new Frame(false, matched));
+                }
+            }
+            return null;
+        }
+
+        private List<Object> toRow(JsonNode row) {
+            List<Object> values = new ArrayList<>(this.columns.length + 1);
+            for (String[] path : this.columns) {
+                values.add(value(row, path));
+            }
+            values.add(++this.rowNumber);
+            return values;
+        }
+
+        static String value(JsonNode row, String[] path) {
+            JsonNode node = row;
+            for (String name : path) {
+                node = single(node, path);
+                node = node == null ? null : node.get(name);
+            }
+            node = single(node, path);
+            if (node == null || node.isNull()) {
+                return null;
+            }
+            return node.isValueNode() ? node.asText() : node.toString();
+        }
+
+        /**
+         * the columns are not of array types, so like XMLTABLE an array is only accepted with at most one value
+         */
+        private static JsonNode single(JsonNode node, String[] path) {
+            while (node != null && node.isArray()) {
+                if (node.size() > 1) {
+                    throw new TeiidRuntimeException("The column path " + String.join("/", path)
+                            + " matches more than one value");
+                }
+                node = node.size() == 0 ? null : node.get(0);
+            }
+            return node;
+        }
+    }
+}
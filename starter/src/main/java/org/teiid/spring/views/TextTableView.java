@@ -109,6 +109,7 @@ public class TextTableView extends ViewBuilder<TextTable> {
 
         logger.debug("Generated View's Transformation: " + sb.toString());
         view.setSelectTransformation(sb.toString());
+        addCacheHint(view, annotation.cacheTtl());
     }
 
     @Override
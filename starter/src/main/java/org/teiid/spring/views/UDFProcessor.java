@@ -177,6 +177,17 @@ public class UDFProcessor {
                     viewMF.addProcedureParameter("return", returnType, ProcedureParameter.Type.ReturnValue, viewP);
                     viewP.setQueryPlan("" + "BEGIN\n" + "DECLARE " + returnType + " VARIABLES.X = SELECT " + seqNames[0]
                             + "." + seqNames[1] + "();\n" + "RETURN X;\n" + "END");
+
+                    // same sequence, but only every allocationSize-th call goes to the source
+                    PooledSequence.addFunction(viewMF);
+                    Procedure pooledP = viewMF.addProcedure(sg.sequenceName() + "_pooled_nextval");
+                    pooledP.setVirtual(true);
+                    pooledP.setFunction(true);
+                    pooledP.setProperty("teiid_rel:deterministic", "false");
+                    viewMF.addProcedureParameter("return", returnType, ProcedureParameter.Type.ReturnValue, pooledP);
+                    pooledP.setQueryPlan("" + "BEGIN\n" + "RETURN CAST(" + PooledSequence.FUNCTION_NAME + "('"
+                            + viewP.getName() + "', " + sg.allocationSize() + ", " + sg.initialValue() + ") AS "
+                            + returnType + ");\n" + "END");
                 } else {
                     throw new IllegalArgumentException("The sequence generation on " + clazz.getName()
                     + " does not have sequence defined. Define @SequenceGenerator "
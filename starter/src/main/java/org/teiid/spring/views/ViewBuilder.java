@@ -97,6 +97,23 @@ public class ViewBuilder<T> {
     void onFinish(Table view, MetadataFactory mf, Class<?> entityClazz, T annotation, ApplicationContext context) {
     }
 
+    /**
+     * Turns the view into an internally materialized view, the cache hint on its transformation sets the time to
+     * live of the materialized rows
+     * @param ttl time to live in milliseconds, 0 for no expiry, negative to not cache
+     */
+    static void addCacheHint(Table view, long ttl) {
+        String select = view.getSelectTransformation();
+        if (ttl < 0 || select == null || view.getMaterializedTable() != null) {
+            return;
+        }
+        view.setMaterialized(true);
+        if (!select.trim().startsWith("/*+")) {
+            String hint = ttl == 0 ? "/*+ cache */ " : "/*+ cache(ttl:" + ttl + ") */ ";
+            view.setSelectTransformation(hint + select);
+        }
+    }
+
     void onColumnCreate(Table view, Column column, MetadataFactory mf, Field field, String parent, boolean last,
             T annotation) {
     }
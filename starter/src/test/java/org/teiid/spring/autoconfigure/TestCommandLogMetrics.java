@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.teiid.logging.CommandLogMessage;
+import org.teiid.logging.CommandLogMessage.Event;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.Logger;
+import org.teiid.logging.MessageLevel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TestCommandLogMetrics {
+
+    @Test
+    public void testQueries() throws Exception {
+        Map<String, String> views = CommandLogMetrics
+                .viewNames(Arrays.asList("teiid.customer", "teiid.address", "other.address"));
+        CommandLogMetrics metrics = new CommandLogMetrics(() -> views);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+        try {
+            metrics.record(new CommandLogMessage(0, "1", null, "s", null, "user", "spring", "1.0.0",
+                    "SELECT c.name FROM customer c, teiid.address a WHERE c.id = a.id", null));
+            metrics.record(new CommandLogMessage(0, "1", 1, null, "mydb", "h2", "s", "user", "SELECT ...", null));
+            assertEquals(1, registry.get("teiid.requests.active").gauge().value(), 0);
+            assertEquals(1, registry.get("teiid.source.requests.active").gauge().value(), 0);
+
+            metrics.record(new CommandLogMessage(0, "1", 1, null, "mydb", "h2", "s", "user", null, Event.ERROR, null, null));
+            metrics.record(new CommandLogMessage(0, "1", null, "s", "user", "spring", "1.0.0", null, Event.ERROR, null));
+            assertEquals(0, registry.get("teiid.requests.active").gauge().value(), 0);
+
+            assertEquals(1, registry.get("teiid.query").tag("outcome", "error").timer().count());
+            assertEquals(1, registry.get("teiid.view.query").tag("view", "teiid.customer").timer().count());
+            assertEquals(1, registry.get("teiid.view.query").tag("view", "teiid.address").timer().count());
+            assertEquals(2, registry.get("teiid.view.query").timers().size());
+            assertEquals(1, registry.get("teiid.source.query").tags("model", "mydb", "outcome", "error").timer()
+                    .count());
+            assertEquals(1, registry.get("teiid.source.errors").tag("translator", "h2").counter().count(), 0);
+        } finally {
+            metrics.destroy();
+        }
+    }
+
+    @Test
+    public void testDelegate() {
+        Logger original = Mockito.mock(Logger.class);
+        Logger previous = LogManager.setLogListener(original);
+        try {
+            CommandLogMetrics metrics = new CommandLogMetrics(() -> Collections.emptyMap());
+            metrics.bindTo(new SimpleMeterRegistry());
+            assertSame(metrics, LogManager.setLogListener(metrics));
+            assertTrue(LogManager.isMessageToBeRecorded(LogConstants.CTX_COMMANDLOGGING, MessageLevel.DETAIL));
+            assertFalse(LogManager.isMessageToBeRecorded(LogConstants.CTX_COMMANDLOGGING, MessageLevel.TRACE));
+            assertFalse(LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL));
+            metrics.destroy();
+            assertSame(original, LogManager.setLogListener(previous));
+        } finally {
+            LogManager.setLogListener(previous);
+        }
+    }
+
+    @Test
+    public void testViewNames() {
+        Map<String, String> views = CommandLogMetrics
+                .viewNames(Arrays.asList("teiid.customer", "teiid.address", "other.address"));
+        assertEquals("teiid.customer", views.get("customer"));
+        assertEquals("other.address", views.get("other.address"));
+        assertFalse(views.containsKey("address"));
+    }
+}
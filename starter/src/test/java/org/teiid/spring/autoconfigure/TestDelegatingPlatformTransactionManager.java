@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TestDelegatingPlatformTransactionManager {
+    private DelegatingPlatformTransactionManager tm;
+    private PlatformTransactionManagerAdapter adapter;
+    private DataSource ds1;
+    private DataSource ds2;
+    private Connection c1;
+    private Connection c2;
+
+    @Before
+    public void setup() throws SQLException {
+        this.ds1 = mock(DataSource.class);
+        this.ds2 = mock(DataSource.class);
+        this.c1 = mock(Connection.class);
+        this.c2 = mock(Connection.class);
+        when(this.ds1.getConnection()).thenReturn(this.c1);
+        when(this.ds2.getConnection()).thenReturn(this.c2);
+        when(this.c1.getAutoCommit()).thenReturn(true);
+        when(this.c2.getAutoCommit()).thenReturn(true);
+
+        this.tm = new DelegatingPlatformTransactionManager();
+        this.adapter = new PlatformTransactionManagerAdapter();
+        this.adapter.addDataSource(this.ds1);
+        this.adapter.addDataSource(this.ds2);
+        this.adapter.setPlatformTransactionManager(this.tm);
+    }
+
+    @Test
+    public void testOnlyUsedSourceIsCommitted() throws SQLException {
+        TransactionStatus status = this.tm.getTransaction(new DefaultTransactionDefinition());
+        verify(this.ds1, never()).getConnection();
+        verify(this.ds2, never()).getConnection();
+
+        this.adapter.enlist(this.ds2);
+        assertTrue(TransactionSynchronizationManager.hasResource(this.ds2));
+        // a second use does not start another transaction
+        this.adapter.enlist(this.ds2);
+
+        this.tm.commit(status);
+        verify(this.c2).setAutoCommit(false);
+        verify(this.c2).commit();
+        verify(this.c2).close();
+        verify(this.ds1, never()).getConnection();
+        assertFalse(TransactionSynchronizationManager.hasResource(this.ds2));
+        assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+    }
+
+    @Test
+    public void testRollbackEnlisted() throws SQLException {
+        TransactionStatus status = this.tm.getTransaction(new DefaultTransactionDefinition());
+        this.adapter.enlist(this.ds1);
+        this.adapter.enlist(this.ds2);
+        this.tm.rollback(status);
+        verify(this.c1).rollback();
+        verify(this.c2).rollback();
+    }
+
+    @Test
+    public void testNoTransaction() throws SQLException {
+        this.adapter.enlist(this.ds1);
+        verify(this.ds1, never()).getConnection();
+        assertFalse(TransactionSynchronizationManager.hasResource(this.ds1));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.unit.DataSize;
+import org.teiid.runtime.EmbeddedConfiguration;
+
+public class TestEngineConfigurer {
+    private static final long GB = DataSize.ofGigabytes(1).toBytes();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TeiidProperties properties() {
+        TeiidProperties properties = new TeiidProperties();
+        properties.getBuffer().setDirectory(new File(this.folder.getRoot(), "buffer").getAbsolutePath());
+        return properties;
+    }
+
+    private static EmbeddedConfiguration configure(TeiidProperties properties, long memoryLimit, long maxHeap) {
+        EmbeddedConfiguration config = new EmbeddedConfiguration();
+        new EngineConfigurer(properties.getBuffer(), properties.getEngine(), memoryLimit, maxHeap).configure(config);
+        return config;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDefaults() {
+        TeiidProperties properties = properties();
+        properties.getBuffer().setOffHeap(true);
+        EmbeddedConfiguration config = configure(properties, 2 * GB, GB);
+        assertEquals(512, config.getMemoryBufferSpace());
+        assertTrue(config.isMemoryBufferOffHeap());
+        File dir = new File(config.getBufferDirectory());
+        assertTrue(dir.isDirectory());
+        assertTrue(config.getMaxBufferSpace() > 0);
+        assertTrue(config.getMaxBufferSpace() <= dir.getUsableSpace() / DataSize.ofMegabytes(1).toBytes());
+        assertTrue(config.getMaxBufferSpace() <= EngineConfigurer.TEIID_MAX_STORAGE_SIZE.toMegabytes());
+        assertEquals(-1, config.getMaxReserveKb());
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testSettings() {
+        TeiidProperties properties = properties();
+        properties.getBuffer().setMaxStorageSize(DataSize.ofMegabytes(100));
+        properties.getBuffer().setMaxFileSize(DataSize.ofMegabytes(10));
+        properties.getBuffer().setMaxReserveSize(DataSize.ofMegabytes(200));
+        properties.getBuffer().setMaxProcessingSize(DataSize.ofMegabytes(20));
+        properties.getBuffer().setProcessorBatchSize(512);
+        properties.getEngine().setMaxThreads(8);
+        EmbeddedConfiguration config = configure(properties, Long.MAX_VALUE, GB);
+        assertEquals(100, config.getMaxBufferSpace());
+        assertEquals(10, config.getMaxFileSize());
+        assertEquals(200 * 1024, config.getMaxReserveKb());
+        assertEquals(20 * 1024, config.getMaxProcessingKb());
+        assertEquals(512, config.getProcessorBatchSize());
+        assertEquals(8, config.getMaxThreads());
+        // follows the lower thread count
+        assertEquals(8, config.getMaxActivePlans());
+        assertEquals(-1, config.getMemoryBufferSpace());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReserveMoreThanHeap() {
+        TeiidProperties properties = properties();
+        properties.getBuffer().setMaxReserveSize(DataSize.ofGigabytes(2));
+        configure(properties, Long.MAX_VALUE, GB);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testProcessingMoreThanReserve() {
+        TeiidProperties properties = properties();
+        properties.getBuffer().setMaxReserveSize(DataSize.ofMegabytes(100));
+        properties.getBuffer().setMaxProcessingSize(DataSize.ofMegabytes(200));
+        configure(properties, Long.MAX_VALUE, GB);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOffHeapOverContainerLimit() {
+        TeiidProperties properties = properties();
+        properties.getBuffer().setOffHeap(true);
+        properties.getBuffer().setMemorySize(DataSize.ofGigabytes(1));
+        configure(properties, GB + GB / 2, GB);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testActivePlansMoreThanThreads() {
+        TeiidProperties properties = properties();
+        properties.getEngine().setMaxThreads(4);
+        properties.getEngine().setMaxActivePlans(10);
+        configure(properties, Long.MAX_VALUE, GB);
+    }
+
+    @Test
+    public void testReadLimit() throws Exception {
+        File file = this.folder.newFile("memory.max");
+        Files.write(file.toPath(), "max\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(Long.MAX_VALUE, EngineConfigurer.readLimit(file.toPath()));
+        Files.write(file.toPath(), "9223372036854771712\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(Long.MAX_VALUE, EngineConfigurer.readLimit(file.toPath()));
+        Files.write(file.toPath(), "1073741824\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(GB, EngineConfigurer.readLimit(file.toPath()));
+        assertEquals(Long.MAX_VALUE, EngineConfigurer.readLimit(new File(this.folder.getRoot(), "none").toPath()));
+    }
+}
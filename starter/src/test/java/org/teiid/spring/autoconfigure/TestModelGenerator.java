@@ -16,10 +16,16 @@
 package org.teiid.spring.autoconfigure;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.teiid.spring.autoconfigure.TeiidConstants.VDBNAME;
 import static org.teiid.spring.autoconfigure.TeiidConstants.VDBVERSION;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +39,8 @@ import org.teiid.metadata.MetadataFactory;
 import org.teiid.metadata.Table;
 import org.teiid.query.metadata.DDLStringVisitor;
 import org.teiid.query.metadata.SystemMetadata;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.sql.lang.Insert;
 
 public class TestModelGenerator {
     private TeiidServer server;
@@ -187,4 +195,149 @@ public class TestModelGenerator {
         Table table = mf.getSchema().getTable("Person");
         assertEquals(expected, table.getDeletePlan().replace("\t", "    "));
     }
+
+    @Test
+    public void testRedirectionLayerSetBasedDeletePlan() throws Exception {
+        RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(this.context, "redirected");
+        mg.buildRedirectionLayer(buildSourceTableWithPK().getAttachment(MetadataFactory.class), "base");
+        String expected = "UPSERT INTO redirected.address_REDIRECTED (id, ROW__STATUS) WITH REDIRECTED__ROWS AS "
+                + "/*+ materialize */ (SELECT id FROM teiid.address WHERE pid > 1) SELECT id, 3 FROM REDIRECTED__ROWS";
+        String plan = mg.buildSetBasedPlan(
+                QueryParser.getQueryParser().parseCommand("DELETE FROM teiid.address WHERE pid > 1"));
+        assertEquals(expected, plan);
+        Insert upsert = (Insert) QueryParser.getQueryParser().parseCommand(plan);
+        assertTrue(upsert.isUpsert());
+
+        // the rows other tables refer to are checked by the trigger
+        assertNull(mg.buildSetBasedPlan(
+                QueryParser.getQueryParser().parseCommand("DELETE FROM teiid.Person WHERE dob < {d'2000-01-01'}")));
+    }
+
+    @Test
+    public void testRedirectionLayerSetBasedUpdatePlan() throws Exception {
+        RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(this.context, "redirected");
+        mg.buildRedirectionLayer(buildSourceTableWithPK().getAttachment(MetadataFactory.class), "base");
+        String expected = "UPSERT INTO redirected.Person_REDIRECTED (id, name, dob, ROW__STATUS) WITH REDIRECTED__ROWS "
+                + "AS /*+ materialize */ (SELECT ? AS name, id AS id, dob AS dob FROM teiid.Person WHERE name LIKE ?) "
+                + "SELECT id, name, dob, 2 FROM REDIRECTED__ROWS";
+        String plan = mg.buildSetBasedPlan(
+                QueryParser.getQueryParser().parseCommand("UPDATE Person SET name = ? WHERE name LIKE ?"));
+        assertEquals(expected, plan);
+        Insert upsert = (Insert) QueryParser.getQueryParser().parseCommand(plan);
+        assertTrue(upsert.isUpsert());
+
+        // a changing key is checked by the trigger
+        assertNull(mg.buildSetBasedPlan(
+                QueryParser.getQueryParser().parseCommand("UPDATE Person SET id = id + 1 WHERE name LIKE ?")));
+    }
+
+    @Test
+    public void testRedirectionLayerSetBasedInsertPlan() throws Exception {
+        RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(this.context, "redirected");
+        mg.buildRedirectionLayer(buildSourceTableWithPK().getAttachment(MetadataFactory.class), "base");
+        String expected = "UPSERT INTO redirected.Person_REDIRECTED (id, name, ROW__STATUS) WITH INSERTED__ROWS "
+                + "(id, name) AS (SELECT (id + 1), name FROM teiid.Person), REDIRECTED__ROWS AS /*+ materialize */ "
+                + "(SELECT n.id, n.name FROM INSERTED__ROWS AS n WHERE NOT EXISTS (SELECT 1 FROM teiid.Person AS o "
+                + "WHERE o.id = n.id)) SELECT id, name, 1 FROM REDIRECTED__ROWS";
+        String plan = mg.buildSetBasedPlan(QueryParser.getQueryParser()
+                .parseCommand("INSERT INTO teiid.Person (id, name) SELECT id + 1, name FROM teiid.Person"));
+        assertEquals(expected, plan);
+        Insert upsert = (Insert) QueryParser.getQueryParser().parseCommand(plan);
+        assertTrue(upsert.isUpsert());
+
+        // the key is needed for the duplicate check
+        assertNull(mg.buildSetBasedPlan(QueryParser.getQueryParser()
+                .parseCommand("INSERT INTO teiid.Person (name) SELECT name FROM teiid.Person")));
+    }
+
+    @Test
+    public void testRedirectionLayerSetBasedSingleRow() throws Exception {
+        RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(this.context, "redirected");
+        mg.buildRedirectionLayer(buildSourceTableWithPK().getAttachment(MetadataFactory.class), "base");
+        QueryParser parser = QueryParser.getQueryParser();
+        assertNull(mg.buildSetBasedPlan(parser.parseCommand("UPDATE teiid.Person SET name = ? WHERE id = ?")));
+        assertNull(mg.buildSetBasedPlan(parser.parseCommand("DELETE FROM teiid.address WHERE id = 1")));
+        assertNull(mg.buildSetBasedPlan(parser.parseCommand("INSERT INTO teiid.Person (id) VALUES (1)")));
+        assertNull(mg.buildSetBasedPlan(parser.parseCommand("DELETE FROM other.address WHERE id > 1")));
+    }
+
+    @Test
+    public void testRedirectionPreParser() throws Exception {
+        RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(this.context, "redirected");
+        mg.buildRedirectionLayer(buildSourceTableWithPK().getAttachment(MetadataFactory.class), "base");
+        RedirectionPreParser preParser = new RedirectionPreParser(mg);
+        assertTrue(preParser.preParse(" delete from \"teiid\".\"address\" where pid > 1", null)
+                .startsWith("UPSERT INTO redirected.address_REDIRECTED"));
+        String command = "DELETE FROM other.address WHERE pid > 1";
+        assertSame(command, preParser.preParse(command, null));
+        command = "SELECT * FROM teiid.address";
+        assertSame(command, preParser.preParse(command, null));
+    }
+
+    @Test
+    public void testRedirectionLayerCompactionNeedsWriteBack() {
+        Environment env = this.context.getEnvironment();
+        Mockito.stub(env.getProperty("spring.teiid.redirected.compaction.enabled")).toReturn("true");
+        RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(this.context, "redirected");
+        mg.buildRedirectionLayer(buildSourceTableWithPK().getAttachment(MetadataFactory.class), "base");
+        assertEquals(0, mg.getCompactionPlans().size());
+    }
+
+    @Test
+    public void testRedirectionLayerCompactionPlan() {
+        Environment env = this.context.getEnvironment();
+        Mockito.stub(env.getProperty("spring.teiid.redirected.compaction.enabled")).toReturn("true");
+        Mockito.stub(env.getProperty("spring.teiid.redirected.compaction.write-back")).toReturn("true");
+        RedirectionSchemaBuilder mg = new RedirectionSchemaBuilder(this.context, "redirected");
+        MetadataFactory source = buildSourceTableWithPK().getAttachment(MetadataFactory.class);
+        // a view of a single table can be written back, one with a join can not
+        Table person = source.getSchema().getTable("Person");
+        person.setSupportsUpdate(true);
+        person.setSelectTransformation("SELECT id, name, dob FROM base.Person");
+        Table address = source.getSchema().getTable("address");
+        address.setSupportsUpdate(true);
+        address.setSelectTransformation("SELECT a.id, a.street, a.pid FROM base.address AS a, base.Person AS p "
+                + "WHERE a.pid = p.id");
+        ModelMetaData model = mg.buildRedirectionLayer(source, "base");
+        List<String> expected = Arrays.asList("SELECT m.id, m.name, m.dob, m.ROW__STATUS INTO #COMPACTED_ROWS "
+                + "FROM redirected.Person_REDIRECTED AS m LIMIT 1000",
+                "BEGIN\n"
+                + "    LOOP ON (SELECT id, name, dob, ROW__STATUS FROM #COMPACTED_ROWS) AS r\n"
+                + "    BEGIN\n"
+                + "        IF (r.ROW__STATUS = 3)\n"
+                + "        BEGIN\n"
+                + "            DELETE FROM internal.Person WHERE id = r.id;\n"
+                + "        END\n"
+                + "        ELSE\n"
+                + "        BEGIN\n"
+                + "            IF (EXISTS (SELECT 1 FROM internal.Person WHERE id = r.id))\n"
+                + "            BEGIN\n"
+                + "                UPDATE internal.Person SET name = r.name, dob = r.dob WHERE id = r.id;\n"
+                + "            END\n"
+                + "            ELSE\n"
+                + "            BEGIN\n"
+                + "                INSERT INTO internal.Person (id, name, dob) VALUES (r.id, r.name, r.dob);\n"
+                + "            END\n"
+                + "        END\n"
+                + "    END\n"
+                + "END",
+                "BEGIN\n"
+                + "    DECLARE integer VARIABLES.COMPACTED = 0;\n"
+                + "    LOOP ON (SELECT id, name, dob, ROW__STATUS FROM #COMPACTED_ROWS) AS r\n"
+                + "    BEGIN\n"
+                + "        DELETE FROM redirected.Person_REDIRECTED WHERE id = r.id AND ROW__STATUS = r.ROW__STATUS "
+                + "AND (name = r.name OR (name IS NULL AND r.name IS NULL)) AND (dob = r.dob OR (dob IS NULL AND r.dob IS NULL));\n"
+                + "        VARIABLES.COMPACTED = VARIABLES.COMPACTED + VARIABLES.ROWCOUNT;\n"
+                + "    END\n"
+                + "    SELECT VARIABLES.COMPACTED, (SELECT COUNT(*) FROM redirected.Person_REDIRECTED);\n"
+                + "END",
+                "DROP TABLE #COMPACTED_ROWS");
+
+        // nothing is added to the exposed schema, any user could call it
+        assertTrue(model.getAttachment(MetadataFactory.class).getSchema().getProcedures().isEmpty());
+        assertEquals(Collections.singleton("Person"), mg.getCompactionPlans().keySet());
+        List<String> plan = new ArrayList<>();
+        mg.getCompactionPlans().get("Person").forEach(s -> plan.add(s.replace("\t", "    ")));
+        assertEquals(expected, plan);
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.teiid.spring.autoconfigure.TeiidConstants.VDBNAME;
+import static org.teiid.spring.autoconfigure.TeiidConstants.VDBVERSION;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.teiid.adminapi.Model;
+import org.teiid.adminapi.impl.ModelMetaData;
+import org.teiid.metadata.MetadataFactory;
+import org.teiid.metadata.Table;
+import org.teiid.query.metadata.SystemMetadata;
+import org.teiid.runtime.EmbeddedConfiguration;
+import org.teiid.runtime.EmbeddedServer;
+
+/**
+ * Runs the set based plans against a VDB where the source and the redirected tables are global temporary tables.
+ * The triggers of the views are not run, they need a transaction manager, unlike the set based plans and the
+ * compaction.
+ */
+public class TestRedirectionExecution {
+    private EmbeddedServer server;
+    private RedirectionPreParser preParser;
+    private Connection connection;
+    private Map<String, List<String>> compactionPlans;
+
+    @Before
+    public void setup() throws Exception {
+        ApplicationContext context = Mockito.mock(ApplicationContext.class);
+        Environment env = Mockito.mock(Environment.class);
+        Mockito.stub(context.getEnvironment()).toReturn(env);
+        Mockito.stub(env.getProperty("spring.teiid.redirected.compaction.enabled")).toReturn("true");
+        Mockito.stub(env.getProperty("spring.teiid.redirected.compaction.write-back")).toReturn("true");
+        Mockito.stub(env.getProperty("spring.teiid.redirected.compaction.batch-size", Integer.class)).toReturn(2);
+
+        ModelMetaData model = new ModelMetaData();
+        // the entity views are renamed to internal when redirected, see TeiidServer
+        model.setName("internal");
+        model.setModelType(Model.Type.VIRTUAL);
+        MetadataFactory source = new MetadataFactory(VDBNAME, VDBVERSION,
+                SystemMetadata.getInstance().getRuntimeTypeMap(), model);
+        Table t = source.addTable("Person");
+        source.addColumn("id", "integer", t);
+        source.addColumn("name", "string", t);
+        source.addPrimaryKey("PK", Arrays.asList("id"), t);
+        t.setSupportsUpdate(true);
+        t.setSelectTransformation("SELECT id, name FROM source.Person");
+        Table addr = source.addTable("address");
+        source.addColumn("id", "integer", addr);
+        source.addColumn("street", "string", addr);
+        source.addColumn("pid", "integer", addr);
+        source.addPrimaryKey("PK", Arrays.asList("id"), addr);
+        source.addForeignKey("FK", Arrays.asList("pid"), Arrays.asList("id"), "Person", addr);
+
+        RedirectionSchemaBuilder builder = new RedirectionSchemaBuilder(context, "redirected");
+        ModelMetaData exposed = builder.buildRedirectionLayer(source, TeiidConstants.EXPOSED_VIEW);
+        this.preParser = new RedirectionPreParser(builder);
+        this.compactionPlans = builder.getCompactionPlans();
+
+        this.server = new EmbeddedServer();
+        this.server.start(new EmbeddedConfiguration());
+        this.server.deployVDB("redirection",
+                temporaryTables("internal",
+                        "Person (id integer PRIMARY KEY, name string)",
+                        "address (id integer PRIMARY KEY, street string, pid integer)"),
+                temporaryTables("redirected",
+                        "Person_REDIRECTED (id integer PRIMARY KEY, name string, ROW__STATUS integer)",
+                        "address_REDIRECTED (id integer PRIMARY KEY, street string, pid integer, "
+                                + "ROW__STATUS integer)"),
+                exposed);
+        // the global temporary tables hold the rows of this connection
+        this.connection = this.server.getDriver().connect("jdbc:teiid:redirection;autoCommitTxn=OFF", null);
+        execute("INSERT INTO internal.Person (id, name) VALUES (1, 'a')");
+        execute("INSERT INTO internal.Person (id, name) VALUES (2, 'b')");
+        execute("INSERT INTO internal.Person (id, name) VALUES (3, 'c')");
+        execute("INSERT INTO internal.address (id, street, pid) VALUES (1, 'x', 1)");
+        execute("INSERT INTO internal.address (id, street, pid) VALUES (2, 'y', 2)");
+    }
+
+    private static ModelMetaData temporaryTables(String name, String... tables) {
+        ModelMetaData model = new ModelMetaData();
+        model.setName(name);
+        model.setModelType(Model.Type.VIRTUAL);
+        StringBuilder ddl = new StringBuilder();
+        for (String table : tables) {
+            ddl.append("CREATE GLOBAL TEMPORARY TABLE ").append(table).append(" OPTIONS (UPDATABLE true);\n");
+        }
+        model.addSourceMetadata("DDL", ddl.toString());
+        return model;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.connection != null) {
+            this.connection.close();
+        }
+        this.server.stop();
+    }
+
+    private int execute(String sql) throws SQLException {
+        try (Statement s = this.connection.createStatement()) {
+            return s.executeUpdate(sql);
+        }
+    }
+
+    private int executeSetBased(String sql) throws SQLException {
+        String plan = this.preParser.preParse(sql, null);
+        assertNotEquals(sql, plan);
+        return execute(plan);
+    }
+
+    private List<String> select(String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement s = this.connection.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                    if (i > 1) {
+                        row.append(" ");
+                    }
+                    row.append(rs.getString(i));
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        assertEquals(2, executeSetBased("UPDATE teiid.Person SET name = 'z' WHERE id > 1"));
+        assertEquals(Arrays.asList("1 a", "2 z", "3 z"), select("SELECT id, name FROM teiid.Person ORDER BY id"));
+        assertEquals(Arrays.asList("2 z 2", "3 z 2"),
+                select("SELECT id, name, ROW__STATUS FROM redirected.Person_REDIRECTED ORDER BY id"));
+        // the source is only read
+        assertEquals(Arrays.asList("1 a", "2 b", "3 c"), select("SELECT id, name FROM internal.Person ORDER BY id"));
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        assertEquals(1, executeSetBased("DELETE FROM teiid.address WHERE pid > 1"));
+        assertEquals(Arrays.asList("1 x 1"), select("SELECT id, street, pid FROM teiid.address ORDER BY id"));
+        assertEquals(Arrays.asList("2 3"), select("SELECT id, ROW__STATUS FROM redirected.address_REDIRECTED"));
+        assertEquals(0, executeSetBased("DELETE FROM teiid.address WHERE pid > 1"));
+    }
+
+    @Test
+    public void testInsertSkipsUsedKeys() throws Exception {
+        execute("INSERT INTO redirected.Person_REDIRECTED (id, ROW__STATUS) VALUES (3, 3)");
+        // 2 is used by the source, 3 was deleted and can be used again
+        assertEquals(1, executeSetBased("INSERT INTO teiid.Person (id, name) "
+                + "SELECT id + 1, concat(name, '1') FROM teiid.Person"));
+        assertEquals(Arrays.asList("1 a", "2 b", "3 b1"), select("SELECT id, name FROM teiid.Person ORDER BY id"));
+
+        // without columns all the columns of the view are inserted
+        assertEquals(1, executeSetBased("INSERT INTO teiid.Person SELECT id + 1, name FROM teiid.Person"));
+        assertEquals(Arrays.asList("1 a", "2 b", "3 b1", "4 b1"),
+                select("SELECT id, name FROM teiid.Person ORDER BY id"));
+        assertEquals(Arrays.asList("3 b1 1", "4 b1 1"),
+                select("SELECT id, name, ROW__STATUS FROM redirected.Person_REDIRECTED ORDER BY id"));
+        assertEquals(Arrays.asList("1 a", "2 b", "3 c"), select("SELECT id, name FROM internal.Person ORDER BY id"));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        assertEquals(1, executeSetBased("UPDATE teiid.Person SET name = 'z' WHERE id > 1 AND id < 3"));
+        execute("INSERT INTO redirected.Person_REDIRECTED (id, ROW__STATUS) VALUES (3, 3)");
+        execute("INSERT INTO redirected.Person_REDIRECTED (id, name, ROW__STATUS) VALUES (4, 'd', 1)");
+
+        // the session of the connection holds the rows, it is kept open for the compactor
+        Connection shared = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(this.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.stub(ds.getConnection()).toReturn(shared);
+        RedirectionCompactor compactor = new RedirectionCompactor(ds, () -> this.compactionPlans, 2,
+                Duration.ZERO);
+        try {
+            compactor.compact();
+        } finally {
+            compactor.destroy();
+        }
+
+        assertEquals(0, compactor.getFailures());
+        assertEquals(3, compactor.getCompacted());
+        assertEquals(0, compactor.getRemaining());
+        assertEquals(Arrays.asList("1 a", "2 z", "4 d"), select("SELECT id, name FROM internal.Person ORDER BY id"));
+        assertEquals(Arrays.asList(), select("SELECT id FROM redirected.Person_REDIRECTED"));
+        assertEquals(Arrays.asList("1 a", "2 z", "4 d"), select("SELECT id, name FROM teiid.Person ORDER BY id"));
+    }
+}
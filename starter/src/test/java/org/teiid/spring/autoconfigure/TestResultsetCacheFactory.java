@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.ObjectInputFilter;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.teiid.cache.Cache;
+import org.teiid.adminapi.impl.SessionMetadata;
+import org.teiid.adminapi.impl.VDBMetaData;
+import org.teiid.cache.CacheFactory;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.dqp.internal.process.CachedResults;
+import org.teiid.dqp.internal.process.DQPWorkContext;
+import org.teiid.dqp.internal.process.SessionAwareCache;
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.parser.ParseInfo;
+import org.teiid.query.processor.ProcessorPlan;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.util.CommandContext;
+import org.teiid.services.BufferServiceImpl;
+
+public class TestResultsetCacheFactory {
+
+    @Test
+    public void testDelegate() {
+        CacheFactory delegate = Mockito.mock(CacheFactory.class);
+        Cache<Object, Object> preparedPlans = Mockito.mock(Cache.class);
+        Mockito.stub(delegate.get("preparedplan")).toReturn(preparedPlans);
+        ResultsetCacheFactory factory = new ResultsetCacheFactory(delegate, new TeiidProperties.ResultsetCache());
+        assertSame(preparedPlans, factory.get("preparedplan"));
+        assertSame(factory.get(ResultsetCacheFactory.RESULTSET), factory.get(ResultsetCacheFactory.RESULTSET));
+        factory.destroy();
+        Mockito.verify(delegate).destroy();
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        TeiidProperties.ResultsetCache config = new TeiidProperties.ResultsetCache();
+        config.setTtl(Duration.ofMillis(20));
+        Cache<String, String> cache = new ResultsetCacheFactory(Mockito.mock(CacheFactory.class), config)
+                .get(ResultsetCacheFactory.RESULTSET);
+        cache.put("default", "a", null);
+        cache.put("hint", "b", 60000L);
+        assertEquals("a", cache.get("default"));
+        Thread.sleep(100);
+        assertNull(cache.get("default"));
+        assertEquals("b", cache.get("hint"));
+        assertEquals("b", cache.remove("hint"));
+    }
+
+    @Test
+    public void testDisabled() {
+        TeiidProperties.ResultsetCache config = new TeiidProperties.ResultsetCache();
+        config.setEnabled(false);
+        Cache<String, String> cache = new ResultsetCacheFactory(Mockito.mock(CacheFactory.class), config)
+                .get(ResultsetCacheFactory.RESULTSET);
+        cache.put("key", "a", null);
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testLocalOnly() {
+        ResultsetCacheFactory factory = new ResultsetCacheFactory(Mockito.mock(CacheFactory.class),
+                new TeiidProperties.ResultsetCache());
+        assertNull(factory.get(ResultsetCacheFactory.RESULTSET_REPL));
+    }
+
+    @Test
+    public void testSharedStore() throws Exception {
+        DefaultCacheManager manager = new DefaultCacheManager();
+        try {
+            manager.defineConfiguration("results", new ConfigurationBuilder().build());
+            ResultsetStore store = new InfinispanResultsetStore(manager.getCache("results"));
+
+            // two instances of the application, each with its own engine buffers
+            BufferServiceImpl buffers1 = buffers();
+            SessionAwareCache<CachedResults> cache1 = cache(store, buffers1);
+            BufferServiceImpl buffers2 = buffers();
+            SessionAwareCache<CachedResults> cache2 = cache(store, buffers2);
+
+            TupleBuffer rows = buffers1.getBufferManager().createTupleBuffer(
+                    Arrays.asList(new ElementSymbol("id", null, DataTypeManager.DefaultDataClasses.INTEGER)),
+                    "test", TupleSourceType.FINAL);
+            for (int i = 0; i < 1000; i++) {
+                rows.addTuple(Arrays.asList(i));
+            }
+            rows.close();
+            ProcessorPlan plan = Mockito.mock(ProcessorPlan.class);
+            Mockito.stub(plan.getContext()).toReturn(Mockito.mock(CommandContext.class));
+            CachedResults results = new CachedResults();
+            results.setResults(rows, plan);
+
+            cache1.put(cacheId("session1"), Determinism.USER_DETERMINISTIC, results, 60000L);
+            assertEquals(1, store.size());
+
+            // a next link of the same user that lands on the other instance
+            SessionMetadata session = new SessionMetadata();
+            session.setVdb(new VDBMetaData());
+            DQPWorkContext context = new DQPWorkContext();
+            context.setSession(session);
+            DQPWorkContext.setWorkContext(context);
+            CachedResults shared = cache2.get(cacheId("session2"));
+            assertNotNull(shared);
+            assertEquals(1000, shared.getResults().getRowCount());
+            assertEquals(Arrays.asList(999), shared.getResults().getBatch(1000).getTuple(1000));
+            assertSame(shared, cache2.get(cacheId("session3")));
+
+            assertNull(cache2.get(new CacheID(new ParseInfo(), "select 1", "vdb", "1", "session4", "other")));
+            cache2.clearAll();
+            assertEquals(0, store.size());
+            buffers1.stop();
+            buffers2.stop();
+        } finally {
+            DQPWorkContext.setWorkContext(null);
+            manager.stop();
+        }
+    }
+
+    private static BufferServiceImpl buffers() {
+        BufferServiceImpl buffers = new BufferServiceImpl();
+        buffers.setUseDisk(false);
+        buffers.start();
+        return buffers;
+    }
+
+    private static SessionAwareCache<CachedResults> cache(ResultsetStore store, BufferServiceImpl buffers) {
+        ResultsetCacheFactory factory = new ResultsetCacheFactory(Mockito.mock(CacheFactory.class),
+                new TeiidProperties.ResultsetCache(), store, buffers::getBufferManager);
+        SessionAwareCache<CachedResults> cache = new SessionAwareCache<>(ResultsetCacheFactory.RESULTSET, factory,
+                SessionAwareCache.Type.RESULTSET, 0);
+        cache.setTupleBufferCache(buffers.getBufferManager());
+        return cache;
+    }
+
+    private static CacheID cacheId(String session) {
+        return new CacheID(new ParseInfo(), "select 1", "vdb", "1", session, "user");
+    }
+
+    @Test
+    public void testSharedKey() {
+        // not yet scoped to a session or user, the original ones are left out
+        CacheID id = cacheId("session1");
+        assertEquals(key(id), key(new CacheID(new ParseInfo(), "select 1", "vdb", "1", "session2", "other")));
+        assertNotEquals(key(id), key(new CacheID(new ParseInfo(), "select 2", "vdb", "1", "session1", "user")));
+        assertNotEquals(key(id), key(new CacheID(new ParseInfo(), "select 1", "vdb", "2", "session1", "user")));
+        CacheID other = cacheId("session1");
+        other.setParameters(Arrays.asList(1));
+        assertNotEquals(key(id), key(other));
+        CacheID text = cacheId("session1");
+        text.setParameters(Arrays.asList("1"));
+        assertNotEquals(key(other), key(text));
+    }
+
+    private static String key(CacheID id) {
+        return ResultsetCacheFactory.SharedResultsetCache.key(id);
+    }
+
+    @Test
+    public void testSharedStoreRejectsUnknownClasses() throws Exception {
+        DefaultCacheManager manager = new DefaultCacheManager();
+        try {
+            manager.defineConfiguration("results", new ConfigurationBuilder().build());
+            ResultsetStore store = new InfinispanResultsetStore(manager.getCache("results"));
+            BufferServiceImpl buffers = buffers();
+            ResultsetCacheFactory factory = new ResultsetCacheFactory(Mockito.mock(CacheFactory.class),
+                    new TeiidProperties.ResultsetCache(), store, buffers::getBufferManager);
+            Cache<String, Object> cache = factory.get(ResultsetCacheFactory.RESULTSET_REPL);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(0);
+            try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                oos.writeObject(new File("x"));
+            }
+            String id = ResultsetCacheFactory.SharedResultsetCache.key("key");
+            store.put(id, bytes.toByteArray(), null);
+
+            assertNull(cache.get("key"));
+            assertNull(store.get(id));
+            // the filter is set on the stream, not for the whole process
+            assertNull(ObjectInputFilter.Config.getSerialFilter());
+            buffers.stop();
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidMaxEntries() {
+        TeiidProperties.ResultsetCache config = new TeiidProperties.ResultsetCache();
+        config.setMaxEntries(0);
+        new ResultsetCacheFactory(Mockito.mock(CacheFactory.class), config);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.teiid.spring.data.file.FileConnectionFactory;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+public class TestSourceMetadataCache {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        this.dir = Files.createTempDirectory("metadata-cache").toFile();
+    }
+
+    @Test
+    public void testPutGetEvict() {
+        SourceMetadataCache cache = new SourceMetadataCache(this.dir, Duration.ofHours(1));
+        String key = SourceMetadataCache.key("mydb", "jdbc:h2:mem:test",
+                Collections.singletonMap("importer.tableTypes", "TABLE"));
+        assertNull(cache.get(key));
+
+        cache.put(key, "CREATE FOREIGN TABLE x (id integer);");
+        assertEquals("CREATE FOREIGN TABLE x (id integer);", cache.get(key));
+        assertEquals(1, cache.entries().size());
+
+        assertEquals(0, cache.evict("my"));
+        assertEquals(1, cache.evict("MyDB"));
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testKeyChangesWithProperties() {
+        String key1 = SourceMetadataCache.key("mydb", "jdbc:h2:mem:test",
+                Collections.singletonMap("importer.tableTypes", "TABLE"));
+        String key2 = SourceMetadataCache.key("mydb", "jdbc:h2:mem:test",
+                Collections.singletonMap("importer.tableTypes", "TABLE,VIEW"));
+        String key3 = SourceMetadataCache.key("mydb", "jdbc:h2:mem:other",
+                Collections.singletonMap("importer.tableTypes", "TABLE"));
+        assertNotEquals(key1, key2);
+        assertNotEquals(key1, key3);
+    }
+
+    @Test
+    public void testExpired() {
+        SourceMetadataCache cache = new SourceMetadataCache(this.dir, Duration.ofMillis(-1));
+        String key = SourceMetadataCache.key("mydb", "url", Collections.emptyMap());
+        cache.put(key, "ddl");
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testDescribeDataSource() {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setJdbcUrl("jdbc:h2:mem:test");
+        ds.setUsername("sa");
+        ds.setPassword("secret-value");
+        String description = SourceMetadataCache.describe(ds);
+        assertTrue(description, description.contains("jdbc:h2:mem:test"));
+        assertFalse(description, description.contains("secret-value"));
+
+        ds.setMaximumPoolSize(3);
+        assertEquals(description, SourceMetadataCache.describe(ds));
+
+        ds.setUsername("other");
+        assertNotEquals(description, SourceMetadataCache.describe(ds));
+        ds.setUsername("sa");
+        ds.setJdbcUrl("jdbc:h2:mem:other");
+        assertNotEquals(description, SourceMetadataCache.describe(ds));
+    }
+
+    @Test
+    public void testDescribeConnectionFactory() {
+        FileConnectionFactory cf = new FileConnectionFactory();
+        cf.setParentDirectory("/data/a");
+        String description = SourceMetadataCache.describe(cf);
+        assertTrue(description, description.contains("/data/a"));
+
+        cf.setParentDirectory("/data/b");
+        assertNotEquals(description, SourceMetadataCache.describe(cf));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.identity;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.teiid.security.Credentials;
+import org.teiid.spring.common.AuthenticationExpiryResolver;
+
+public class TestSpringSecurityHelper {
+    private AuthenticationManager manager;
+    private Authentication authenticated;
+    private SpringSecurityHelper helper;
+    private AuthenticationCache cache;
+
+    @Before
+    public void setup() {
+        SecurityContextHolder.clearContext();
+        this.authenticated = new UsernamePasswordAuthenticationToken("user", null, Collections.emptyList());
+        this.manager = mock(AuthenticationManager.class);
+        when(this.manager.authenticate(any(Authentication.class))).thenReturn(this.authenticated);
+        this.cache = new AuthenticationCache(10, Duration.ofMinutes(5));
+        this.helper = new SpringSecurityHelper();
+        this.helper.setAuthenticationManager(this.manager);
+        this.helper.setAuthenticationCache(this.cache);
+    }
+
+    @Test
+    public void testCachedAuthentication() throws Exception {
+        assertSame(this.authenticated, this.helper.authenticate(null, "user", new Credentials("pass".toCharArray()), null));
+        assertSame(this.authenticated, this.helper.authenticate(null, "user", new Credentials("pass".toCharArray()), null));
+        verify(this.manager, times(1)).authenticate(any(Authentication.class));
+
+        // different password is authenticated again
+        this.helper.authenticate(null, "user", new Credentials("other".toCharArray()), null);
+        verify(this.manager, times(2)).authenticate(any(Authentication.class));
+    }
+
+    @Test
+    public void testExpiredToken() throws Exception {
+        this.cache.setExpiryResolvers(Collections.singletonList(a -> System.currentTimeMillis() - 1));
+        this.helper.authenticate(null, "user", new Credentials("pass".toCharArray()), null);
+        this.helper.authenticate(null, "user", new Credentials("pass".toCharArray()), null);
+        verify(this.manager, times(2)).authenticate(any(Authentication.class));
+        assertNull(this.cache.get(this.cache.key("user", "pass")));
+    }
+
+    @Test
+    public void testEvictionNotifiesResolver() throws Exception {
+        AuthenticationExpiryResolver resolver = mock(AuthenticationExpiryResolver.class);
+        when(resolver.getExpiry(any(Authentication.class))).thenReturn(null);
+        AuthenticationCache small = new AuthenticationCache(1, Duration.ofMinutes(5));
+        small.setExpiryResolvers(Collections.singletonList(resolver));
+        Authentication other = new UsernamePasswordAuthenticationToken("other", null, Collections.emptyList());
+        small.put(small.key("user", "pass"), this.authenticated);
+        small.put(small.key("other", "pass"), other);
+        small.getCache().cleanUp();
+        verify(resolver, timeout(5000)).evicted(any(Authentication.class));
+    }
+}
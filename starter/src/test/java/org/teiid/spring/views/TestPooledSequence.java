@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TestPooledSequence {
+
+    @Test
+    public void testBlocks() throws Exception {
+        AtomicLong sequence = new AtomicLong(1);
+        AtomicLong fetches = new AtomicLong();
+        PooledSequence.Range range = new PooledSequence.Range(50, 1);
+        PooledSequence.Source source = () -> {
+            fetches.incrementAndGet();
+            return sequence.getAndAdd(50);
+        };
+        // the initial value is a block of its own, like with the Hibernate pooled optimizer
+        assertEquals(1, range.next(source));
+        for (int i = 2; i <= 101; i++) {
+            assertEquals(i, range.next(source));
+        }
+        assertEquals(3, fetches.get());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testWrongIncrement() throws Exception {
+        AtomicLong sequence = new AtomicLong(100);
+        PooledSequence.Range range = new PooledSequence.Range(50, 1);
+        PooledSequence.Source source = sequence::getAndIncrement;
+        for (int i = 0; i < 51; i++) {
+            range.next(source);
+        }
+    }
+
+    @Test
+    public void testConcurrentCallers() throws Exception {
+        AtomicLong sequence = new AtomicLong(1);
+        PooledSequence.Range range = new PooledSequence.Range(20, 1);
+        PooledSequence.Source source = () -> sequence.getAndAdd(20);
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    assertTrue(values.add(range.next(source)));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(8000, values.size());
+    }
+}
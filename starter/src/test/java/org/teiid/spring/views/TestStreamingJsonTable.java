@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.teiid.CommandContext;
+import org.teiid.CommandListener;
+import org.teiid.core.TeiidRuntimeException;
+
+public class TestStreamingJsonTable {
+
+    private static List<List<Object>> rows(String json, String root, String columns) throws Exception {
+        return rows(json, root, columns, json.startsWith("["));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<List<Object>> rows(String json, String root, String columns, boolean rootIsArray)
+            throws Exception {
+        Iterator<List<Object>> iter = (Iterator<List<Object>>) StreamingJsonTable.jsonRows(null,
+                new SerialBlob(json.getBytes(StandardCharsets.UTF_8)), root, columns, rootIsArray);
+        List<List<Object>> result = new ArrayList<>();
+        iter.forEachRemaining(result::add);
+        return result;
+    }
+
+    @Test
+    public void testRootArray() throws Exception {
+        String json = "[{\"id\":1,\"FirstName\":\"John\",\"address\":{\"city\":\"Dallas\"}},"
+                + "{\"id\":2,\"FirstName\":null,\"tags\":[\"a\"]}]";
+        List<List<Object>> rows = rows(json, "/", "id,FirstName,address/city,tags");
+        assertEquals(2, rows.size());
+        assertEquals(Arrays.asList("1", "John", "Dallas", null, 1), rows.get(0));
+        assertEquals(Arrays.asList("2", null, null, "a", 2), rows.get(1));
+    }
+
+    @Test(expected = TeiidRuntimeException.class)
+    public void testMultipleValues() throws Exception {
+        rows("[{\"id\":1,\"tags\":[\"a\",\"b\"]}]", "/", "id,tags");
+    }
+
+    @Test
+    public void testRootIsArray() throws Exception {
+        try {
+            rows("[{\"id\":1}]", "/", "id", false);
+            fail();
+        } catch (TeiidRuntimeException e) {
+            // the document is an array
+        }
+        try {
+            rows("{\"id\":1}", "/", "id", true);
+            fail();
+        } catch (TeiidRuntimeException e) {
+            // the document is not an array
+        }
+        assertEquals(Arrays.asList(Arrays.asList("1", 1)), rows("{\"id\":1}", "/", "id", false));
+    }
+
+    @Test
+    public void testNestedRoot() throws Exception {
+        String json = "{\"skip\":{\"items\":[1]},\"data\":{\"count\":2,\"items\":[{\"v\":\"x\"},{\"v\":\"y\"}]},"
+                + "\"other\":[{\"items\":[{\"v\":\"z\"}]}]}";
+        List<List<Object>> rows = rows(json, "/data/items/", "v");
+        assertEquals(2, rows.size());
+        assertEquals("x", rows.get(0).get(0));
+        assertEquals("y", rows.get(1).get(0));
+
+        // arrays along the path are flattened
+        json = "[{\"items\":[{\"v\":\"x\"}]},{\"items\":{\"v\":\"y\"}}]";
+        rows = rows(json, "/items", "v");
+        assertEquals(2, rows.size());
+        assertEquals("y", rows.get(1).get(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testClosedWithCommand() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream in = new ByteArrayInputStream("[{\"id\":1},{\"id\":2}]".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+            }
+        };
+        Blob blob = Mockito.mock(Blob.class);
+        Mockito.when(blob.getBinaryStream()).thenReturn(in);
+        CommandContext context = Mockito.mock(CommandContext.class);
+        ArgumentCaptor<CommandListener> listener = ArgumentCaptor.forClass(CommandListener.class);
+
+        Iterator<List<Object>> iter = (Iterator<List<Object>>) StreamingJsonTable.jsonRows(context, blob, "/", "id",
+                true);
+        Mockito.verify(context).addListener(listener.capture());
+        assertEquals(Arrays.asList("1", 1), iter.next());
+        assertTrue(iter instanceof Closeable);
+        assertFalse(closed.get());
+
+        // the query ends before the rows are all read
+        listener.getValue().commandClosed(context);
+        assertTrue(closed.get());
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testSimplePath() {
+        assertTrue(StreamingJsonTable.isSimplePath(""));
+        assertTrue(StreamingJsonTable.isSimplePath("a/b_c/d-e"));
+        assertFalse(StreamingJsonTable.isSimplePath("../id"));
+        assertFalse(StreamingJsonTable.isSimplePath("@id"));
+        assertFalse(StreamingJsonTable.isSimplePath("a[1]"));
+    }
+}
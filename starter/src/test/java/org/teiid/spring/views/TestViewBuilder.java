@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.spring.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.teiid.metadata.Table;
+
+public class TestViewBuilder {
+
+    @Test
+    public void testCacheHint() {
+        Table view = new Table();
+        view.setSelectTransformation("SELECT 1");
+        ViewBuilder.addCacheHint(view, -1);
+        assertEquals("SELECT 1", view.getSelectTransformation());
+        assertFalse(view.isMaterialized());
+        ViewBuilder.addCacheHint(view, 300000);
+        assertTrue(view.isMaterialized());
+        assertEquals("/*+ cache(ttl:300000) */ SELECT 1", view.getSelectTransformation());
+
+        view.setSelectTransformation("SELECT 1");
+        ViewBuilder.addCacheHint(view, 0);
+        assertEquals("/*+ cache */ SELECT 1", view.getSelectTransformation());
+        // a hint written in the query wins
+        ViewBuilder.addCacheHint(view, 1000);
+        assertEquals("/*+ cache */ SELECT 1", view.getSelectTransformation());
+    }
+}